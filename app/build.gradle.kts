@@ -32,13 +32,20 @@ tasks.create("jacocoTestReport", JacocoReport::class.java) {
   val developDebug = "developDebug"
 
   sourceDirectories.setFrom(
-      files(listOf("$projectDir/src/main/java", "$projectDir/src/main/kotlin")))
+      files(
+          listOf(
+              "$projectDir/src/main/java",
+              "$projectDir/src/main/kotlin",
+              "$rootDir/core/src/main/java",
+          )))
 
   classDirectories.setFrom(
       files(
           listOf(
               fileTree("$buildDir/intermediates/javac/$developDebug") { exclude(fileFilter) },
               fileTree("$buildDir/tmp/kotlin-classes/$developDebug") { exclude(fileFilter) },
+              fileTree("$rootDir/core/build/classes/java/main") { exclude(fileFilter) },
+              fileTree("$rootDir/core/build/classes/kotlin/main") { exclude(fileFilter) },
           )))
 
   // execution data from both unit and instrumentation tests
@@ -147,6 +154,7 @@ tasks.withType<org.jetbrains.kotlin.gradle.tasks.KotlinCompile>().configureEach
 dependencies {
   val coroutinesVersion = "1.7.3"
   val serializationVersion = "1.6.2"
+  implementation(project(":core"))
   implementation("ch.acra:acra-mail:5.11.3")
   implementation("com.melnykov:floatingactionbutton:1.3.0")
   implementation("io.reactivex.rxjava2:rxjava:2.2.21")
@@ -80,7 +80,7 @@ class InfoFragmentTest {
             isVibrate = false,
             label = "",
             minutes = 1,
-            nextTime = time,
+            nextTimeMillis = time.timeInMillis,
             state = ""),
         nextNonPrealarmTime = time.timeInMillis)
   }
@@ -16,6 +16,7 @@ import com.better.alarm.R
 import com.better.alarm.bootstrap.overrideIs24hoursFormatOverride
 import com.better.alarm.data.CalendarType
 import com.better.alarm.domain.AlarmSetter
+import com.better.alarm.domain.AlarmSetterImpl
 import com.better.alarm.receivers.AlarmsReceiver
 import com.better.alarm.receivers.PresentationToModelIntents
 import com.better.alarm.test.TestSync.Companion.clickFab
@@ -318,7 +319,7 @@ class ListTest {
     listActivity.scenario.onActivity { activity ->
       activity.sendBroadcast(
           Intent().apply {
-            action = AlarmSetter.ACTION_FIRED
+            action = AlarmSetterImpl.ACTION_FIRED
             setClass(activity, AlarmsReceiver::class.java)
             putExtra(AlarmSetter.EXTRA_ID, id)
             putExtra(AlarmSetter.EXTRA_TYPE, CalendarType.NORMAL.name)
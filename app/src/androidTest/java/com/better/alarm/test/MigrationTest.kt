@@ -3,6 +3,7 @@ package com.better.alarm.test
 import androidx.test.ext.junit.rules.ActivityScenarioRule
 import androidx.test.ext.junit.runners.AndroidJUnit4
 import androidx.test.platform.app.InstrumentationRegistry
+import com.better.alarm.data.AlarmValue
 import com.better.alarm.data.DaysOfWeek
 import com.better.alarm.data.contentprovider.AlarmDatabaseHelper
 import com.better.alarm.data.contentprovider.SQLiteDatabaseQuery
@@ -58,7 +59,7 @@ class MigrationTest {
           db.execSQL("$insertMe(9, 01, 96, 0, 0, 1, '', '', 0, '');")
         }
 
-        assertThat(SQLiteDatabaseQuery(context.contentResolver).query()).isNotEmpty()
+        assertThat(rowsInDatabase()).isNotEmpty()
 
         // when
         sentTestIntent(TestReceiver.ACTION_DROP_AND_MIGRATE_DATABASE)
@@ -80,7 +81,7 @@ class MigrationTest {
                 })
             .hasSize(1)
 
-        assertThat(SQLiteDatabaseQuery(context.contentResolver).query()).isEmpty()
+        assertThat(rowsInDatabase()).isEmpty()
       }
 
   @Test
@@ -109,4 +110,11 @@ class MigrationTest {
                 })
             .hasSize(1)
       }
+
+  private fun rowsInDatabase(): List<AlarmValue> {
+    val context = InstrumentationRegistry.getInstrumentation().targetContext
+    return mutableListOf<AlarmValue>().apply {
+      SQLiteDatabaseQuery(context.contentResolver).forEach { add(it) }
+    }
+  }
 }
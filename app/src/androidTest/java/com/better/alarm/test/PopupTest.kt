@@ -15,6 +15,7 @@ import com.better.alarm.R
 import com.better.alarm.bootstrap.overrideIs24hoursFormatOverride
 import com.better.alarm.data.CalendarType
 import com.better.alarm.domain.AlarmSetter
+import com.better.alarm.domain.AlarmSetterImpl
 import com.better.alarm.domain.Store
 import com.better.alarm.receivers.AlarmsReceiver
 import com.better.alarm.receivers.Intents
@@ -76,7 +77,7 @@ class PopupTest {
 
     // simulate alarm fired
     context.sendBroadcast(
-        Intent(AlarmSetter.ACTION_FIRED).apply {
+        Intent(AlarmSetterImpl.ACTION_FIRED).apply {
           setClass(context, AlarmsReceiver::class.java)
           putExtra(AlarmSetter.EXTRA_ID, id)
           putExtra(AlarmSetter.EXTRA_TYPE, CalendarType.NORMAL.name)
@@ -156,7 +157,7 @@ class PopupTest {
     val context = InstrumentationRegistry.getInstrumentation().targetContext
     context.sendBroadcast(
         Intent(context, AlarmsReceiver::class.java).apply {
-          action = AlarmSetter.ACTION_FIRED
+          action = AlarmSetterImpl.ACTION_FIRED
           putExtra(AlarmSetter.EXTRA_ID, id)
           putExtra(AlarmSetter.EXTRA_TYPE, CalendarType.AUTOSILENCE.name)
         })
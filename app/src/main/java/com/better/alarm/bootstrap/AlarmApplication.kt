@@ -22,8 +22,9 @@ import android.view.ViewConfiguration
 import androidx.multidex.MultiDexApplication
 import androidx.preference.PreferenceManager
 import com.better.alarm.R
+import com.better.alarm.bootstrap.AlarmApplicationInit.startAlarms
 import com.better.alarm.bootstrap.AlarmApplicationInit.startOnce
-import com.better.alarm.data.AlarmValue
+import com.better.alarm.data.AlarmsRepository
 import com.better.alarm.domain.Alarms
 import com.better.alarm.domain.AlarmsScheduler
 import com.better.alarm.domain.Store
@@ -34,6 +35,10 @@ import com.better.alarm.receivers.ScheduledReceiver
 import com.better.alarm.services.AlertServicePusher
 import com.better.alarm.ui.toast.ToastPresenter
 import java.util.concurrent.atomic.AtomicBoolean
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.launch
+import org.koin.core.Koin
 
 class AlarmApplication : MultiDexApplication() {
   override fun onCreate() {
@@ -46,11 +51,25 @@ class AlarmApplication : MultiDexApplication() {
     fun startOnce(application: Application) {
       application.startOnce()
     }
+
+    /**
+     * Like [startOnce], but starts the alarms right away. Blocks until the alarms are restored if
+     * needed. Used by receivers and screens which need the alarms to handle the intent.
+     */
+    @JvmStatic
+    fun startAlarmsBlocking(application: Application) {
+      application.startOnce()
+      startAlarms()
+    }
   }
 }
 
 private object AlarmApplicationInit {
   private val started = AtomicBoolean(false)
+  private lateinit var koin: Koin
+
+  /** Only accessed on the main thread */
+  private var alarmsStarted = false
 
   @SuppressLint("SoonBlockedPrivateApi")
   fun Application.startOnce() {
@@ -66,7 +85,9 @@ private object AlarmApplicationInit {
           .setBoolean(ViewConfiguration.get(this), false)
     }
 
-    val koin = startKoin(applicationContext)
+    koin = startKoin(applicationContext)
+    // alarms are restored on an I/O thread while the rest is initialized
+    val repository = koin.get<AlarmsRepository>()
 
     koin.get<BugReporter>().attachToMainThread(this)
 
@@ -79,6 +100,18 @@ private object AlarmApplicationInit {
 
     createNotificationChannels()
 
+    // started when the alarms are restored, intents which need them earlier use startAlarmsBlocking
+    CoroutineScope(Dispatchers.Main.immediate).launch {
+      repository.awaitReady()
+      startAlarms()
+    }
+  }
+
+  fun startAlarms() {
+    if (alarmsStarted) {
+      return
+    }
+    alarmsStarted = true
     // must be started the last, because otherwise we may loose intents from it.
     val alarmsLogger = koin.logger("Alarms")
     koin.get<Alarms>().start()
@@ -87,15 +120,11 @@ private object AlarmApplicationInit {
     koin.get<AlarmsScheduler>().start()
 
     with(koin.get<Store>()) {
-      // register logging after startup has finished to avoid logging( O(n) instead of O(n log n) )
-      alarms()
-          .distinctUntilChanged()
-          .map { it.toSet() }
-          .startWith(emptySet<AlarmValue>())
-          .buffer(2, 1)
-          .map { (prev, next) -> next.minus(prev).map { it.toString() } }
-          .distinctUntilChanged()
-          .subscribe { lines -> lines.forEach { alarmsLogger.debug { it } } }
+      // register logging after startup has finished, the first change logs all alarms
+      alarmChanges().subscribe { change ->
+        change.added.forEach { alarmsLogger.debug { it.toString() } }
+        change.changed.forEach { alarmsLogger.debug { it.toString() } }
+      }
     }
   }
 }
@@ -9,14 +9,15 @@ import android.os.Vibrator
 import android.telephony.TelephonyManager
 import android.text.format.DateFormat
 import com.better.alarm.data.AlarmsRepository
-import com.better.alarm.data.DataStoreAlarmsRepository
 import com.better.alarm.data.DatastoreMigration
+import com.better.alarm.data.JournalAlarmsRepository
 import com.better.alarm.data.Prefs
 import com.better.alarm.data.contentprovider.DatabaseQuery
 import com.better.alarm.data.contentprovider.SQLiteDatabaseQuery
 import com.better.alarm.data.stores.SharedRxDataStoreFactory
 import com.better.alarm.domain.AlarmCore
 import com.better.alarm.domain.AlarmSetter
+import com.better.alarm.domain.AlarmSetterImpl
 import com.better.alarm.domain.AlarmStateNotifier
 import com.better.alarm.domain.Alarms
 import com.better.alarm.domain.AlarmsScheduler
@@ -24,11 +25,15 @@ import com.better.alarm.domain.Calendars
 import com.better.alarm.domain.IAlarmsManager
 import com.better.alarm.domain.IAlarmsScheduler
 import com.better.alarm.domain.Store
+import com.better.alarm.domain.statemachine.TransitionTrace
 import com.better.alarm.logger.BugReporter
 import com.better.alarm.logger.Logger
 import com.better.alarm.logger.LoggerFactory
 import com.better.alarm.logger.loggerModule
 import com.better.alarm.notifications.BackgroundNotifications
+import com.better.alarm.platform.AndroidBuildFlags
+import com.better.alarm.platform.LooperMainThread
+import com.better.alarm.platform.OsDirectorySync
 import com.better.alarm.platform.WakeLockManager
 import com.better.alarm.platform.Wakelocks
 import com.better.alarm.receivers.ScheduledReceiver
@@ -51,6 +56,7 @@ import io.reactivex.subjects.BehaviorSubject
 import io.reactivex.subjects.PublishSubject
 import java.io.File
 import java.util.Calendar
+import java.util.TimeZone
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import org.koin.androidx.viewmodel.dsl.viewModelOf
@@ -75,7 +81,9 @@ fun startKoin(context: Context): Koin {
 
   val module = module {
     single<DynamicThemeHandler> { DynamicThemeHandler(get()) }
-    single<BugReporter> { BugReporter(logger("BugReporter"), context) }
+    single<BugReporter> {
+      BugReporter(logger("BugReporter"), context, get(), get<Store>().eventPipeline)
+    }
     factory<Context> { context }
     factory(named("dateFormatOverride")) { "none" }
     factory<Single<Boolean>>(named("dateFormat")) {
@@ -105,25 +113,47 @@ fun startKoin(context: Context): Koin {
     single { BackPresses() }
 
     factory { get<Context>().getSystemService(Context.ALARM_SERVICE) as AlarmManager }
-    single<AlarmSetter> { AlarmSetter.AlarmSetterImpl(logger("AlarmSetter"), get(), get()) }
-    factory { Calendars { Calendar.getInstance() } }
+    single<AlarmSetter> { AlarmSetterImpl(logger("AlarmSetter"), get(), get(), get()) }
+    factory<Calendars> {
+      object : Calendars {
+        override fun now(): Calendar = Calendar.getInstance()
+
+        override fun nowMillis(): Long = System.currentTimeMillis()
+
+        override fun zone(): TimeZone = TimeZone.getDefault()
+      }
+    }
     single<AlarmsScheduler> {
       AlarmsScheduler(get(), logger("AlarmsScheduler"), get(), get(), get())
     }
     factory<IAlarmsScheduler> { get<AlarmsScheduler>() }
     single<AlarmCore.IStateNotifier> { AlarmStateNotifier(get()) }
     single<AlarmsRepository> {
-      DataStoreAlarmsRepository.createBlocking(
+      JournalAlarmsRepository.create(
           datastoreDir = get(named("datastore")),
-          logger = logger("DataStoreAlarmsRepository"),
+          logger = logger("JournalAlarmsRepository"),
           ioScope = CoroutineScope(Dispatchers.IO),
+          mainThread = LooperMainThread,
+          directorySync = OsDirectorySync,
       )
     }
     single(named("datastore")) { File(get<Context>().applicationContext.filesDir, "datastore") }
     factory { get<Context>().contentResolver }
     single<DatabaseQuery> { SQLiteDatabaseQuery(get()) }
-    single { Alarms(get(), get(), get(), get(), get(), get(), logger("Alarms"), get()) } binds
-        arrayOf(IAlarmsManager::class, DatastoreMigration::class)
+    single { TransitionTrace() }
+    single {
+      Alarms(
+          get(),
+          get(),
+          get(),
+          get(),
+          get(),
+          get(),
+          logger("Alarms"),
+          get(),
+          AndroidBuildFlags,
+          get())
+    } binds arrayOf(IAlarmsManager::class, DatastoreMigration::class)
     single { ScheduledReceiver(get(), get(), get(), get()) }
     single { ToastPresenter(get(), get()) }
     single { AlertServicePusher(get(), get(), get(), logger("AlertServicePusher")) }
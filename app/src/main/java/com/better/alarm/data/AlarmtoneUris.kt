@@ -0,0 +1,30 @@
+package com.better.alarm.data
+
+import android.provider.Settings
+
+private val systemDefaultAlarmAlertUri =
+    Settings.System.DEFAULT_ALARM_ALERT_URI?.toString() ?: "DEFAULT_ALARM_ALERT_URI_IN_TEST"
+
+val Alarmtone.Companion.defaultAlarmAlertUri: String
+  get() = systemDefaultAlarmAlertUri
+
+/** Creates a [String] in a format this is understood by [android.media.RingtoneManager]. */
+fun Alarmtone.ringtoneManagerUri(): String? {
+  return when (this) {
+    is Alarmtone.Silent -> null
+    // RingtoneManager.getDefaultUri(RingtoneManager.TYPE_ALARM) ?
+    is Alarmtone.Default -> Alarmtone.defaultAlarmAlertUri
+    is Alarmtone.SystemDefault -> Alarmtone.defaultAlarmAlertUri
+    is Alarmtone.Sound -> uriString
+  }
+}
+
+/** For migration from ContentProvider table */
+fun Alarmtone.Companion.migrateFromString(string: String?): Alarmtone {
+  return when (string) {
+    null -> Alarmtone.Silent
+    "" -> Alarmtone.Default
+    defaultAlarmAlertUri -> Alarmtone.Default
+    else -> Alarmtone.Sound(string)
+  }
+}
@@ -97,10 +97,23 @@ public class AlarmProvider extends ContentProvider {
 
   @Override
   public int delete(Uri url, String where, String[] whereArgs) {
-    Preconditions.checkArgument(sURLMatcher.match(url) == ALARMS_ID, "Invalid URL %s", url);
+    int match = sURLMatcher.match(url);
+    Preconditions.checkArgument(match == ALARMS || match == ALARMS_ID, "Invalid URL %s", url);
 
     SQLiteDatabase db = mOpenHelper.getWritableDatabase();
     final int count;
+    if (match == ALARMS) {
+      // all rows of the selection are deleted in one transaction with one notification
+      db.beginTransaction();
+      try {
+        count = db.delete("alarms", where, whereArgs);
+        db.setTransactionSuccessful();
+      } finally {
+        db.endTransaction();
+      }
+      getContext().getContentResolver().notifyChange(url, null);
+      return count;
+    }
     String segment = url.getPathSegments().get(1);
     if (TextUtils.isEmpty(where)) {
       count = db.delete("alarms", "_id=" + segment, whereArgs);
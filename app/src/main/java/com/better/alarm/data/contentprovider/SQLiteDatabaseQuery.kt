@@ -1,45 +1,45 @@
 package com.better.alarm.data.contentprovider
 
 import android.content.ContentResolver
-import android.content.ContentUris
 import android.database.Cursor
+import android.provider.BaseColumns
 import com.better.alarm.data.AlarmValue
 import com.better.alarm.data.Alarmtone
 import com.better.alarm.data.DaysOfWeek
+import com.better.alarm.data.migrateFromString
 import java.util.*
 
-interface DatabaseQuery {
-  fun query(): List<AlarmValue>
-
-  fun delete(id: Int)
-}
-
 /** Created by Yuriy on 10.06.2017. */
 class SQLiteDatabaseQuery(
     private val contentResolver: ContentResolver,
 ) : DatabaseQuery {
-  override fun query(): List<AlarmValue> {
-    val list = mutableListOf<AlarmValue>()
-    contentResolver
-        .query(
-            Columns.contentUri(),
-            Columns.ALARM_QUERY_COLUMNS,
-            null,
-            null,
-            Columns.DEFAULT_SORT_ORDER)
-        ?.use { cursor ->
-          if (cursor.moveToFirst()) {
-            do {
-              list.add(fromCursor(cursor))
-            } while (cursor.moveToNext())
+  /** Every window is a query of the rows after the last id of the previous one */
+  override fun forEach(windowSize: Int, action: (AlarmValue) -> Unit) {
+    var lastId = -1
+    do {
+      var rows = 0
+      contentResolver
+          .query(
+              Columns.contentUri(),
+              Columns.ALARM_QUERY_COLUMNS,
+              "${BaseColumns._ID} > ?",
+              arrayOf(lastId.toString()),
+              "${BaseColumns._ID} ASC LIMIT $windowSize")
+          ?.use { cursor ->
+            while (cursor.moveToNext()) {
+              val value = fromCursor(cursor)
+              action(value)
+              lastId = value.id
+              rows++
+            }
           }
-        }
-    return list
+    } while (rows == windowSize)
   }
 
-  override fun delete(id: Int) {
-    val uri = ContentUris.withAppendedId(Columns.contentUri(), id.toLong())
-    contentResolver.delete(uri, "", null)
+  override fun deleteAll(ids: Collection<Int>) {
+    if (ids.isEmpty()) return
+    contentResolver.delete(
+        Columns.contentUri(), "${BaseColumns._ID} IN (${ids.joinToString(",")})", null)
   }
 
   private fun fromCursor(c: Cursor): AlarmValue {
@@ -56,7 +56,6 @@ class SQLiteDatabaseQuery(
         alarmtone = Alarmtone.migrateFromString(c.getString(Columns.ALARM_ALERT_INDEX)),
         state = c.getString(Columns.ALARM_STATE_INDEX)
                 ?: (if (enabled) "NormalSetState" else "DisabledState"),
-        nextTime =
-            Calendar.getInstance().apply { timeInMillis = c.getLong(Columns.ALARM_TIME_INDEX) })
+        nextTimeMillis = c.getLong(Columns.ALARM_TIME_INDEX))
   }
 }
@@ -0,0 +1,189 @@
+package com.better.alarm.domain
+
+import android.annotation.TargetApi
+import android.app.AlarmManager
+import android.app.PendingIntent
+import android.content.Context
+import android.content.Intent
+import android.os.Build
+import com.better.alarm.BuildConfig
+import com.better.alarm.logger.Logger
+import com.better.alarm.platform.pendingIntentUpdateCurrentFlag
+import com.better.alarm.receivers.AlarmsReceiver
+import com.better.alarm.ui.main.AlarmsListActivity
+import java.util.*
+
+/**
+ * Inexact alarms of all ids are coalesced by [InexactAlarmsTimer], so that only the earliest one is
+ * registered with the [AlarmManager].
+ */
+class AlarmSetterImpl(
+    private val log: Logger,
+    private val am: AlarmManager,
+    private val mContext: Context,
+    private val calendars: Calendars,
+) : AlarmSetter {
+  private val setAlarmStrategy: ISetAlarmStrategy
+  private val inexactAlarms =
+      InexactAlarmsTimer(
+          arm = { millis -> armInexactAlarm(millis) }, cancel = { cancelInexactAlarm() })
+
+  init {
+    this.setAlarmStrategy = initSetStrategyForVersion()
+  }
+
+  override fun removeRTCAlarm() {
+    log.debug { "Removed all alarms" }
+    val pendingAlarm =
+        PendingIntent.getBroadcast(
+            mContext,
+            pendingAlarmRequestCode,
+            Intent(ACTION_FIRED).apply {
+              // must be here, otherwise replace does not work
+              setClass(mContext, AlarmsReceiver::class.java)
+            },
+            pendingIntentUpdateCurrentFlag())
+    am.cancel(pendingAlarm)
+  }
+
+  override fun setUpRTCAlarm(id: Int, typeName: String, calendar: Calendar) {
+    log.debug { "Set $id ($typeName) on ${AlarmsScheduler.DATE_FORMAT.format(calendar.time)}" }
+    val pendingAlarm =
+        Intent(ACTION_FIRED)
+            .apply {
+              setClass(mContext, AlarmsReceiver::class.java)
+              putExtra(AlarmSetter.EXTRA_ID, id)
+              putExtra(AlarmSetter.EXTRA_TYPE, typeName)
+            }
+            .let {
+              PendingIntent.getBroadcast(
+                  mContext, pendingAlarmRequestCode, it, pendingIntentUpdateCurrentFlag())
+            }
+
+    setAlarmStrategy.setRTCAlarm(calendar, pendingAlarm)
+  }
+
+  override fun fireNow(ids: IntArray, typeNames: Array<String>) {
+    val intent =
+        Intent(ACTION_FIRED).apply {
+          setClass(mContext, AlarmsReceiver::class.java)
+          putExtra(AlarmSetter.EXTRA_IDS, ids)
+          putExtra(AlarmSetter.EXTRA_TYPES, typeNames)
+        }
+    mContext.sendBroadcast(intent)
+  }
+
+  override fun setInexactAlarm(id: Int, calendar: Calendar) {
+    log.debug { "setInexactAlarm id: $id on ${AlarmsScheduler.DATE_FORMAT.format(calendar.time)}" }
+    inexactAlarms.set(id, calendar.timeInMillis)
+  }
+
+  override fun removeInexactAlarm(id: Int) {
+    log.trace { "removeInexactAlarm id: $id" }
+    inexactAlarms.remove(id)
+  }
+
+  override fun removeDueInexactAlarms(): IntArray {
+    return inexactAlarms.pollDue(calendars.nowMillis())
+  }
+
+  private fun armInexactAlarm(millis: Long) {
+    log.debug { "Set inexact alarm on ${AlarmsScheduler.DATE_FORMAT.format(Date(millis))}" }
+    setAlarmStrategy.setInexactAlarm(
+        calendars.now().apply { timeInMillis = millis }, pendingInexactAlarm())
+  }
+
+  private fun cancelInexactAlarm() {
+    log.trace { "Removed inexact alarm" }
+    am.cancel(pendingInexactAlarm())
+  }
+
+  private fun pendingInexactAlarm(): PendingIntent {
+    return PendingIntent.getBroadcast(
+        mContext,
+        pendingInexactAlarmRequestCode,
+        Intent(ACTION_INEXACT_FIRED).apply {
+          // must be here, otherwise replace does not work
+          setClass(mContext, AlarmsReceiver::class.java)
+        },
+        pendingIntentUpdateCurrentFlag())
+  }
+
+  private fun initSetStrategyForVersion(): ISetAlarmStrategy {
+    return when {
+      Build.VERSION.SDK_INT >= 26 -> OreoSetter()
+      Build.VERSION.SDK_INT >= 23 -> MarshmallowSetter()
+      Build.VERSION.SDK_INT >= 19 -> KitKatSetter()
+      else -> IceCreamSetter()
+    }
+  }
+
+  private inner class IceCreamSetter : ISetAlarmStrategy {
+    override fun setRTCAlarm(calendar: Calendar, pendingIntent: PendingIntent) {
+      am.set(AlarmManager.RTC_WAKEUP, calendar.timeInMillis, pendingIntent)
+    }
+
+    override fun setInexactAlarm(calendar: Calendar, pendingIntent: PendingIntent) {
+      am.set(AlarmManager.RTC_WAKEUP, calendar.timeInMillis, pendingIntent)
+    }
+  }
+
+  @TargetApi(Build.VERSION_CODES.KITKAT)
+  private inner class KitKatSetter : ISetAlarmStrategy {
+    override fun setRTCAlarm(calendar: Calendar, pendingIntent: PendingIntent) {
+      am.setExact(AlarmManager.RTC_WAKEUP, calendar.timeInMillis, pendingIntent)
+    }
+
+    override fun setInexactAlarm(calendar: Calendar, pendingIntent: PendingIntent) {
+      am.setExact(AlarmManager.RTC_WAKEUP, calendar.timeInMillis, pendingIntent)
+    }
+  }
+
+  @TargetApi(23)
+  private inner class MarshmallowSetter : ISetAlarmStrategy {
+    override fun setRTCAlarm(calendar: Calendar, pendingIntent: PendingIntent) {
+      am.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, calendar.timeInMillis, pendingIntent)
+    }
+  }
+
+  /** 8.0 */
+  @TargetApi(Build.VERSION_CODES.O)
+  private inner class OreoSetter : ISetAlarmStrategy {
+    override fun setRTCAlarm(calendar: Calendar, pendingIntent: PendingIntent) {
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU && !am.canScheduleExactAlarms()) {
+        log.warning { "Permission denied!" }
+        return
+      }
+      val pendingShowList =
+          PendingIntent.getActivity(
+              mContext,
+              100500,
+              Intent(mContext, AlarmsListActivity::class.java),
+              pendingIntentUpdateCurrentFlag())
+      am.setAlarmClock(
+          AlarmManager.AlarmClockInfo(calendar.timeInMillis, pendingShowList), pendingIntent)
+    }
+
+    override fun setInexactAlarm(calendar: Calendar, pendingIntent: PendingIntent) {
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU && !am.canScheduleExactAlarms())
+          return
+      am.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, calendar.timeInMillis, pendingIntent)
+    }
+  }
+
+  private interface ISetAlarmStrategy {
+    fun setRTCAlarm(calendar: Calendar, pendingIntent: PendingIntent)
+
+    fun setInexactAlarm(calendar: Calendar, pendingIntent: PendingIntent) {
+      setRTCAlarm(calendar, pendingIntent)
+    }
+  }
+
+  companion object {
+    const val ACTION_FIRED = BuildConfig.APPLICATION_ID + ".ACTION_FIRED"
+    const val ACTION_INEXACT_FIRED = BuildConfig.APPLICATION_ID + ".ACTION_INEXACT_FIRED"
+    private val pendingAlarmRequestCode = 0
+    /** Inexact alarms used alarm ids as request codes before, ids are never negative. */
+    private val pendingInexactAlarmRequestCode = -1
+  }
+}
@@ -4,6 +4,8 @@ import android.app.Application
 import android.content.Context
 import com.better.alarm.BuildConfig
 import com.better.alarm.R
+import com.better.alarm.domain.statemachine.TransitionTrace
+import com.better.alarm.services.EventPipeline
 import org.acra.ACRA
 import org.acra.ReportField
 import org.acra.config.mailSender
@@ -14,10 +16,14 @@ import org.acra.ktx.initAcra
 class BugReporter(
     private val logger: Logger,
     private val context: Context,
+    private val transitionTrace: TransitionTrace,
+    private val eventPipeline: EventPipeline,
 ) {
   fun sendUserReport() {
     if (BuildConfig.ACRA_EMAIL.isNotEmpty()) {
       ACRA.errorReporter.putCustomData("LOGS", rollingLogs())
+      ACRA.errorReporter.putCustomData("TRANSITIONS", transitionTrace.dump())
+      ACRA.errorReporter.putCustomData("EVENTS", eventPipeline.dump())
       ACRA.errorReporter.handleSilentException(Exception())
     }
   }
@@ -61,6 +67,8 @@ class BugReporter(
     Thread.currentThread().setUncaughtExceptionHandler { thread, throwable ->
       logger.error(throwable) { "Uncaught exception $throwable" }
       ACRA.errorReporter.putCustomData("LOGS", rollingLogs())
+      ACRA.errorReporter.putCustomData("TRANSITIONS", transitionTrace.dump())
+      ACRA.errorReporter.putCustomData("EVENTS", eventPipeline.dump())
       ACRA.errorReporter.handleException(throwable)
       prev?.uncaughtException(thread, throwable)
     }
@@ -47,7 +47,7 @@ class BackgroundNotifications(
     private val store: Store
 ) {
   init {
-    store.events.subscribeForever { event ->
+    store.eventPipeline.events().subscribeForever { event ->
       when (event) {
         is Event.AlarmEvent -> nm.cancel(event.id + SNOOZE_NOTIFICATION)
         is Event.PrealarmEvent -> nm.cancel(event.id + SNOOZE_NOTIFICATION)
@@ -0,0 +1,44 @@
+package com.better.alarm.platform
+
+import android.content.Context
+import android.os.Looper
+import android.system.ErrnoException
+import android.system.Os
+import android.system.OsConstants
+import com.better.alarm.BuildConfig
+import com.better.alarm.R
+import java.io.File
+
+object AndroidBuildFlags : BuildFlags {
+  override val isDebug: Boolean = BuildConfig.DEBUG
+}
+
+object LooperMainThread : MainThread {
+  override fun isCurrent(): Boolean = Looper.getMainLooper() == Looper.myLooper()
+}
+
+object OsDirectorySync : DirectorySync {
+  override fun sync(dir: File) {
+    try {
+      val fd = Os.open(dir.path, OsConstants.O_RDONLY, 0)
+      try {
+        Os.fsync(fd)
+      } finally {
+        Os.close(fd)
+      }
+    } catch (e: ErrnoException) {
+      throw e.rethrowAsIOException()
+    }
+  }
+}
+
+class AndroidStringResources(private val context: Context) : StringResources {
+  override val never: String
+    get() = context.getText(R.string.never).toString()
+
+  override val everyDay: String
+    get() = context.getText(R.string.every_day).toString()
+
+  override val dayConcat: String
+    get() = context.getText(R.string.day_concat).toString()
+}
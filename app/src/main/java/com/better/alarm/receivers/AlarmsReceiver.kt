@@ -16,62 +16,101 @@
 package com.better.alarm.receivers
 
 import android.app.AlarmManager
+import android.app.Application
 import android.content.BroadcastReceiver
 import android.content.Context
 import android.content.Intent
+import com.better.alarm.bootstrap.AlarmApplication
 import com.better.alarm.bootstrap.globalInject
 import com.better.alarm.bootstrap.globalLogger
 import com.better.alarm.data.AlarmsRepository
 import com.better.alarm.data.CalendarType
+import com.better.alarm.domain.AlarmSetter
+import com.better.alarm.domain.AlarmSetterImpl
 import com.better.alarm.domain.Alarms
 import com.better.alarm.domain.AlarmsScheduler
+import com.better.alarm.domain.Store
 import com.better.alarm.logger.Logger
 
 class AlarmsReceiver : BroadcastReceiver() {
   private val alarms: Alarms by globalInject()
   private val repository: AlarmsRepository by globalInject()
+  private val alarmSetter: AlarmSetter by globalInject()
+  private val store: Store by globalInject()
   private val log: Logger by globalLogger("AlarmsReceiver")
 
   override fun onReceive(context: Context, intent: Intent) {
-    when (intent.action) {
-      AlarmsScheduler.ACTION_FIRED -> {
-        val id = intent.getIntExtra(AlarmsScheduler.EXTRA_ID, -1)
-        val calendarType =
-            intent.extras?.getString(AlarmsScheduler.EXTRA_TYPE)?.let { CalendarType.valueOf(it) }
-        log.debug { "Fired $id $calendarType" }
-        alarms.getAlarm(id)?.let { alarms.onAlarmFired(it) }
-      }
-      AlarmsScheduler.ACTION_INEXACT_FIRED -> {
-        val id = intent.getIntExtra(AlarmsScheduler.EXTRA_ID, -1)
-        log.debug { "Fired  ACTION_INEXACT_FIRED $id" }
-        alarms.getAlarm(id)?.onInexactAlarmFired()
-      }
-      Intent.ACTION_BOOT_COMPLETED,
-      AlarmManager.ACTION_SCHEDULE_EXACT_ALARM_PERMISSION_STATE_CHANGED,
-      Intent.ACTION_TIMEZONE_CHANGED,
-      Intent.ACTION_LOCALE_CHANGED,
-      Intent.ACTION_MY_PACKAGE_REPLACED -> {
-        log.debug { "Refreshing alarms because of ${intent.action}" }
-        alarms.refresh()
-      }
-      Intent.ACTION_TIME_CHANGED -> alarms.onTimeSet()
-      PresentationToModelIntents.ACTION_REQUEST_SNOOZE -> {
-        val id = intent.getIntExtra(AlarmsScheduler.EXTRA_ID, -1)
-        log.debug { "Snooze $id" }
-        alarms.getAlarm(id)?.snooze()
-      }
-      PresentationToModelIntents.ACTION_REQUEST_DISMISS -> {
-        val id = intent.getIntExtra(AlarmsScheduler.EXTRA_ID, -1)
-        log.debug { "Dismiss $id" }
-        alarms.getAlarm(id)?.dismiss()
-      }
-      PresentationToModelIntents.ACTION_REQUEST_SKIP -> {
-        val id = intent.getIntExtra(AlarmsScheduler.EXTRA_ID, -1)
-        log.debug { "RequestSkip $id" }
-        alarms.getAlarm(id)?.requestSkip()
-      }
+    if (intent.action == AlarmSetterImpl.ACTION_FIRED && firedAlarmsAreGone(intent)) {
+      log.warning { "Fired ${firedIds(intent).contentToString()}, but they do not exist" }
+    } else {
+      // all commands need the alarms, wait for them if they are still being restored
+      AlarmApplication.startAlarmsBlocking(context.applicationContext as Application)
+      handle(intent)
     }
     repository.awaitStored()
     intent.getStringExtra("CB")?.let { cbAction -> context.sendBroadcast(Intent(cbAction)) }
   }
+
+  private fun handle(intent: Intent) {
+    // events of one command are conflated and delivered before the wakelock is released
+    store.batch {
+      when (intent.action) {
+        AlarmSetterImpl.ACTION_FIRED -> {
+          val ids = firedIds(intent)
+          val typeNames =
+              intent.getStringArrayExtra(AlarmsScheduler.EXTRA_TYPES)
+                  ?: arrayOf(intent.extras?.getString(AlarmsScheduler.EXTRA_TYPE))
+          ids.forEachIndexed { index, id ->
+            val calendarType = typeNames.getOrNull(index)?.let { CalendarType.valueOf(it) }
+            log.debug { "Fired $id $calendarType" }
+          }
+          alarms.onAlarmsFired(ids)
+        }
+        AlarmSetterImpl.ACTION_INEXACT_FIRED -> {
+          // all inexact alarms which are due are dispatched at once
+          val ids = alarmSetter.removeDueInexactAlarms()
+          log.debug { "Fired ACTION_INEXACT_FIRED ${ids.contentToString()}" }
+          alarms.onInexactAlarmsFired(ids)
+        }
+        Intent.ACTION_BOOT_COMPLETED,
+        AlarmManager.ACTION_SCHEDULE_EXACT_ALARM_PERMISSION_STATE_CHANGED,
+        Intent.ACTION_TIMEZONE_CHANGED,
+        Intent.ACTION_LOCALE_CHANGED,
+        Intent.ACTION_MY_PACKAGE_REPLACED -> {
+          log.debug { "Refreshing alarms because of ${intent.action}" }
+          alarms.refresh()
+        }
+        Intent.ACTION_TIME_CHANGED -> alarms.onTimeSet()
+        PresentationToModelIntents.ACTION_REQUEST_SNOOZE -> {
+          val id = intent.getIntExtra(AlarmsScheduler.EXTRA_ID, -1)
+          log.debug { "Snooze $id" }
+          alarms.getAlarm(id)?.snooze()
+        }
+        PresentationToModelIntents.ACTION_REQUEST_DISMISS -> {
+          val id = intent.getIntExtra(AlarmsScheduler.EXTRA_ID, -1)
+          log.debug { "Dismiss $id" }
+          alarms.getAlarm(id)?.dismiss()
+        }
+        PresentationToModelIntents.ACTION_REQUEST_SKIP -> {
+          val id = intent.getIntExtra(AlarmsScheduler.EXTRA_ID, -1)
+          log.debug { "RequestSkip $id" }
+          alarms.getAlarm(id)?.requestSkip()
+        }
+      }
+    }
+  }
+
+  /**
+   * Fired alarms are read from the alarm records, so that the receiver does not wait for all alarms
+   * to be restored if none of them exists anymore.
+   */
+  private fun firedAlarmsAreGone(intent: Intent): Boolean {
+    return firedIds(intent).none { id -> repository.peek(id) != null }
+  }
+
+  /** Alarms in the past are fired together, RTC alarm carries a single id */
+  private fun firedIds(intent: Intent): IntArray {
+    return intent.getIntArrayExtra(AlarmsScheduler.EXTRA_IDS)
+        ?: intArrayOf(intent.getIntExtra(AlarmsScheduler.EXTRA_ID, -1))
+  }
 }
@@ -1,19 +1,25 @@
 package com.better.alarm.receivers
 
+import android.app.Application
 import android.content.BroadcastReceiver
 import android.content.Context
 import android.content.Intent
+import com.better.alarm.bootstrap.AlarmApplication
 import com.better.alarm.bootstrap.globalInject
 import com.better.alarm.bootstrap.globalLogger
 import com.better.alarm.data.DatastoreMigration
+import com.better.alarm.domain.statemachine.TransitionTrace
 import com.better.alarm.logger.Logger
+import java.io.File
 
 class TestReceiver : BroadcastReceiver() {
   private val log: Logger by globalLogger("TestReceiver")
   private val migration: DatastoreMigration by globalInject()
+  private val transitionTrace: TransitionTrace by globalInject()
 
   override fun onReceive(context: Context?, intent: Intent?) {
     log.debug { intent?.action.orEmpty() }
+    AlarmApplication.startAlarmsBlocking(requireNotNull(context).applicationContext as Application)
     when (intent?.action) {
       ACTION_DROP -> {
         migration.drop()
@@ -26,6 +32,11 @@ class TestReceiver : BroadcastReceiver() {
         migration.drop()
         migration.migrateDatabase()
       }
+      ACTION_DUMP_TRANSITIONS -> {
+        val file = File(requireNotNull(context).filesDir, "transitions.csv")
+        file.writeText(transitionTrace.dump())
+        log.info { "Wrote ${transitionTrace.size} transitions to $file" }
+      }
       else -> error("Unexpected $intent")
     }
     intent.getStringExtra("CB")?.let { cbAction -> context?.sendBroadcast(Intent(cbAction)) }
@@ -37,5 +48,7 @@ class TestReceiver : BroadcastReceiver() {
         com.better.alarm.BuildConfig.APPLICATION_ID + ".ACTION_DROP_AND_INSERT_DEFAULTS"
     const val ACTION_DROP_AND_MIGRATE_DATABASE =
         com.better.alarm.BuildConfig.APPLICATION_ID + ".ACTION_DROP_AND_MIGRATE_DATABASE"
+    const val ACTION_DUMP_TRANSITIONS =
+        com.better.alarm.BuildConfig.APPLICATION_ID + ".ACTION_DUMP_TRANSITIONS"
   }
 }
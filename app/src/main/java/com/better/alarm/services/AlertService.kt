@@ -9,7 +9,6 @@ import com.better.alarm.logger.Logger
 import com.better.alarm.notifications.NotificationsPlugin
 import com.better.alarm.platform.Wakelocks
 import com.better.alarm.platform.isOreo
-import com.better.alarm.receivers.Intents
 import com.better.alarm.util.modify
 import com.better.alarm.util.requireValue
 import com.better.alarm.util.subscribeIn
@@ -17,7 +16,6 @@ import io.reactivex.Observable
 import io.reactivex.disposables.CompositeDisposable
 import io.reactivex.disposables.Disposable
 import io.reactivex.subjects.BehaviorSubject
-import java.util.Calendar
 
 interface AlertPlugin {
   fun go(
@@ -35,38 +33,6 @@ enum class TargetVolume {
   FADED_IN_FAST
 }
 
-sealed class Event {
-  data class NullEvent(val actions: String = "null") : Event()
-
-  data class AlarmEvent(val id: Int, val actions: String = Intents.ALARM_ALERT_ACTION) : Event()
-
-  data class PrealarmEvent(val id: Int, val actions: String = Intents.ALARM_PREALARM_ACTION) :
-      Event()
-
-  data class DismissEvent(val id: Int, val actions: String = Intents.ALARM_DISMISS_ACTION) :
-      Event()
-
-  data class SnoozedEvent(
-      val id: Int,
-      val calendar: Calendar,
-      val actions: String = Intents.ALARM_SNOOZE_ACTION
-  ) : Event()
-
-  data class ShowSkip(val id: Int, val actions: String = Intents.ALARM_SHOW_SKIP) : Event()
-
-  data class HideSkip(val id: Int, val actions: String = Intents.ALARM_REMOVE_SKIP) : Event()
-
-  data class CancelSnoozedEvent(val id: Int, val actions: String = Intents.ACTION_CANCEL_SNOOZE) :
-      Event()
-
-  data class Autosilenced(val id: Int, val actions: String = Intents.ACTION_SOUND_EXPIRED) :
-      Event()
-
-  data class MuteEvent(val actions: String = Intents.ACTION_MUTE) : Event()
-
-  data class DemuteEvent(val actions: String = Intents.ACTION_DEMUTE) : Event()
-}
-
 interface EnclosingService {
   fun handleUnwantedEvent()
 
@@ -11,10 +11,23 @@ import com.better.alarm.receivers.Intents
 import com.better.alarm.util.mapNotNull
 import com.better.alarm.util.subscribeForever
 
+/**
+ * Starts [AlertServiceWrapper] for the events which it handles, see [AlertServiceGate] for the
+ * events which are not pushed.
+ */
 class AlertServicePusher(store: Store, context: Context, wm: WakeLockManager, logger: Logger) {
+  private val gate = AlertServiceGate()
+
   init {
-    store.events
+    store.eventPipeline
+        .events()
         .mapNotNull {
+          if (!gate.shouldPush(it)) {
+            if (it is Event.DismissEvent) {
+              logger.debug { "Not pushing $it, alert was already dismissed" }
+            }
+            return@mapNotNull null
+          }
           when (it) {
             is Event.AlarmEvent ->
                 Intent(Intents.ALARM_ALERT_ACTION).apply { putExtra(Intents.EXTRA_ID, it.id) }
@@ -24,12 +37,7 @@ class AlertServicePusher(store: Store, context: Context, wm: WakeLockManager, lo
                 Intent(Intents.ALARM_DISMISS_ACTION).apply { putExtra(Intents.EXTRA_ID, it.id) }
             is Event.MuteEvent -> Intent(Intents.ACTION_MUTE)
             is Event.DemuteEvent -> Intent(Intents.ACTION_DEMUTE)
-            is Event.SnoozedEvent -> null
-            is Event.Autosilenced -> null
-            is Event.CancelSnoozedEvent -> null
-            is Event.ShowSkip -> null
-            is Event.HideSkip -> null
-            is Event.NullEvent -> throw RuntimeException("NullEvent")
+            else -> null
           }?.apply { setClass(context, AlertServiceWrapper::class.java) }
         }
         .subscribeForever { intent ->
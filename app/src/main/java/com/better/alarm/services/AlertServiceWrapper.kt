@@ -137,7 +137,7 @@ class AlertServiceWrapper : Service() {
   private lateinit var alertService: AlertService
 
   override fun onCreate() {
-    AlarmApplication.startOnce(application)
+    AlarmApplication.startAlarmsBlocking(application)
     alertService =
         koinApplication {
               modules(module())
@@ -64,7 +64,7 @@ class AlarmAlertFullScreen : FragmentActivity() {
   private var subscription: Disposable? = null
 
   override fun onCreate(icicle: Bundle?) {
-    AlarmApplication.startOnce(application)
+    AlarmApplication.startAlarmsBlocking(application)
     setTheme(dynamicThemeHandler.alertTheme())
     super.onCreate(icicle)
     requestedOrientation =
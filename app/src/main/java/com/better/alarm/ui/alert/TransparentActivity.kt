@@ -1,5 +1,6 @@
 package com.better.alarm.ui.alert
 
+import com.better.alarm.bootstrap.AlarmApplication
 import com.better.alarm.domain.IAlarmsManager
 import com.better.alarm.receivers.Intents
 import com.better.alarm.ui.timepicker.TimePickerDialogFragment
@@ -12,6 +13,7 @@ class TransparentActivity : androidx.fragment.app.FragmentActivity() {
 
   override fun onResume() {
     super.onResume()
+    AlarmApplication.startAlarmsBlocking(application)
     val id = intent.getIntExtra(Intents.EXTRA_ID, -1)
     val alarm = alarms.getAlarm(id)
     if (alarm != null) {
@@ -38,6 +38,7 @@ import com.better.alarm.data.Layout
 import com.better.alarm.data.Prefs
 import com.better.alarm.domain.IAlarmsManager
 import com.better.alarm.logger.Logger
+import com.better.alarm.platform.AndroidStringResources
 import com.better.alarm.platform.checkPermissions
 import com.better.alarm.ui.main.AlarmsListActivity
 import com.better.alarm.ui.ringtonepicker.getPickedRingtone
@@ -188,7 +189,9 @@ class AlarmDetailsFragment : Fragment() {
             .subscribe { fromDialog ->
               modify("Repeat dialog") { prev ->
                 prev.copy(
-                    isEnabled = true, daysOfWeek = fromDialog.daysOfWeek, date = fromDialog.date)
+                    isEnabled = true,
+                    daysOfWeek = fromDialog.daysOfWeek,
+                    dateEpochDay = fromDialog.dateEpochDay)
               }
             }
             .addTo(disposables)
@@ -201,14 +204,15 @@ class AlarmDetailsFragment : Fragment() {
     observeEditor { value ->
       repeatTitle.text =
           when {
-            value.date != null -> requireContext().getString(R.string.date)
+            value.hasDate -> requireContext().getString(R.string.date)
             else -> requireContext().getString(R.string.alarm_repeat)
           }
 
       repeatSummary.text =
           when {
-            value.date != null -> SimpleDateFormat.getDateInstance().format(value.date.time)
-            else -> value.daysOfWeek.toString(requireContext(), true)
+            value.hasDate ->
+                SimpleDateFormat.getDateInstance().format(requireNotNull(value.date).time)
+            else -> value.daysOfWeek.toString(AndroidStringResources(requireContext()), true)
           }
     }
 
@@ -226,7 +230,7 @@ class AlarmDetailsFragment : Fragment() {
   }
 
   private fun AlarmValue.isValid(): Boolean {
-    return when (date) {
+    return when (val date = date) {
       null -> true
       else -> {
         val nextTime =
@@ -77,12 +77,11 @@ private fun AlertDialog.bindView(context: Context, initial: AlarmValue): () -> A
       }
       .attach()
 
-  tabLayout.selectTab(tabLayout.getTabAt(if (initial.date != null) 1 else 0))
+  tabLayout.selectTab(tabLayout.getTabAt(if (initial.hasDate) 1 else 0))
   return {
-    initial.copy(
-        daysOfWeek = repeatAdapter.repeatDays,
-        date = if (tabLayout.selectedTabPosition == 1) selectedDate.get() else null,
-    )
+    initial
+        .withDate(if (tabLayout.selectedTabPosition == 1) selectedDate.get() else null)
+        .copy(daysOfWeek = repeatAdapter.repeatDays)
   }
 }
 
@@ -40,7 +40,7 @@ class HandleSetAlarm : Activity() {
 
   override fun onCreate(icicle: Bundle?) {
     super.onCreate(icicle)
-    AlarmApplication.startOnce(application)
+    AlarmApplication.startAlarmsBlocking(application)
     val intent = intent
     when {
       intent == null || intent.action != AlarmClock.ACTION_SET_ALARM -> {
@@ -9,6 +9,7 @@ import com.better.alarm.R
 import com.better.alarm.data.AlarmValue
 import com.better.alarm.data.Layout
 import com.better.alarm.logger.Logger
+import com.better.alarm.platform.AndroidStringResources
 import com.better.alarm.ui.row.ListRowHighlighter
 import com.better.alarm.ui.row.RowHolder
 import java.text.SimpleDateFormat
@@ -123,9 +124,9 @@ class AlarmListAdapter(
   }
 
   private fun daysOfWeekStringWithSkip(alarm: AlarmValue): String {
-    val daysOfWeekStr = alarm.daysOfWeek.toString(context, false)
+    val daysOfWeekStr = alarm.daysOfWeek.toString(AndroidStringResources(context), false)
     return when {
-      alarm.date != null -> SimpleDateFormat.getDateInstance().format(alarm.date.time)
+      alarm.hasDate -> SimpleDateFormat.getDateInstance().format(requireNotNull(alarm.date).time)
       alarm.skipping -> "$daysOfWeekStr (skipping)"
       else -> daysOfWeekStr
     }
@@ -18,6 +18,7 @@ import androidx.core.view.doOnPreDraw
 import androidx.fragment.app.Fragment
 import com.better.alarm.R
 import com.better.alarm.bootstrap.globalLogger
+import com.better.alarm.data.AlarmValue
 import com.better.alarm.data.Prefs
 import com.better.alarm.domain.IAlarmsManager
 import com.better.alarm.domain.Store
@@ -78,6 +79,21 @@ class AlarmsListFragment : Fragment() {
   private var timePickerDialogDisposable = Disposables.disposed()
 
   companion object {
+    /** Other alarms first, then daily alarms, weekdays and weekends, each group by time */
+    private val alarmsOrder: Comparator<AlarmValue> =
+        compareBy<AlarmValue>(
+            {
+              when (it.daysOfWeek.coded) {
+                0x7F -> 1
+                0x1F -> 2
+                0x60 -> 3
+                else -> 0
+              }
+            },
+            { it.hour },
+            { it.minutes },
+            { it.id })
+
     var fabSync: Channel<Unit>? = null
   }
 
@@ -147,20 +163,10 @@ class AlarmsListFragment : Fragment() {
 
     (fab as FloatingActionButton).attachToListView(listView)
 
+    var sorted = emptyList<AlarmValue>()
     alarmsSub =
-        store.alarms().subscribe { alarms ->
-          val sorted =
-              alarms //
-                  .sortedBy { it.minutes }
-                  .sortedBy { it.hour }
-                  .sortedBy {
-                    when (it.daysOfWeek.coded) {
-                      0x7F -> 1
-                      0x1F -> 2
-                      0x60 -> 3
-                      else -> 0
-                    }
-                  }
+        store.alarmChanges().subscribe { change ->
+          sorted = sorted.applyChange(change)
           mAdapter.dataset = sorted
         }
 
@@ -176,6 +182,28 @@ class AlarmsListFragment : Fragment() {
     return view
   }
 
+  /**
+   * Returns a new list without the changed and removed alarms, into which the changed and added
+   * alarms are merged at their sorted positions. The whole change is applied in one pass, so that
+   * the list does not have to be sorted again and is copied once.
+   */
+  private fun List<AlarmValue>.applyChange(change: Store.AlarmsChange): List<AlarmValue> {
+    val ids = (change.removed + change.changed.map { it.id }).toHashSet()
+    val inserted = (change.changed + change.added).sortedWith(alarmsOrder)
+    val merged = ArrayList<AlarmValue>(size + inserted.size)
+    var next = 0
+    forEach { alarm ->
+      if (alarm.id !in ids) {
+        while (next < inserted.size && alarmsOrder.compare(inserted[next], alarm) < 0) {
+          merged.add(inserted[next++])
+        }
+        merged.add(alarm)
+      }
+    }
+    merged.addAll(inserted.subList(next, inserted.size))
+    return merged
+  }
+
   private fun configureBottomDrawer(view: View) {
     val drawerContainer: View = view.findViewById<View>(R.id.bottom_drawer_container)
     val bottomDrawerToolbar = view.findViewById<View>(R.id.bottom_drawer_toolbar)
@@ -1,6 +1,7 @@
 package com.better.alarm
 
 import com.better.alarm.data.Alarmtone
+import com.better.alarm.data.defaultAlarmAlertUri
 import com.better.alarm.logger.Logger
 import com.better.alarm.services.KlaxonPlugin
 import com.better.alarm.services.Player
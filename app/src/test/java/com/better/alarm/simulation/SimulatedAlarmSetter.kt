@@ -0,0 +1,104 @@
+package com.better.alarm.simulation
+
+import com.better.alarm.domain.AlarmSetter
+import com.better.alarm.domain.InexactAlarmsTimer
+import io.reactivex.disposables.Disposable
+import io.reactivex.disposables.Disposables
+import io.reactivex.schedulers.TestScheduler
+import java.util.Calendar
+import java.util.concurrent.TimeUnit
+
+/**
+ * [AlarmSetter] which delivers RTC and inexact alarms at virtual instants of the [clock]. Like the
+ * AlarmManager, alarms are set for the wall time and are re-scheduled if it is changed, see
+ * [onTimeChanged]. Inexact alarms are delivered [inexactLatency] late, AlarmManager never delivers
+ * them at the exact millisecond.
+ */
+class SimulatedAlarmSetter(
+    private val clock: VirtualClock,
+    private val scheduler: TestScheduler,
+    private val onFired: (ids: IntArray, typeNames: Array<String>) -> Unit,
+    private val onInexactFired: () -> Unit,
+    private val inexactLatency: Long = TimeUnit.SECONDS.toMillis(5),
+) : AlarmSetter {
+  private var rtc: Rtc? = null
+  private var rtcTask: Disposable = Disposables.disposed()
+  private var inexactMillis: Long? = null
+  private var inexactTask: Disposable = Disposables.disposed()
+  private val inexactAlarms =
+      InexactAlarmsTimer(
+          arm = { millis ->
+            inexactMillis = millis
+            scheduleInexact()
+          },
+          cancel = {
+            inexactMillis = null
+            inexactTask.dispose()
+          })
+
+  /** Number of alarms registered with the simulated AlarmManager */
+  var registrations = 0
+    private set
+
+  private class Rtc(val id: Int, val typeName: String, val millis: Long)
+
+  override fun setUpRTCAlarm(id: Int, typeName: String, calendar: Calendar) {
+    rtc = Rtc(id, typeName, calendar.timeInMillis)
+    scheduleRtc()
+  }
+
+  override fun removeRTCAlarm() {
+    rtc = null
+    rtcTask.dispose()
+  }
+
+  override fun fireNow(ids: IntArray, typeNames: Array<String>) {
+    scheduler.scheduleDirect { onFired(ids, typeNames) }
+  }
+
+  override fun setInexactAlarm(id: Int, calendar: Calendar) {
+    inexactAlarms.set(id, calendar.timeInMillis)
+  }
+
+  override fun removeInexactAlarm(id: Int) {
+    inexactAlarms.remove(id)
+  }
+
+  override fun removeDueInexactAlarms(): IntArray {
+    return inexactAlarms.pollDue(clock.nowMillis())
+  }
+
+  /** Wall clock was changed, alarms are delivered according to the new time. */
+  fun onTimeChanged() {
+    if (rtc != null) scheduleRtc()
+    if (inexactMillis != null) scheduleInexact()
+  }
+
+  private fun scheduleRtc() {
+    val alarm = requireNotNull(rtc)
+    registrations++
+    rtcTask.dispose()
+    rtcTask =
+        scheduler.scheduleDirect(
+            {
+              rtc = null
+              onFired(intArrayOf(alarm.id), arrayOf(alarm.typeName))
+            },
+            clock.delayUntil(alarm.millis),
+            TimeUnit.MILLISECONDS)
+  }
+
+  private fun scheduleInexact() {
+    val millis = requireNotNull(inexactMillis)
+    registrations++
+    inexactTask.dispose()
+    inexactTask =
+        scheduler.scheduleDirect(
+            {
+              inexactMillis = null
+              onInexactFired()
+            },
+            clock.delayUntil(millis) + inexactLatency,
+            TimeUnit.MILLISECONDS)
+  }
+}
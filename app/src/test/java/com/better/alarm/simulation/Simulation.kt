@@ -0,0 +1,291 @@
+package com.better.alarm.simulation
+
+import com.better.alarm.data.AlarmStore
+import com.better.alarm.data.AlarmValue
+import com.better.alarm.data.AlarmsRepository
+import com.better.alarm.data.Prefs
+import com.better.alarm.data.contentprovider.DatabaseQuery
+import com.better.alarm.data.stores.InMemoryRxDataStoreFactory
+import com.better.alarm.domain.AlarmStateNotifier
+import com.better.alarm.domain.Alarms
+import com.better.alarm.domain.AlarmsScheduler
+import com.better.alarm.domain.Store
+import com.better.alarm.logger.Logger
+import com.better.alarm.notifications.NotificationsPlugin
+import com.better.alarm.platform.AndroidBuildFlags
+import com.better.alarm.platform.Wakelocks
+import com.better.alarm.services.AlertService
+import com.better.alarm.services.AlertServiceGate
+import com.better.alarm.services.EnclosingService
+import com.better.alarm.services.Event
+import com.better.alarm.services.EventPipeline
+import com.better.alarm.services.KlaxonPlugin
+import com.better.alarm.services.Player
+import com.better.alarm.util.Optional
+import io.mockk.mockk
+import io.reactivex.Observable
+import io.reactivex.Single
+import io.reactivex.schedulers.TestScheduler
+import io.reactivex.subjects.BehaviorSubject
+import io.reactivex.subjects.PublishSubject
+import java.util.TimeZone
+import java.util.concurrent.TimeUnit
+import org.slf4j.helpers.NOPLogger
+
+/**
+ * Runs the whole alarm domain in virtual time: [Alarms] with their state machines,
+ * [AlarmsScheduler], [AlertService] and the fade-in of the [KlaxonPlugin].
+ *
+ * Single [TestScheduler] drives the [clock], alarms of the [SimulatedAlarmSetter] and Rx timers.
+ * [runUntil] executes everything which happens until the given wall time as fast as possible.
+ * Alarms are delivered with [Alarms.onAlarmsFired] and [Alarms.onInexactAlarmsFired] like
+ * AlarmsReceiver does it, events of the [EventPipeline] which pass the [AlertServiceGate] of the
+ * AlertServicePusher are handled by the [AlertService]. Every delivery and user action is an
+ * operation which is timed for [stats].
+ */
+class Simulation(startMillis: Long, zone: TimeZone) {
+  val scheduler = TestScheduler()
+  val clock = VirtualClock(scheduler, startMillis, zone)
+  private val logger = Logger(NOPLogger.NOP_LOGGER)
+
+  val prefs: Prefs =
+      Prefs.create(Single.just(true), InMemoryRxDataStoreFactory.create()).apply {
+        snoozeDuration.value = 10
+        autoSilence.value = 10
+        preAlarmDuration.value = 30
+        skipDuration.value = 120
+        fadeInTimeInSeconds.value = 30
+      }
+
+  val store =
+      Store(
+          alarmsSubject = BehaviorSubject.createDefault(ArrayList()),
+          next = BehaviorSubject.createDefault<Optional<Store.Next>>(Optional.absent()),
+          sets = PublishSubject.create(),
+          events = PublishSubject.create())
+
+  val setter =
+      SimulatedAlarmSetter(
+          clock,
+          scheduler,
+          onFired = { ids, typeNames -> operation { onFired(ids, typeNames) } },
+          onInexactFired = { operation { onInexactFired() } })
+
+  private val repository = SimulatedRepository()
+  private val alarmsScheduler = AlarmsScheduler(setter, logger, store, prefs, clock)
+
+  val alarms =
+      Alarms(
+          prefs,
+          store,
+          clock,
+          alarmsScheduler,
+          AlarmStateNotifier(store),
+          repository,
+          logger,
+          mockk<DatabaseQuery>(relaxed = true),
+          AndroidBuildFlags)
+
+  private val gate = AlertServiceGate()
+  private var alertService: AlertService? = null
+  private val notifications: NotificationsPlugin = mockk(relaxed = true)
+
+  /** Changes of the volume made by the [KlaxonPlugin], e.g. fade-in steps */
+  var volumeChanges = 0
+    private set
+
+  private val latencies = Latencies()
+  private var operations = 0L
+
+  init {
+    store.eventPipeline.events().subscribe { event -> pushToAlertService(event) }
+    alarms.start()
+    alarmsScheduler.start()
+  }
+
+  /** Executes everything which happens until the wall clock shows [wallMillis]. */
+  fun runUntil(wallMillis: Long) {
+    scheduler.advanceTimeBy(clock.delayUntil(wallMillis), TimeUnit.MILLISECONDS)
+  }
+
+  /** Performs the [action] as an operation in [delayMillis], e.g. a reaction of the user. */
+  fun schedule(delayMillis: Long, action: () -> Unit) {
+    scheduler.scheduleDirect({ operation(action) }, delayMillis, TimeUnit.MILLISECONDS)
+  }
+
+  /** Time was set by the user, see Intent.ACTION_TIME_CHANGED. */
+  fun setTime(wallMillis: Long) = operation {
+    clock.setTime(wallMillis)
+    setter.onTimeChanged()
+    alarms.onTimeSet()
+  }
+
+  /** Timezone was changed, see Intent.ACTION_TIMEZONE_CHANGED. */
+  fun setZone(zone: TimeZone) = operation {
+    clock.zone = zone
+    alarms.refresh()
+  }
+
+  /** Executes and times an operation. */
+  fun <T> operation(action: () -> T): T {
+    val start = System.nanoTime()
+    try {
+      return action()
+    } finally {
+      latencies.add(System.nanoTime() - start)
+      operations++
+    }
+  }
+
+  fun stats(wallNanos: Long): SimulationStats {
+    return SimulationStats(
+        operations = operations,
+        transitions = repository.transitions,
+        registrations = setter.registrations,
+        volumeChanges = volumeChanges,
+        wallNanos = wallNanos,
+        latencies = latencies)
+  }
+
+  private fun onFired(ids: IntArray, typeNames: Array<String>) {
+    alarms.onAlarmsFired(ids)
+  }
+
+  private fun onInexactFired() {
+    alarms.onInexactAlarmsFired(setter.removeDueInexactAlarms())
+  }
+
+  /** AlertServiceWrapper starts the [AlertService] for the first event and passes all to it */
+  private fun pushToAlertService(event: Event) {
+    if (!gate.shouldPush(event)) return
+    val service = alertService ?: createAlertService().also { alertService = it }
+    service.onStartCommand(event)
+  }
+
+  private fun createAlertService(): AlertService {
+    return AlertService(
+        log = logger,
+        wakelocks =
+            object : Wakelocks {
+              override fun acquireServiceLock() = Unit
+
+              override fun releaseServiceLock() = Unit
+            },
+        alarms = alarms,
+        inCall = Observable.just(false),
+        plugins =
+            listOf(
+                KlaxonPlugin(
+                    log = logger,
+                    playerFactory = { SimulatedPlayer() },
+                    prealarmVolume = prefs.preAlarmVolume.observe(),
+                    fadeInTimeInMillis = prefs.fadeInTimeInSeconds.observe().map { it * 1000 },
+                    inCall = Observable.just(false),
+                    scheduler = scheduler)),
+        notifications = notifications,
+        enclosing =
+            object : EnclosingService {
+              override fun handleUnwantedEvent() = Unit
+
+              override fun stopSelf() {
+                alertService?.onDestroy()
+                alertService = null
+              }
+
+              override fun startForeground(id: Int, notification: android.app.Notification) = Unit
+            },
+        prefs = prefs,
+    )
+  }
+
+  private inner class SimulatedPlayer : Player {
+    override fun startAlarm() = Unit
+
+    override fun setDataSourceFromResource(res: Int) = Unit
+
+    override fun setPerceivedVolume(perceived: Float) {
+      volumeChanges++
+    }
+
+    override fun stop() = Unit
+
+    override fun reset() = Unit
+
+    override fun setDataSource(uri: String) = Unit
+  }
+
+  /** In-memory repository which counts changes of the state of the alarms. */
+  private class SimulatedRepository : AlarmsRepository {
+    private val stores = mutableListOf<AlarmStore>()
+    private var nextId = 0
+    var transitions = 0L
+
+    override fun create(): AlarmStore {
+      val storeId = nextId++
+      return object : AlarmStore {
+            override val id: Int = storeId
+            override var value: AlarmValue = AlarmValue(id = storeId)
+              set(value) {
+                if (field.state != value.state) transitions++
+                field = value
+              }
+
+            override fun delete() {
+              stores.remove(this)
+            }
+          }
+          .also { stores.add(it) }
+    }
+
+    override fun query(): List<AlarmStore> = stores.toList()
+
+    override val initialized: Boolean = true
+
+    override fun awaitStored() = Unit
+  }
+}
+
+/** Durations of operations in nanoseconds. */
+class Latencies {
+  private var values = LongArray(1024)
+  var size = 0
+    private set
+
+  fun add(nanos: Long) {
+    if (size == values.size) values = values.copyOf(size * 2)
+    values[size++] = nanos
+  }
+
+  /** Latency at the given [percentile] (0..100) */
+  fun percentile(percentile: Double): Long {
+    if (size == 0) return 0
+    val sorted = values.copyOf(size).apply { sort() }
+    return sorted[((size - 1) * percentile / 100).toInt()]
+  }
+}
+
+data class SimulationStats(
+    val operations: Long,
+    val transitions: Long,
+    val registrations: Int,
+    val volumeChanges: Int,
+    val wallNanos: Long,
+    val latencies: Latencies,
+) {
+  private val seconds: Double
+    get() = wallNanos / 1e9
+
+  val transitionsPerSecond: Double
+    get() = transitions / seconds
+
+  override fun toString(): String {
+    fun micros(nanos: Long) = "%.1f µs".format(nanos / 1000.0)
+    return "operations: $operations, transitions: $transitions, " +
+        "AlarmManager registrations: $registrations, volume changes: $volumeChanges\n" +
+        "wall time: %.2f s, %.0f transitions/s, %.0f operations/s\n"
+            .format(seconds, transitionsPerSecond, operations / seconds) +
+        "latency p50: ${micros(latencies.percentile(50.0))}, " +
+        "p99: ${micros(latencies.percentile(99.0))}, " +
+        "max: ${micros(latencies.percentile(100.0))}"
+  }
+}
@@ -0,0 +1,199 @@
+package com.better.alarm.simulation
+
+import com.better.alarm.data.DaysOfWeek
+import com.better.alarm.domain.Alarm
+import com.better.alarm.services.Event
+import io.reactivex.plugins.RxJavaPlugins
+import java.util.Calendar
+import java.util.Random
+import java.util.TimeZone
+import java.util.concurrent.TimeUnit
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.fail
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * Runs alarms through a simulated year with DST switches, timezone changes, manual time changes,
+ * snoozes and skips. Number of alarms can be changed with `-Dsimulation.alarms=1000` to use it as a
+ * throughput harness.
+ */
+class SimulationTest {
+  private val berlin = TimeZone.getTimeZone("Europe/Berlin")
+  private val newYork = TimeZone.getTimeZone("America/New_York")
+  private val random = Random(42)
+  private val rxErrors = mutableListOf<Throwable>()
+  private val alarmsCount = System.getProperty("simulation.alarms")?.toInt() ?: 20
+
+  private val start =
+      Calendar.getInstance(berlin).run {
+        clear()
+        set(2024, Calendar.JANUARY, 1)
+        timeInMillis
+      }
+  private val end = start + TimeUnit.DAYS.toMillis(366)
+
+  /** Wall times after which alarms are not expected at the exact time of day */
+  private val timeChanges = mutableListOf<Long>()
+
+  private class Fire(val millis: Long, val zone: TimeZone, val snoozed: Boolean)
+
+  private val fires = mutableMapOf<Int, MutableList<Fire>>()
+  /** Number of snoozes of the current alert */
+  private val snoozed = mutableMapOf<Int, Int>()
+  private val snoozeRequested = mutableSetOf<Int>()
+  private val skips = mutableMapOf<Int, Int>()
+  private val skipShown = mutableSetOf<Int>()
+
+  @Before
+  fun setUp() {
+    RxJavaPlugins.setErrorHandler { rxErrors.add(it) }
+  }
+
+  @After
+  fun tearDown() {
+    RxJavaPlugins.setErrorHandler(null)
+  }
+
+  @Test
+  fun `simulated year`() {
+    val simulation = Simulation(start, berlin)
+    val created =
+        (0 until alarmsCount).map { index ->
+          simulation.alarms.createNewAlarm().apply {
+            edit {
+              copy(
+                  isEnabled = true,
+                  hour = random.nextInt(24),
+                  // many alarms share a minute
+                  minutes = if (index % 2 == 0) 0 else random.nextInt(60),
+                  daysOfWeek = DaysOfWeek(if (index % 3 == 0) 0x7f else 1 + random.nextInt(0x7f)),
+                  isPrealarm = index % 4 == 0,
+              )
+            }
+          }
+        }
+
+    simulation.store.events.subscribe { event -> reactTo(simulation, event) }
+
+    val startNanos = System.nanoTime()
+    simulate(simulation)
+    val stats = simulation.stats(System.nanoTime() - startNanos)
+
+    assertThat(rxErrors).isEmpty()
+    created.forEach { alarm -> verifyFires(alarm) }
+    assertThat(stats.transitions).isGreaterThan(0)
+    assertThat(stats.registrations).isGreaterThan(0)
+    // every alert fades in
+    assertThat(stats.volumeChanges).isGreaterThan(0)
+  }
+
+  /** Runs the year, changes timezone and time a couple of times. */
+  private fun simulate(simulation: Simulation) {
+    val day = TimeUnit.DAYS.toMillis(1)
+    simulation.runUntil(start + 50 * day)
+    // clock was 7 minutes behind
+    timeChanges.add(simulation.clock.nowMillis())
+    simulation.setTime(simulation.clock.nowMillis() + TimeUnit.MINUTES.toMillis(7))
+    simulation.runUntil(start + 120 * day)
+    timeChanges.add(simulation.clock.nowMillis())
+    simulation.setZone(newYork)
+    simulation.runUntil(start + 140 * day)
+    timeChanges.add(simulation.clock.nowMillis())
+    simulation.setZone(berlin)
+    simulation.runUntil(start + 250 * day)
+    timeChanges.add(simulation.clock.nowMillis())
+    simulation.setTime(simulation.clock.nowMillis() - TimeUnit.MINUTES.toMillis(3))
+    simulation.runUntil(end)
+  }
+
+  /** User dismisses most alarms, snoozes some, sometimes does nothing and sometimes skips. */
+  private fun reactTo(simulation: Simulation, event: Event) {
+    when (event) {
+      is Event.AlarmEvent -> {
+        // snoozing also sends a DismissEvent, so snoozes are counted when the alarm fires again
+        val snoozes = if (snoozeRequested.remove(event.id)) (snoozed[event.id] ?: 0) + 1 else 0
+        snoozed[event.id] = snoozes
+        fires
+            .getOrPut(event.id) { mutableListOf() }
+            .add(Fire(simulation.clock.nowMillis(), simulation.clock.zone, snoozes > 0))
+        val dice = random.nextInt(100)
+        val alarm = simulation.alarms.getAlarm(event.id) ?: return
+        simulation.schedule(TimeUnit.SECONDS.toMillis(30L + random.nextInt(150))) {
+          when {
+            // autosilenced
+            dice < 5 -> Unit
+            dice < 30 && snoozes < 2 -> alarm.snooze()
+            else -> alarm.dismiss()
+          }
+        }
+      }
+      is Event.SnoozedEvent -> snoozeRequested.add(event.id)
+      is Event.ShowSkip -> {
+        skipShown.add(event.id)
+        if (random.nextInt(100) < 5) {
+          val alarm = simulation.alarms.getAlarm(event.id) ?: return
+          // user can only tap the notification while it is shown
+          simulation.schedule(0) { if (alarm.id in skipShown) requestSkip(alarm) }
+        }
+      }
+      is Event.HideSkip -> skipShown.remove(event.id)
+      else -> Unit
+    }
+  }
+
+  private fun requestSkip(alarm: Alarm) {
+    alarm.requestSkip()
+    if (alarm.isSkipping()) {
+      skips[alarm.id] = (skips[alarm.id] ?: 0) + 1
+    }
+  }
+
+  /**
+   * Alarm must go off on every day it is set for, at the time of day it is set for, except the days
+   * which were skipped and days around timezone changes.
+   */
+  private fun verifyFires(alarm: Alarm) {
+    val value = alarm.data
+    val alarmFires = fires[alarm.id].orEmpty().filter { !it.snoozed }
+    val expected = expectedDays(value.daysOfWeek)
+    val actual = alarmFires.size + (skips[alarm.id] ?: 0)
+    if (actual !in expected - timeChanges.size..expected + timeChanges.size) {
+      fail("$value went off $actual times instead of $expected")
+    }
+
+    alarmFires
+        .filter { fire -> timeChanges.none { fire.millis in it..it + TimeUnit.HOURS.toMillis(1) } }
+        .forEach { fire ->
+          val local = Calendar.getInstance(fire.zone).apply { timeInMillis = fire.millis }
+          val inGap =
+              fire.zone.getOffset(fire.millis - TimeUnit.HOURS.toMillis(2)) !=
+                  fire.zone.getOffset(fire.millis)
+          val timeOfDay = local.get(Calendar.HOUR_OF_DAY) to local.get(Calendar.MINUTE)
+          if (!inGap && timeOfDay != value.hour to value.minutes) {
+            fail("$value went off at ${local.time} in ${fire.zone.id}")
+          }
+          val dayIndex = (local.get(Calendar.DAY_OF_WEEK) + 5) % 7
+          if (!value.daysOfWeek.isDaySet(dayIndex)) {
+            fail("$value went off on ${local.time} in ${fire.zone.id}")
+          }
+        }
+
+    val sorted = alarmFires.map { it.millis }.sorted()
+    sorted.zipWithNext().forEach { (prev, next) ->
+      if (next - prev < TimeUnit.HOURS.toMillis(1)) fail("$value went off twice at $next")
+    }
+  }
+
+  /** Days of the simulated year on which the alarm is set. */
+  private fun expectedDays(daysOfWeek: DaysOfWeek): Int {
+    val calendar = Calendar.getInstance(berlin).apply { timeInMillis = start }
+    var days = 0
+    while (calendar.timeInMillis < end) {
+      if (daysOfWeek.isDaySet((calendar.get(Calendar.DAY_OF_WEEK) + 5) % 7)) days++
+      calendar.add(Calendar.DAY_OF_YEAR, 1)
+    }
+    return days
+  }
+}
@@ -0,0 +1,37 @@
+package com.better.alarm.simulation
+
+import com.better.alarm.domain.Calendars
+import io.reactivex.schedulers.TestScheduler
+import java.util.Calendar
+import java.util.TimeZone
+import java.util.concurrent.TimeUnit
+
+/**
+ * Wall clock which is driven by the virtual time of the [scheduler].
+ *
+ * Everything scheduled on the [scheduler], including alarms of the [SimulatedAlarmSetter] and Rx
+ * timers of the plugins, sees the same time. Wall clock can be changed with [setTime] and [zone]
+ * the same way as the user can change it in the system settings.
+ */
+class VirtualClock(
+    private val scheduler: TestScheduler,
+    startMillis: Long,
+    var zone: TimeZone,
+) : Calendars {
+  /** Difference between the wall clock and the time of the [scheduler] */
+  private var offset = startMillis - scheduler.now(TimeUnit.MILLISECONDS)
+
+  override fun now(): Calendar = Calendar.getInstance(zone).apply { timeInMillis = nowMillis() }
+
+  override fun nowMillis(): Long = scheduler.now(TimeUnit.MILLISECONDS) + offset
+
+  override fun zone(): TimeZone = zone
+
+  /** Delay of the [scheduler] until the wall clock shows [wallMillis]. */
+  fun delayUntil(wallMillis: Long): Long = maxOf(0, wallMillis - nowMillis())
+
+  /** Sets the wall clock, time of the [scheduler] is not affected. */
+  fun setTime(wallMillis: Long) {
+    offset += wallMillis - nowMillis()
+  }
+}
@@ -0,0 +1,44 @@
+plugins {
+  kotlin("jvm")
+  id("me.champeau.jmh") version "0.6.8"
+}
+
+// ./gradlew :benchmarks:jmh
+// ./gradlew :benchmarks:jmh -Pjmh.includes=AlarmsSchedulerBenchmark
+
+val core = project(":core")
+
+/**
+ * Classes of the core module, benchmarks access its internal classes the same as unit tests do.
+ * Depending on the task, the project dependency resolves to the classes or to the jar.
+ */
+val coreClasses =
+    files(
+        core.layout.buildDirectory.dir("classes/kotlin/main"),
+        core.layout.buildDirectory.file("libs/core.jar"),
+    )
+
+jmh {
+  jmhVersion.set("1.37")
+  // allocation rate, see -prof gc
+  profilers.add("gc")
+  fork.set(1)
+  warmupIterations.set(3)
+  iterations.set(5)
+  resultFormat.set("JSON")
+  findProperty("jmh.includes")?.let { includes.set(listOf(it.toString())) }
+}
+
+tasks.withType<org.jetbrains.kotlin.gradle.tasks.KotlinCompile>().configureEach {
+  kotlinOptions {
+    jvmTarget = "1.8"
+    freeCompilerArgs = freeCompilerArgs + "-Xfriend-paths=${coreClasses.files.joinToString(",")}"
+  }
+}
+
+java {
+  sourceCompatibility = JavaVersion.VERSION_1_8
+  targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+dependencies { jmhImplementation(project(":core")) }
@@ -0,0 +1,86 @@
+package com.better.alarm.benchmarks
+
+import com.better.alarm.domain.AlarmCore
+import com.better.alarm.domain.AlarmStateNotifier
+import com.better.alarm.domain.Alarms
+import com.better.alarm.domain.AlarmsScheduler
+import java.util.concurrent.TimeUnit
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+/**
+ * [AlarmCore] transitions with a population of alarms. Alarms are created through [Alarms] the same
+ * way the user creates them, so that every alarm is in the state which matches its value.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class AlarmCoreBenchmark {
+  @Param("10", "1000", "10000") var alarms: Int = 0
+
+  private lateinit var domain: Alarms
+  /** Enabled repeating alarms, they stay enabled after they are dismissed */
+  private lateinit var repeating: Array<AlarmCore>
+  private var index = 0
+
+  @Setup
+  fun setUp() {
+    val calendars = BenchmarkCalendars()
+    val store = createStore()
+    val prefs = createPrefs()
+    val scheduler = AlarmsScheduler(NoopAlarmSetter, nopLogger, store, prefs, calendars)
+    domain =
+        Alarms(
+            prefs,
+            store,
+            calendars,
+            scheduler,
+            AlarmStateNotifier(store),
+            InMemoryAlarmsRepository(),
+            nopLogger,
+            NoopDatabaseQuery,
+            ReleaseBuildFlags,
+        )
+    domain.start()
+    scheduler.start()
+    val ids =
+        createAlarmValues(alarms).map { value ->
+          domain.createNewAlarm().apply { edit { value.copy(id = id) } }.id
+        }
+    repeating =
+        ids.mapNotNull { id -> domain.getAlarm(id) }
+            .filter { it.data.isEnabled && it.data.isRepeatSet }
+            .toTypedArray()
+  }
+
+  /** Alarm goes off and is dismissed: set > fired > reschedule > set */
+  @Benchmark
+  fun fireAndDismiss() {
+    val alarm = next()
+    domain.onAlarmFired(alarm)
+    alarm.dismiss()
+  }
+
+  /** Alarm is changed by the user: set > enable > set */
+  @Benchmark
+  fun change() {
+    next().edit { copy(minutes = (minutes + 1) % 60) }
+  }
+
+  /** Timezone or locale has changed, all alarms are refreshed in one batch */
+  @Benchmark
+  fun refreshAll() {
+    domain.refresh()
+  }
+
+  private fun next(): AlarmCore {
+    if (index == repeating.size) index = 0
+    return repeating[index++]
+  }
+}
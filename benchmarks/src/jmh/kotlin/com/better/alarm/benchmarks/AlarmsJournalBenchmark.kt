@@ -0,0 +1,101 @@
+package com.better.alarm.benchmarks
+
+import com.better.alarm.data.AlarmValue
+import com.better.alarm.data.AlarmValues
+import com.better.alarm.data.AlarmsJournal
+import com.better.alarm.data.ProtobufSerializer
+import java.io.File
+import java.io.FileOutputStream
+import java.nio.file.Files
+import java.util.concurrent.TimeUnit
+import kotlinx.serialization.protobuf.ProtoBuf
+import org.openjdk.jmh.annotations.AuxCounters
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+
+/**
+ * Cost of storing a change of one alarm: [AlarmsJournal.append] compared to rewriting the whole
+ * file like the DataStore does (write to a temporary file, sync, rename). Both sync the data to the
+ * disk. Bytes written and the amount of changes are reported as secondary results.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class AlarmsJournalBenchmark {
+  @Param("100", "1000", "10000") var alarms: Int = 0
+
+  private lateinit var dir: File
+  private lateinit var journal: AlarmsJournal
+  private lateinit var values: MutableMap<Int, AlarmValue>
+  private var sequence = 0L
+
+  /** Bytes written and changes made by an iteration */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  open class Written {
+    @JvmField var bytes = 0L
+    @JvmField var changes = 0L
+
+    @Setup(Level.Iteration)
+    fun reset() {
+      bytes = 0
+      changes = 0
+    }
+  }
+
+  @Setup
+  fun setUp() {
+    dir = Files.createTempDirectory("journal").toFile()
+    values = createAlarmValues(alarms).associateByTo(HashMap()) { it.id }
+    journal = AlarmsJournal(dir, nopLogger)
+    journal.restore()
+    sequence = 0
+  }
+
+  @TearDown
+  fun tearDown() {
+    journal.close()
+    dir.deleteRecursively()
+  }
+
+  /** One alarm is changed, the change is appended, the journal is compacted from time to time */
+  @Benchmark
+  fun appendToJournal(written: Written) {
+    val value = nextChange()
+    val before = journal.bytesWritten
+    journal.append(listOf(AlarmsJournal.Record(sequence, value.id, value)))
+    written.bytes += journal.bytesWritten - before
+    written.changes++
+  }
+
+  /** One alarm is changed, all alarms are written like [ProtobufSerializer] does it */
+  @Benchmark
+  fun rewriteFile(written: Written) {
+    nextChange()
+    val bytes = ProtoBuf.encodeToByteArray(AlarmValues.serializer(), AlarmValues(values))
+    val temp = dir.resolve("alarms.tmp")
+    FileOutputStream(temp).use { out ->
+      out.write(bytes)
+      out.fd.sync()
+    }
+    check(temp.renameTo(dir.resolve("alarms")))
+    written.bytes += bytes.size
+    written.changes++
+  }
+
+  private fun nextChange(): AlarmValue {
+    sequence++
+    val id = (sequence % alarms).toInt()
+    val value = values.getValue(id).run { copy(minutes = (minutes + 1) % 60) }
+    values[id] = value
+    return value
+  }
+}
@@ -0,0 +1,75 @@
+package com.better.alarm.benchmarks
+
+import com.better.alarm.data.AlarmValue
+import com.better.alarm.data.CalendarType
+import com.better.alarm.domain.AlarmsScheduler
+import java.util.Calendar
+import java.util.Random
+import java.util.concurrent.TimeUnit
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+/**
+ * [AlarmsScheduler.setAlarm] and [AlarmsScheduler.removeAlarm] with a population of scheduled
+ * alarms. Every alarm is moved between two precomputed times, so that the queue, the head and the
+ * look-ahead are updated like they are when alarms are rescheduled.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class AlarmsSchedulerBenchmark {
+  @Param("10", "1000", "10000") var alarms: Int = 0
+
+  private lateinit var scheduler: AlarmsScheduler
+  private lateinit var values: List<AlarmValue>
+  private lateinit var times: Array<Array<Calendar>>
+  private var index = 0
+  private var flip = 0
+
+  @Setup
+  fun setUp() {
+    val calendars = BenchmarkCalendars()
+    val random = Random(42)
+    scheduler = AlarmsScheduler(NoopAlarmSetter, nopLogger, createStore(), createPrefs(), calendars)
+    values = createAlarmValues(alarms, random)
+    times =
+        Array(alarms) {
+          Array(2) {
+            calendars.now().apply {
+              timeInMillis += TimeUnit.MINUTES.toMillis(1L + random.nextInt(7 * 24 * 60))
+            }
+          }
+        }
+    values.forEach { value ->
+      scheduler.setAlarm(value.id, CalendarType.NORMAL, times[value.id][0], value)
+    }
+    scheduler.start()
+  }
+
+  @Benchmark
+  fun replaceAlarm() {
+    val id = nextId()
+    scheduler.setAlarm(id, CalendarType.NORMAL, times[id][flip], values[id])
+  }
+
+  @Benchmark
+  fun removeAndSetAlarm() {
+    val id = nextId()
+    scheduler.removeAlarm(id)
+    scheduler.setAlarm(id, CalendarType.NORMAL, times[id][flip], values[id])
+  }
+
+  private fun nextId(): Int {
+    if (index == alarms) {
+      index = 0
+      flip = 1 - flip
+    }
+    return index++
+  }
+}
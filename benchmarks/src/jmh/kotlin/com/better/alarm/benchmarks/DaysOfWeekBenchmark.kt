@@ -0,0 +1,49 @@
+package com.better.alarm.benchmarks
+
+import com.better.alarm.data.DaysOfWeek
+import java.util.Calendar
+import java.util.concurrent.TimeUnit
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+/** [DaysOfWeek.getNextAlarm] for the days of a population of alarms on every day of the week. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class DaysOfWeekBenchmark {
+  @Param("10", "1000", "10000") var alarms: Int = 0
+
+  private lateinit var days: Array<DaysOfWeek>
+  private lateinit var calendars: Array<Calendar>
+  private var index = 0
+
+  @Setup
+  fun setUp() {
+    days = createAlarmValues(alarms).map { it.daysOfWeek }.toTypedArray()
+    calendars =
+        Array(7) { day -> BenchmarkCalendars().now().apply { add(Calendar.DAY_OF_YEAR, day) } }
+  }
+
+  @Benchmark
+  fun getNextAlarm(): Int {
+    val i = next()
+    return DaysOfWeek.getNextAlarm(days[i].coded, i % 7)
+  }
+
+  @Benchmark
+  fun getNextAlarmForCalendar(): Int {
+    val i = next()
+    return days[i].getNextAlarm(calendars[i % 7])
+  }
+
+  private fun next(): Int {
+    if (index == days.size) index = 0
+    return index++
+  }
+}
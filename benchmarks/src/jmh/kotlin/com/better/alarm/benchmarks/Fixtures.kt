@@ -0,0 +1,129 @@
+package com.better.alarm.benchmarks
+
+import com.better.alarm.data.AlarmStore
+import com.better.alarm.data.AlarmValue
+import com.better.alarm.data.AlarmsRepository
+import com.better.alarm.data.DaysOfWeek
+import com.better.alarm.data.Prefs
+import com.better.alarm.data.contentprovider.DatabaseQuery
+import com.better.alarm.data.stores.InMemoryRxDataStoreFactory
+import com.better.alarm.domain.AlarmSetter
+import com.better.alarm.domain.Calendars
+import com.better.alarm.domain.Store
+import com.better.alarm.logger.Logger
+import com.better.alarm.platform.BuildFlags
+import com.better.alarm.util.Optional
+import io.reactivex.Single
+import io.reactivex.subjects.BehaviorSubject
+import io.reactivex.subjects.PublishSubject
+import java.util.Calendar
+import java.util.Random
+import java.util.TimeZone
+import org.slf4j.helpers.NOPLogger
+
+/** Logger which does not log, benchmarks measure the domain and not logback. */
+val nopLogger = Logger(NOPLogger.NOP_LOGGER)
+
+/** Benchmarks measure release builds, unexpected events are logged instead of thrown. */
+object ReleaseBuildFlags : BuildFlags {
+  override val isDebug: Boolean = false
+}
+
+/** Monday, 1 January 2024, 00:00 in Berlin */
+val startMillis: Long =
+    Calendar.getInstance(TimeZone.getTimeZone("Europe/Berlin")).run {
+      clear()
+      set(2024, Calendar.JANUARY, 1)
+      timeInMillis
+    }
+
+/** [Calendars] with time which can be moved by the benchmark. */
+class BenchmarkCalendars(var millis: Long = startMillis) : Calendars {
+  private val zone = TimeZone.getTimeZone("Europe/Berlin")
+
+  override fun now(): Calendar = Calendar.getInstance(zone).apply { timeInMillis = millis }
+
+  override fun nowMillis(): Long = millis
+
+  override fun zone(): TimeZone = zone
+}
+
+fun createPrefs(): Prefs = Prefs.create(Single.just(true), InMemoryRxDataStoreFactory.create())
+
+fun createStore(): Store {
+  return Store(
+      alarmsSubject = BehaviorSubject.createDefault(ArrayList()),
+      next = BehaviorSubject.createDefault<Optional<Store.Next>>(Optional.absent()),
+      sets = PublishSubject.create(),
+      events = PublishSubject.create(),
+  )
+}
+
+/**
+ * Alarms of a realistic population: most of them repeat on work days or every day, some are one
+ * shot alarms, a quarter has a prealarm and many share the same minute.
+ */
+fun createAlarmValues(count: Int, random: Random = Random(42)): List<AlarmValue> {
+  return List(count) { id ->
+    AlarmValue(
+        id = id,
+        isEnabled = random.nextInt(10) < 8,
+        hour = random.nextInt(24),
+        minutes = if (id % 2 == 0) 0 else random.nextInt(60),
+        isPrealarm = id % 4 == 0,
+        label = if (id % 3 == 0) "Alarm $id" else "",
+        daysOfWeek =
+            DaysOfWeek(
+                when (id % 5) {
+                  0 -> 0
+                  1 -> 0x1f
+                  2 -> 0x7f
+                  else -> random.nextInt(0x80)
+                }),
+    )
+  }
+}
+
+/** AlarmManager is not available on a plain JVM. */
+object NoopAlarmSetter : AlarmSetter {
+  override fun removeRTCAlarm() = Unit
+
+  override fun setUpRTCAlarm(id: Int, typeName: String, calendar: Calendar) = Unit
+
+  override fun fireNow(ids: IntArray, typeNames: Array<String>) = Unit
+
+  override fun removeInexactAlarm(id: Int) = Unit
+
+  override fun setInexactAlarm(id: Int, calendar: Calendar) = Unit
+
+  override fun removeDueInexactAlarms(): IntArray = IntArray(0)
+}
+
+object NoopDatabaseQuery : DatabaseQuery {
+  override fun forEach(windowSize: Int, action: (AlarmValue) -> Unit) = Unit
+
+  override fun deleteAll(ids: Collection<Int>) = Unit
+}
+
+/** [AlarmsRepository] without persistence, DataStore is benchmarked separately. */
+class InMemoryAlarmsRepository(initial: List<AlarmValue> = emptyList()) : AlarmsRepository {
+  private val stores = initial.map { Record(it.id, it) }.toMutableList()
+  private var nextId = (initial.maxOfOrNull { it.id } ?: -1) + 1
+
+  private inner class Record(override val id: Int, override var value: AlarmValue) : AlarmStore {
+    override fun delete() {
+      stores.remove(this)
+    }
+  }
+
+  override fun create(): AlarmStore {
+    val id = nextId++
+    return Record(id, AlarmValue(id = id)).also { stores.add(it) }
+  }
+
+  override fun query(): List<AlarmStore> = stores.toList()
+
+  override val initialized: Boolean = true
+
+  override fun awaitStored() = Unit
+}
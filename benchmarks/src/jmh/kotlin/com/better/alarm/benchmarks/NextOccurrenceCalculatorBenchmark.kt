@@ -0,0 +1,61 @@
+package com.better.alarm.benchmarks
+
+import com.better.alarm.data.DaysOfWeek
+import com.better.alarm.domain.NextOccurrenceCalculator
+import com.better.alarm.domain.NextOccurrenceCalculator.NO_DATE
+import java.util.Calendar
+import java.util.concurrent.TimeUnit
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.State
+
+/**
+ * [NextOccurrenceCalculator.nextTime] of weekday alarms at every hour compared to the [Calendar]
+ * arithmetic which was used in [com.better.alarm.domain.AlarmCore] before.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+open class NextOccurrenceCalculatorBenchmark {
+  private val zone = BenchmarkCalendars().zone()
+  private val now = BenchmarkCalendars().nowMillis()
+  private var hour = 0
+
+  @Benchmark
+  fun nextTime(): Long {
+    return NextOccurrenceCalculator.nextTime(nextHour(), 30, WEEKDAYS, NO_DATE, zone, now)
+  }
+
+  @Benchmark
+  fun nextTimeWithCalendar(): Long {
+    return Calendar.getInstance(zone)
+        .apply {
+          timeInMillis = now
+          set(Calendar.HOUR_OF_DAY, nextHour())
+          set(Calendar.MINUTE, 30)
+          set(Calendar.SECOND, 0)
+          set(Calendar.MILLISECOND, 0)
+          if (timeInMillis < now) {
+            add(Calendar.DAY_OF_YEAR, 1)
+          }
+          val addDays = DaysOfWeek(WEEKDAYS).getNextAlarm(this)
+          if (addDays > 0) {
+            add(Calendar.DAY_OF_WEEK, addDays)
+          }
+        }
+        .timeInMillis
+  }
+
+  private fun nextHour(): Int {
+    hour = (hour + 1) % 24
+    return hour
+  }
+
+  private companion object {
+    /** Monday to Friday */
+    const val WEEKDAYS = 0x1f
+  }
+}
@@ -0,0 +1,70 @@
+package com.better.alarm.benchmarks
+
+import com.better.alarm.data.AlarmValue
+import com.better.alarm.data.AlarmValues
+import com.better.alarm.data.LazyAlarmValues
+import com.better.alarm.data.ProtobufSerializer
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.util.concurrent.TimeUnit
+import kotlin.coroutines.Continuation
+import kotlin.coroutines.EmptyCoroutineContext
+import kotlin.coroutines.startCoroutine
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+/**
+ * [ProtobufSerializer.readFrom] and [ProtobufSerializer.writeTo] of the whole DataStore file.
+ * [LazyAlarmValues] is measured decoding a single alarm, as
+ * [com.better.alarm.data.AlarmsJournal.peek] does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+open class ProtobufSerializerBenchmark {
+  @Param("10", "1000", "10000") var alarms: Int = 0
+
+  private lateinit var values: AlarmValues
+  private lateinit var bytes: ByteArray
+  private val output = ByteArrayOutputStream()
+
+  @Setup
+  fun setUp() {
+    values = AlarmValues(createAlarmValues(alarms).associateBy { it.id })
+    runSuspending { ProtobufSerializer.writeTo(values, output) }
+    bytes = output.toByteArray()
+  }
+
+  @Benchmark
+  fun readFrom(): AlarmValues {
+    return runSuspending { ProtobufSerializer.readFrom(ByteArrayInputStream(bytes)) }
+  }
+
+  @Benchmark
+  fun readLazilyOneAlarm(): AlarmValue? {
+    return LazyAlarmValues(bytes)[alarms / 2]
+  }
+
+  @Benchmark
+  fun writeTo(): Int {
+    output.reset()
+    runSuspending { ProtobufSerializer.writeTo(values, output) }
+    return output.size()
+  }
+}
+
+/**
+ * Runs a [block] which never suspends without the overhead of `runBlocking`, which would dominate
+ * with small populations.
+ */
+private fun <T> runSuspending(block: suspend () -> T): T {
+  var result: Result<T>? = null
+  block.startCoroutine(Continuation(EmptyCoroutineContext) { result = it })
+  return checkNotNull(result) { "$block has suspended" }.getOrThrow()
+}
@@ -0,0 +1,69 @@
+package com.better.alarm.benchmarks
+
+import com.better.alarm.data.AlarmValue
+import com.better.alarm.domain.AlarmStateNotifier
+import com.better.alarm.domain.Alarms
+import com.better.alarm.domain.AlarmsScheduler
+import com.better.alarm.domain.Store
+import java.util.concurrent.TimeUnit
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+/**
+ * Cold start of the domain like in AlarmApplication: [Alarms.start] restores a population of alarms
+ * from the repository, then [AlarmsScheduler.start] sets the RTC alarm. Enabled alarms are restored
+ * in the set state, others in the disabled state.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class StartupBenchmark {
+  @Param("1000", "10000") var alarms: Int = 0
+
+  private lateinit var values: List<AlarmValue>
+  private lateinit var store: Store
+  private lateinit var scheduler: AlarmsScheduler
+  private lateinit var domain: Alarms
+
+  @Setup(Level.Trial)
+  fun createValues() {
+    values =
+        createAlarmValues(alarms).map {
+          it.copy(state = if (it.isEnabled) "NormalSetState" else "DisabledState")
+        }
+  }
+
+  @Setup(Level.Invocation)
+  fun setUp() {
+    val calendars = BenchmarkCalendars()
+    val prefs = createPrefs()
+    store = createStore()
+    scheduler = AlarmsScheduler(NoopAlarmSetter, nopLogger, store, prefs, calendars)
+    domain =
+        Alarms(
+            prefs,
+            store,
+            calendars,
+            scheduler,
+            AlarmStateNotifier(store),
+            InMemoryAlarmsRepository(values),
+            nopLogger,
+            NoopDatabaseQuery,
+            ReleaseBuildFlags,
+        )
+  }
+
+  @Benchmark
+  fun start(): Store {
+    domain.start()
+    scheduler.start()
+    return store
+  }
+}
@@ -0,0 +1,99 @@
+package com.better.alarm.benchmarks
+
+import com.better.alarm.domain.statemachine.StateMachine
+import com.better.alarm.domain.statemachine.StateMachineDefinition
+import java.util.concurrent.TimeUnit
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+/**
+ * [StateMachine.sendEvent] on a population of state machines with the same hierarchy as AlarmCore:
+ * `root > enabled > set > normalSet` and `root > enabled > fired`.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class StateMachineBenchmark {
+  @Param("10", "1000", "10000") var alarms: Int = 0
+
+  private lateinit var machines: Array<Machine>
+  private var index = 0
+
+  enum class Event {
+    /** Handled by the parent of the parent of the current state, no transition */
+    Tick,
+    /** Transition between normalSet and fired */
+    Toggle,
+  }
+
+  @Setup
+  fun setUp() {
+    machines = Array(alarms) { Machine(it) }
+  }
+
+  @Benchmark
+  fun propagate() {
+    next().stateMachine.sendEvent(Event.Tick)
+  }
+
+  @Benchmark
+  fun transition() {
+    next().stateMachine.sendEvent(Event.Toggle)
+  }
+
+  private fun next(): Machine {
+    if (index == machines.size) index = 0
+    return machines[index++]
+  }
+
+  private class Machine(id: Int) {
+    val stateMachine = StateMachine<Event, Machine>("Alarm $id", nopLogger, this)
+
+    init {
+      stateMachine.start(definition, normalSet)
+    }
+
+    private companion object {
+      val root = BenchmarkState { _, _ -> false }
+      val enabled = BenchmarkState { _, event -> event == Event.Tick }
+      val set = BenchmarkState { _, _ -> false }
+      val normalSet: BenchmarkState = BenchmarkState { machine, event ->
+        machine.toggle(event, fired)
+      }
+      val fired: BenchmarkState = BenchmarkState { machine, event ->
+        machine.toggle(event, normalSet)
+      }
+
+      /** Shared by all machines like the definition of the AlarmCore */
+      val definition =
+          StateMachineDefinition<Event, Machine> {
+            addState(root)
+            addState(enabled, root)
+            addState(set, enabled)
+            addState(normalSet, set)
+            addState(fired, enabled)
+          }
+    }
+
+    private fun toggle(event: Event, target: BenchmarkState): Boolean {
+      if (event != Event.Toggle) return false
+      stateMachine.transitionTo(target)
+      return true
+    }
+  }
+
+  private class BenchmarkState(private val handles: (Machine, Event) -> Boolean) :
+      com.better.alarm.domain.statemachine.State<Event, Machine>() {
+    override fun enter(context: Machine, reason: Event?) = Unit
+
+    override fun exit(context: Machine, reason: Event?) = Unit
+
+    override fun onEvent(context: Machine, event: Event): Boolean = handles(context, event)
+  }
+}
@@ -9,6 +9,7 @@ plugins {
   val kotlin = "1.9.22"
   kotlin("plugin.serialization") version kotlin apply false
   kotlin("android") version kotlin apply false
+  kotlin("jvm") version kotlin apply false
 }
 
 allprojects {
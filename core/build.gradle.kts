@@ -0,0 +1,43 @@
+plugins {
+  kotlin("jvm")
+  kotlin("plugin.serialization")
+}
+
+// Domain and persistence of the app without Android dependencies, see com.better.alarm.platform
+// for the interfaces which are implemented by the app.
+
+java {
+  sourceCompatibility = JavaVersion.VERSION_1_8
+  targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+tasks.withType<org.jetbrains.kotlin.gradle.tasks.KotlinCompile>().configureEach {
+  kotlinOptions {
+    freeCompilerArgs =
+        freeCompilerArgs + "-opt-in=kotlin.RequiresOptIn" + "-opt-in=kotlin.Experimental"
+
+    jvmTarget = "1.8"
+  }
+}
+
+tasks.withType(Test::class.java) {
+  systemProperty("org.slf4j.simpleLogger.logFile", "System.out")
+  systemProperty("org.slf4j.simpleLogger.defaultLogLevel", "trace")
+}
+
+dependencies {
+  val coroutinesVersion = "1.7.3"
+  val serializationVersion = "1.6.2"
+  api("io.reactivex.rxjava2:rxjava:2.2.21")
+  api("org.jetbrains.kotlinx:kotlinx-coroutines-core:$coroutinesVersion")
+  api("org.jetbrains.kotlinx:kotlinx-serialization-protobuf:$serializationVersion")
+  api("androidx.datastore:datastore-core:1.0.0")
+  api("org.slf4j:slf4j-api:1.7.36")
+  implementation("io.insert-koin:koin-core:3.5.3")
+
+  testImplementation("net.wuerl.kotlin:assertj-core-kotlin:0.2.1")
+  testImplementation("junit:junit:4.13.2")
+  testImplementation("io.mockk:mockk:1.13.9")
+  testImplementation("org.jetbrains.kotlinx:kotlinx-coroutines-test:$coroutinesVersion")
+  testImplementation("org.slf4j:slf4j-simple:2.0.11")
+}
@@ -0,0 +1,229 @@
+package com.better.alarm.data
+
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.util.zip.CRC32
+
+/**
+ * [AlarmValue]s in a fixed layout which is read through a [java.nio.MappedByteBuffer], so that a
+ * single alarm is found with a binary search and decoded without reading the others. Written by the
+ * [AlarmsJournal] next to its snapshot, it is only a copy and is rebuilt if it is missing or
+ * corrupt.
+ *
+ * [read] only checks the header. Every record has its own checksum which is checked when the binary
+ * search reaches it, so [get] reads `O(log n)` records. [verify] checks all records.
+ *
+ * ## Layout
+ * - header: `magic: int32, version: int32, sequence: int64, count: int32, crc32: int32`, the
+ *   checksum covers the header before it
+ * - records: `count` records of [RECORD] bytes in ascending order of their ids
+ * - strings: states, labels and alarmtones as `length: int32` and UTF-8, records contain the offset
+ *   of the string in this region. Equal strings are stored once.
+ */
+class AlarmRecords private constructor(private val buffer: ByteBuffer) {
+  /** Sequence number of the last journal record which is included */
+  val sequence: Long = buffer.getLong(SEQUENCE)
+
+  /** Number of alarms */
+  val size: Int = buffer.getInt(COUNT)
+
+  private val stringsStart = HEADER + size * RECORD
+
+  /**
+   * Decodes the alarm with the [id] or returns null if there is none. Throws an [IOException] if a
+   * record which is read by the search is corrupt.
+   */
+  operator fun get(id: Int): AlarmValue? {
+    var low = 0
+    var high = size - 1
+    while (low <= high) {
+      val mid = (low + high) ushr 1
+      val position = HEADER + mid * RECORD
+      if (!isValid(position)) throw IOException("Record $mid is corrupt")
+      val midId = buffer.getInt(position)
+      when {
+        midId < id -> low = mid + 1
+        midId > id -> high = mid - 1
+        else -> return read(position)
+      }
+    }
+    return null
+  }
+
+  /** Checks all records, returns false if any of them is corrupt */
+  fun verify(): Boolean {
+    var previous = Int.MIN_VALUE
+    for (index in 0 until size) {
+      val position = HEADER + index * RECORD
+      if (!isValid(position)) return false
+      val id = buffer.getInt(position)
+      if (index > 0 && id <= previous) return false
+      previous = id
+    }
+    return true
+  }
+
+  /** Compares the checksum of the record and its strings */
+  private fun isValid(position: Int): Boolean {
+    return try {
+      val crc = CRC32()
+      val record = ByteArray(CRC_OFFSET)
+      buffer.duplicate().apply { position(position) }.get(record)
+      crc.update(record)
+      STRING_OFFSETS.forEach { offset -> crc.update(stringBytes(buffer.getInt(position + offset))) }
+      crc.value.toInt() == buffer.getInt(position + CRC_OFFSET)
+    } catch (e: RuntimeException) {
+      // offsets or lengths outside of the buffer
+      false
+    }
+  }
+
+  private fun read(position: Int): AlarmValue {
+    val flags = buffer.get(position + 20).toInt()
+    return AlarmValue(
+        id = buffer.getInt(position),
+        nextTimeMillis = buffer.getLong(position + 4),
+        dateEpochDay = buffer.getInt(position + 12),
+        daysOfWeek = DaysOfWeek(buffer.getInt(position + 16)),
+        isEnabled = flags and ENABLED != 0,
+        isPrealarm = flags and PREALARM != 0,
+        isVibrate = flags and VIBRATE != 0,
+        isDeleteAfterDismiss = flags and DELETE_AFTER_DISMISS != 0,
+        hour = buffer.get(position + 21).toInt(),
+        minutes = buffer.get(position + 22).toInt(),
+        state = string(buffer.getInt(position + 24)).intern(),
+        label = string(buffer.getInt(position + 28)).intern(),
+        alarmtone = Alarmtone.intern(Alarmtone.fromString(string(buffer.getInt(position + 32)))),
+    )
+  }
+
+  private fun string(offset: Int): String = String(stringBytes(offset), Charsets.UTF_8)
+
+  private fun stringBytes(offset: Int): ByteArray {
+    val position = stringsStart + offset
+    val length = buffer.getInt(position)
+    require(length >= 0 && length <= buffer.limit() - position - 4) { "Invalid string at $offset" }
+    val bytes = ByteArray(length)
+    buffer.duplicate().apply { position(position + 4) }.get(bytes)
+    return bytes
+  }
+
+  companion object {
+    private const val MAGIC = 0x414c524d // ALRM
+    private const val VERSION = 2
+    private const val SEQUENCE = 8
+    private const val COUNT = 16
+    private const val CRC = 20
+    private const val HEADER = 24
+
+    /**
+     * `id: int32, nextTimeMillis: int64, dateEpochDay: int32, daysOfWeek: int32, flags: int8, hour:
+     * int8, minutes: int8, padding: int8, state: int32, label: int32, alarmtone: int32, crc32:
+     * int32`, the checksum covers the record before it and its three strings
+     */
+    const val RECORD = 40
+
+    private const val CRC_OFFSET = 36
+    private val STRING_OFFSETS = intArrayOf(24, 28, 32)
+
+    private const val ENABLED = 1
+    private const val PREALARM = 2
+    private const val VIBRATE = 4
+    private const val DELETE_AFTER_DISMISS = 8
+
+    /**
+     * Maps the [file] and checks its header. Returns null if the file does not exist or the header
+     * is corrupt, in which case the owner of the alarms should [write] it again.
+     */
+    fun read(file: File): AlarmRecords? {
+      if (!file.exists()) return null
+      return try {
+        val buffer =
+            RandomAccessFile(file, "r").use {
+              it.channel.map(FileChannel.MapMode.READ_ONLY, 0, it.length())
+            }
+        if (isValidHeader(buffer)) AlarmRecords(buffer) else null
+      } catch (e: IOException) {
+        null
+      }
+    }
+
+    /** Writes the [alarms] to a temporary file which is synced and renamed to the [file] */
+    fun write(file: File, alarms: Map<Int, AlarmValue>, sequence: Long) {
+      val ids = alarms.keys.sorted()
+      val strings = Strings()
+      val records = ByteBuffer.allocate(ids.size * RECORD)
+      val crc = CRC32()
+      ids.forEach { id ->
+        val value = alarms.getValue(id)
+        var flags = 0
+        if (value.isEnabled) flags = flags or ENABLED
+        if (value.isPrealarm) flags = flags or PREALARM
+        if (value.isVibrate) flags = flags or VIBRATE
+        if (value.isDeleteAfterDismiss) flags = flags or DELETE_AFTER_DISMISS
+        val start = records.position()
+        records
+            .putInt(id)
+            .putLong(value.nextTimeMillis)
+            .putInt(value.dateEpochDay)
+            .putInt(value.daysOfWeek.coded)
+            .put(flags.toByte())
+            .put(value.hour.toByte())
+            .put(value.minutes.toByte())
+            .put(0)
+        val fields = listOf(value.state, value.label, value.alarmtone.asString())
+        fields.forEach { string -> records.putInt(strings.offsetOf(string)) }
+        crc.reset()
+        crc.update(records.array(), start, CRC_OFFSET)
+        fields.forEach { string -> crc.update(string.toByteArray(Charsets.UTF_8)) }
+        records.putInt(crc.value.toInt())
+      }
+      val header =
+          ByteBuffer.allocate(HEADER)
+              .putInt(MAGIC)
+              .putInt(VERSION)
+              .putLong(sequence)
+              .putInt(ids.size)
+      header.putInt(CRC32().apply { update(header.array(), 0, CRC) }.value.toInt())
+      val temp = File(file.path + ".tmp")
+      FileOutputStream(temp).use { out ->
+        out.write(header.array())
+        out.write(records.array())
+        strings.bytes.writeTo(out)
+        out.fd.sync()
+      }
+      if (!temp.renameTo(file)) throw IOException("Failed to rename $temp to $file")
+    }
+
+    private fun isValidHeader(buffer: ByteBuffer): Boolean {
+      if (buffer.limit() < HEADER) return false
+      if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) return false
+      val header = ByteArray(CRC)
+      buffer.duplicate().get(header)
+      if (CRC32().apply { update(header) }.value.toInt() != buffer.getInt(CRC)) return false
+      val count = buffer.getInt(COUNT)
+      return count >= 0 && buffer.limit() >= HEADER + count.toLong() * RECORD
+    }
+  }
+
+  /** String region, every distinct string is written once */
+  private class Strings {
+    val bytes = ByteArrayOutputStream()
+    private val offsets = HashMap<String, Int>()
+
+    fun offsetOf(string: String): Int {
+      return offsets.getOrPut(string) {
+        val offset = bytes.size()
+        val utf8 = string.toByteArray(Charsets.UTF_8)
+        bytes.write(ByteBuffer.allocate(4).putInt(utf8.size).array())
+        bytes.write(utf8)
+        offset
+      }
+    }
+  }
+}
@@ -0,0 +1,163 @@
+package com.better.alarm.data
+
+import java.text.SimpleDateFormat
+import java.util.*
+import kotlinx.serialization.KSerializer
+import kotlinx.serialization.SerialName
+import kotlinx.serialization.Serializable
+import kotlinx.serialization.builtins.serializer
+import kotlinx.serialization.descriptors.SerialDescriptor
+import kotlinx.serialization.encoding.Decoder
+import kotlinx.serialization.encoding.Encoder
+
+@Serializable
+data class AlarmValues(
+    val alarms: Map<Int, AlarmValue> = emptyMap(),
+)
+
+val dateFormat = SimpleDateFormat("yyyy-MM-dd", Locale.US)
+
+/**
+ * Alarm as it is stored and published. Times are kept as primitives, so that values are compact and
+ * [equals] is cheap: [nextTimeMillis] is epoch millis and [dateEpochDay] is the local date of a
+ * non-repeating alarm as epoch day or [NO_DATE]. [nextTime] and [date] are [Calendar] views of
+ * them.
+ *
+ * Persisted as `int64` epoch millis, [dateEpochDay] is written as the noon of the date.
+ */
+@Serializable
+data class AlarmValue(
+    @SerialName("nextTime") val nextTimeMillis: Long = 0,
+    val state: String = "DisabledState",
+    val id: Int = -1,
+    val isEnabled: Boolean = false,
+    val hour: Int = 0,
+    val minutes: Int = 0,
+    val isPrealarm: Boolean = false,
+    @Serializable(with = InterningAlarmtoneSerializer::class)
+    val alarmtone: Alarmtone = Alarmtone.Default,
+    val isVibrate: Boolean = true,
+    @Serializable(with = InterningStringSerializer::class) val label: String = "",
+    val daysOfWeek: DaysOfWeek = DaysOfWeek(0),
+    val isDeleteAfterDismiss: Boolean = false,
+    @SerialName("date")
+    @Serializable(with = EpochDaySerializer::class)
+    val dateEpochDay: Int = NO_DATE,
+) {
+  val skipping
+    get() = state.contentEquals("SkippingSetState")
+
+  val hasDate
+    get() = dateEpochDay != NO_DATE
+
+  val isRepeatSet
+    get() = !hasDate && daysOfWeek.coded != 0
+
+  /** [nextTimeMillis] as a new [Calendar] in the default time zone */
+  val nextTime: Calendar
+    get() = Calendar.getInstance().apply { timeInMillis = nextTimeMillis }
+
+  /** Noon of the [dateEpochDay] as a new [Calendar] in the default time zone or null */
+  val date: Calendar?
+    get() =
+        if (hasDate) Calendar.getInstance().apply { timeInMillis = noonOf(dateEpochDay) } else null
+
+  override fun toString(): String {
+    val box = if (isEnabled) "[x]" else "[ ]"
+    val dateOrRepeat =
+        if (hasDate) dateFormat.format(noonOf(dateEpochDay)) else daysOfWeek.toString()
+    return "$id $box $hour:$minutes $dateOrRepeat $label"
+  }
+
+  fun withState(name: String): AlarmValue = copy(state = name)
+
+  fun withIsEnabled(enabled: Boolean): AlarmValue = copy(isEnabled = enabled)
+
+  fun withNextTime(millis: Long): AlarmValue = copy(nextTimeMillis = millis)
+
+  fun withNextTime(calendar: Calendar): AlarmValue = withNextTime(calendar.timeInMillis)
+
+  /** Sets the date of the [calendar] in its time zone or removes the date if it is null */
+  fun withDate(calendar: Calendar?): AlarmValue =
+      copy(dateEpochDay = calendar?.let { epochDayOf(it.timeInMillis, it.timeZone) } ?: NO_DATE)
+
+  fun withChangeData(data: AlarmValue) =
+      copy(
+          id = data.id,
+          isEnabled = data.isEnabled,
+          hour = data.hour,
+          minutes = data.minutes,
+          isPrealarm = data.isPrealarm,
+          alarmtone = data.alarmtone,
+          isVibrate = data.isVibrate,
+          label = data.label,
+          daysOfWeek = data.daysOfWeek,
+          isDeleteAfterDismiss = data.isDeleteAfterDismiss,
+          dateEpochDay = data.dateEpochDay,
+      )
+
+  fun withHour(hour: Int) = copy(hour = hour)
+
+  fun withDaysOfWeek(daysOfWeek: DaysOfWeek) = copy(daysOfWeek = daysOfWeek)
+
+  fun withIsPrealarm(isPrealarm: Boolean) = copy(isPrealarm = isPrealarm)
+
+  companion object {
+    /** Value of [dateEpochDay] for alarms which do not have a date */
+    const val NO_DATE = Int.MIN_VALUE
+
+    private const val DAY = 24 * 60 * 60 * 1000L
+    private const val NOON = DAY / 2
+
+    /** Local date of the [millis] in the [zone] as epoch day */
+    fun epochDayOf(millis: Long, zone: TimeZone = TimeZone.getDefault()): Int {
+      return (millis + zone.getOffset(millis)).floorDiv(DAY).toInt()
+    }
+
+    /** Epoch millis of the noon of the [epochDay] in the [zone] */
+    fun noonOf(epochDay: Int, zone: TimeZone = TimeZone.getDefault()): Long {
+      val local = epochDay * DAY + NOON
+      return local - zone.getOffset(local - zone.getOffset(local))
+    }
+  }
+}
+
+/** Local date as `int64` epoch millis of its noon, so that it is compatible with a [Calendar] */
+object EpochDaySerializer : KSerializer<Int> {
+  override val descriptor: SerialDescriptor
+    get() = Long.serializer().descriptor
+
+  override fun deserialize(decoder: Decoder): Int {
+    return AlarmValue.epochDayOf(decoder.decodeLong())
+  }
+
+  override fun serialize(encoder: Encoder, value: Int) {
+    encoder.encodeLong(AlarmValue.noonOf(value))
+  }
+}
+
+/** Decoded labels are interned, most alarms share a few labels */
+object InterningStringSerializer : KSerializer<String> {
+  override val descriptor: SerialDescriptor
+    get() = String.serializer().descriptor
+
+  override fun deserialize(decoder: Decoder): String = decoder.decodeString().intern()
+
+  override fun serialize(encoder: Encoder, value: String) {
+    encoder.encodeString(value)
+  }
+}
+
+/** Decoded [Alarmtone]s are interned, most alarms share a few ringtones */
+object InterningAlarmtoneSerializer : KSerializer<Alarmtone> {
+  override val descriptor: SerialDescriptor
+    get() = Alarmtone.serializer().descriptor
+
+  override fun deserialize(decoder: Decoder): Alarmtone {
+    return Alarmtone.intern(decoder.decodeSerializableValue(Alarmtone.serializer()))
+  }
+
+  override fun serialize(encoder: Encoder, value: Alarmtone) {
+    encoder.encodeSerializableValue(Alarmtone.serializer(), value)
+  }
+}
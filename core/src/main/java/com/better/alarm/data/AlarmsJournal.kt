@@ -0,0 +1,347 @@
+package com.better.alarm.data
+
+import com.better.alarm.logger.Logger
+import com.better.alarm.platform.DirectorySync
+import com.better.alarm.util.Optional
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.util.zip.CRC32
+import kotlinx.serialization.ExperimentalSerializationApi
+import kotlinx.serialization.Serializable
+import kotlinx.serialization.protobuf.ProtoBuf
+
+/**
+ * [AlarmValue]s stored as a snapshot and a journal of the changes made after it. A change of one
+ * alarm appends one record, the size of the write does not depend on the amount of alarms. The
+ * journal is compacted into a new snapshot when it becomes larger than the snapshot.
+ *
+ * ## Files
+ * - [SNAPSHOT] all alarms and the sequence number of the last change they include
+ * - [JOURNAL] records `length: int32, crc32: int32, sequence: int64, id: int32, put: int8, value`,
+ *   where `value` is the [ProtoBuf] of the [AlarmValue] and is empty for deleted alarms
+ * - [LEGACY] the file of the [DataStoreAlarmsRepository], used as the snapshot until the first
+ *   compaction
+ * - [RECORDS] [AlarmRecords] of the snapshot for [peek], rebuilt by [restore] if it is missing,
+ *   corrupt or older than the snapshot
+ *
+ * ## Crash safety
+ * Records are synced before [append] returns. A record which was written partially has a wrong
+ * length or checksum, [restore] discards it and everything after it. Snapshots are written to a
+ * temporary file which is synced and renamed, the directory is synced so that the rename is durable
+ * and the journal is truncated after that. Records which are already included in the snapshot are
+ * skipped by [restore] using their sequence numbers.
+ *
+ * If a write fails, the journal may end with a partial record and records appended after it would
+ * be discarded. The changes are kept in memory, [storedSequence] stays behind [sequence] and the
+ * next [append] writes a snapshot instead of records.
+ *
+ * Not thread safe, [restore] and [append] must be called by one thread at a time. [peek] only reads
+ * the files and can be called at any time, it reads them again if they were compacted meanwhile.
+ */
+@OptIn(ExperimentalSerializationApi::class)
+class AlarmsJournal(
+    private val dir: File,
+    private val logger: Logger,
+    /** Journal is not compacted before it has this size */
+    private val minCompactionBytes: Long = MIN_COMPACTION_BYTES,
+    private val directorySync: DirectorySync = DirectorySync.nio,
+) {
+  private val snapshotFile = dir.resolve(SNAPSHOT)
+  private val journalFile = dir.resolve(JOURNAL)
+  private val recordsFile = dir.resolve(RECORDS)
+
+  /** Alarms including all appended records, they are written to the snapshot by [compact] */
+  private val alarms = HashMap<Int, AlarmValue>()
+  private var journal: FileChannel? = null
+  private var journalBytes = 0L
+  private var snapshotBytes = 0L
+  private var snapshotSequence = 0L
+
+  /** Bytes written to the journal and the snapshots since [restore] */
+  var bytesWritten: Long = 0
+    private set
+
+  /** Sequence number of the last restored or appended record */
+  var sequence: Long = 0
+    private set
+
+  /** Sequence number of the last record which is synced to the journal or to the snapshot */
+  var storedSequence: Long = 0
+    private set
+
+  /** True if a write has failed, the next [append] has to [compact] */
+  private var failed = false
+
+  /**
+   * True if [restore] has found changes which were stored before: a valid record, a snapshot which
+   * includes records or the file of the [DataStoreAlarmsRepository]. Files which are created by
+   * [restore] itself do not count, so alarms are not initialized until a change has been synced.
+   */
+  var initialized: Boolean = false
+    private set
+
+  /** Reads the snapshot and replays the journal. Must be called once before [append]. */
+  fun restore(): Map<Int, AlarmValue> {
+    check(journal == null) { "restore() must be called once" }
+    readSnapshot()
+    val bytes = if (journalFile.exists()) journalFile.readBytes() else ByteArray(0)
+    val valid = replay(ByteBuffer.wrap(bytes))
+    if (valid < bytes.size) {
+      logger.warning { "Discarding ${bytes.size - valid} bytes of a partially written record" }
+    }
+    dir.mkdirs()
+    journal =
+        RandomAccessFile(journalFile, "rw").channel.apply {
+          truncate(valid.toLong())
+          position(valid.toLong())
+        }
+    journalBytes = valid.toLong()
+    val records = AlarmRecords.read(recordsFile)
+    // all records are checked once here, peek checks only the records it reads
+    if (records == null || records.sequence < snapshotSequence || !records.verify()) {
+      logger.debug { "Rebuilding $recordsFile" }
+      AlarmRecords.write(recordsFile, alarms, sequence)
+      bytesWritten += recordsFile.length()
+    }
+    initialized = initialized || sequence > 0
+    storedSequence = sequence
+    return HashMap(alarms)
+  }
+
+  /**
+   * Reads the alarm with the [id] from the [RECORDS] and the journal without decoding other alarms.
+   * If there are no valid [RECORDS] yet or a record read by the search is corrupt, the snapshot is
+   * read with [LazyAlarmValues]. Returns an absent value if there is no such alarm and null if the
+   * files can not be read, in this case the alarms have to be restored.
+   *
+   * [compact] replaces the [RECORDS] before it truncates the journal. If their sequence has changed
+   * after the journal was read, the journal may have been truncated and both are read again.
+   */
+  fun peek(id: Int): Optional<AlarmValue>? {
+    var records = AlarmRecords.read(recordsFile)
+    repeat(PEEK_ATTEMPTS) {
+      val value = peek(id, records) ?: return null
+      val current = AlarmRecords.read(recordsFile)
+      if (current?.sequence == records?.sequence) return value
+      logger.debug { "$recordsFile was replaced while peeking, reading again" }
+      records = current
+    }
+    return null
+  }
+
+  /** Alarm with the [id] from the [records] or the snapshot if there are none and the journal */
+  private fun peek(id: Int, records: AlarmRecords?): Optional<AlarmValue>? {
+    val (snapshotSequence, snapshotValue) =
+        records?.let { peekRecords(id, records) } ?: peekSnapshot(id) ?: return null
+    val bytes = if (journalFile.exists()) journalFile.readBytes() else ByteArray(0)
+    var value = snapshotValue
+    forEachRecord(ByteBuffer.wrap(bytes)) { recordSequence, recordId, put, offset, length ->
+      if (recordId == id && recordSequence > snapshotSequence) {
+        value =
+            if (put) {
+              ProtoBuf.decodeFromByteArray(
+                  AlarmValue.serializer(), bytes.copyOfRange(offset, offset + length))
+            } else {
+              null
+            }
+      }
+    }
+    return Optional.fromNullable(value)
+  }
+
+  /** Sequence of the [records] and the alarm with the [id] in them, null if they are corrupt */
+  private fun peekRecords(id: Int, records: AlarmRecords): Pair<Long, AlarmValue?>? {
+    return try {
+      records.sequence to records[id]
+    } catch (e: IOException) {
+      logger.warning { "Failed to peek into $recordsFile: $e" }
+      null
+    }
+  }
+
+  /** Sequence of the snapshot and the alarm with the [id] in it, decodes only this alarm */
+  private fun peekSnapshot(id: Int): Pair<Long, AlarmValue?>? {
+    val file = if (snapshotFile.exists()) snapshotFile else dir.resolve(LEGACY)
+    if (!file.exists()) return 0L to null
+    return try {
+      LazyAlarmValues(file.readBytes()).let { snapshot -> snapshot.sequence to snapshot[id] }
+    } catch (e: Exception) {
+      logger.warning { "Failed to peek into $file: $e" }
+      null
+    }
+  }
+
+  /**
+   * Appends the [records] and syncs the journal. Compacts if the journal has become too large or a
+   * write has failed before. If this throws an [IOException], the [records] are kept in memory and
+   * are stored by the next call, which can have no records.
+   */
+  fun append(records: List<Record>) {
+    val channel = checkNotNull(journal) { "restore() was not called" }
+    val buffer = ByteArrayOutputStream()
+    val out = DataOutputStream(buffer)
+    records.forEach { record ->
+      check(record.sequence > sequence) { "$record is not after $sequence" }
+      writeRecord(out, record)
+      sequence = record.sequence
+      if (record.value != null) alarms[record.id] = record.value else alarms.remove(record.id)
+    }
+    if (failed) {
+      compact()
+      return
+    }
+    val bytes = ByteBuffer.wrap(buffer.toByteArray())
+    try {
+      while (bytes.hasRemaining()) channel.write(bytes)
+      channel.force(false)
+    } catch (e: IOException) {
+      failed = true
+      throw e
+    }
+    storedSequence = sequence
+    journalBytes += bytes.limit()
+    bytesWritten += bytes.limit()
+    if (journalBytes > maxOf(minCompactionBytes, snapshotBytes)) {
+      compact()
+    }
+  }
+
+  /** Writes all alarms into a new snapshot and truncates the journal. */
+  fun compact() {
+    val channel = checkNotNull(journal) { "restore() was not called" }
+    val bytes =
+        ProtoBuf.encodeToByteArray(Snapshot.serializer(), Snapshot(alarms = alarms, sequence))
+    val temp = dir.resolve("$SNAPSHOT.tmp")
+    FileOutputStream(temp).use { out ->
+      out.write(bytes)
+      out.fd.sync()
+    }
+    if (!temp.renameTo(snapshotFile)) throw IOException("Failed to rename $temp to $snapshotFile")
+    // records must not be older than the snapshot when the journal is truncated
+    AlarmRecords.write(recordsFile, alarms, sequence)
+    // the renames must be durable before the journal is truncated
+    directorySync.sync(dir)
+    channel.truncate(0)
+    channel.force(true)
+    failed = false
+    storedSequence = sequence
+    logger.debug { "Compacted $journalBytes bytes of journal into $snapshotFile" }
+    snapshotBytes = bytes.size.toLong()
+    snapshotSequence = sequence
+    bytesWritten += bytes.size + recordsFile.length()
+    journalBytes = 0
+  }
+
+  fun close() {
+    journal?.close()
+  }
+
+  private fun readSnapshot() {
+    val file = if (snapshotFile.exists()) snapshotFile else dir.resolve(LEGACY)
+    if (!file.exists()) return
+    // the legacy file has no sequence, it was written by the DataStore after a change
+    initialized = file.name == LEGACY
+    val bytes = file.readBytes()
+    try {
+      val snapshot = ProtoBuf.decodeFromByteArray(Snapshot.serializer(), bytes)
+      alarms.putAll(snapshot.alarms)
+      sequence = snapshot.sequence
+      snapshotSequence = snapshot.sequence
+      snapshotBytes = bytes.size.toLong()
+    } catch (e: Exception) {
+      logger.error(e) { "Failed to read $file, alarms are lost" }
+    }
+  }
+
+  /** Applies valid records which are not in the snapshot, returns the length of valid records */
+  private fun replay(buffer: ByteBuffer): Int {
+    return forEachRecord(buffer) { recordSequence, id, put, offset, length ->
+      if (recordSequence > sequence) {
+        sequence = recordSequence
+        if (put) {
+          alarms[id] =
+              ProtoBuf.decodeFromByteArray(
+                  AlarmValue.serializer(), buffer.array().copyOfRange(offset, offset + length))
+        } else {
+          alarms.remove(id)
+        }
+      }
+    }
+  }
+
+  /**
+   * Calls the [action] with the header and the position of the value of every valid record, returns
+   * the length of valid records
+   */
+  private inline fun forEachRecord(
+      buffer: ByteBuffer,
+      action: (sequence: Long, id: Int, put: Boolean, offset: Int, length: Int) -> Unit
+  ): Int {
+    val crc = CRC32()
+    while (buffer.remaining() >= HEADER) {
+      val start = buffer.position()
+      val length = buffer.int
+      val checksum = buffer.int
+      if (length < PAYLOAD_HEADER || length > buffer.remaining()) return start
+      crc.reset()
+      crc.update(buffer.array(), buffer.position(), length)
+      if (crc.value.toInt() != checksum) return start
+      val recordSequence = buffer.long
+      val id = buffer.int
+      val put = buffer.get() != 0.toByte()
+      val offset = buffer.position()
+      buffer.position(offset + length - PAYLOAD_HEADER)
+      action(recordSequence, id, put, offset, length - PAYLOAD_HEADER)
+    }
+    return buffer.position()
+  }
+
+  private fun writeRecord(out: DataOutputStream, record: Record) {
+    val value =
+        record.value?.let { ProtoBuf.encodeToByteArray(AlarmValue.serializer(), it) }
+            ?: ByteArray(0)
+    val payload =
+        ByteBuffer.allocate(PAYLOAD_HEADER + value.size)
+            .putLong(record.sequence)
+            .putInt(record.id)
+            .put(if (record.value != null) 1 else 0)
+            .put(value)
+            .array()
+    out.writeInt(payload.size)
+    out.writeInt(CRC32().apply { update(payload) }.value.toInt())
+    out.write(payload)
+  }
+
+  /** Alarm with the [id] was changed to the [value] or deleted if the [value] is null */
+  data class Record(val sequence: Long, val id: Int, val value: AlarmValue?)
+
+  /** Same layout as [AlarmValues] with the [sequence] of the last included record */
+  @Serializable
+  private class Snapshot(
+      val alarms: Map<Int, AlarmValue> = emptyMap(),
+      val sequence: Long = 0,
+  )
+
+  companion object {
+    const val SNAPSHOT = "alarms.snapshot"
+    const val JOURNAL = "alarms.journal"
+    const val LEGACY = "alarms"
+    const val RECORDS = "alarms.records"
+    const val MIN_COMPACTION_BYTES = 64 * 1024L
+
+    /** [peek] gives up and the alarms have to be restored if they are compacted this often */
+    private const val PEEK_ATTEMPTS = 3
+
+    /** length and checksum */
+    private const val HEADER = 8
+
+    /** sequence, id and put */
+    private const val PAYLOAD_HEADER = 13
+  }
+}
@@ -6,11 +6,33 @@ import com.better.alarm.data.stores.RxDataStore
 interface AlarmsRepository {
   /** Creates a new [AlarmStore] with initial [AlarmValue]. All changes will be stored. */
   fun create(): AlarmStore
+
+  /**
+   * Creates [AlarmStore]s with new ids for the [values], which are stored with one write. Ids of
+   * the [values] are ignored.
+   */
+  fun createAll(values: List<AlarmValue>): List<AlarmStore> {
+    return values.map { value -> create().apply { this.value = value.copy(id = id) } }
+  }
+
   /** Query stored [AlarmValue]s as active records ([AlarmStore]s). */
   fun query(): List<AlarmStore>
   /** Check if the repository is initialized. */
   val initialized: Boolean
 
+  /** True if stored [AlarmValue]s are loaded and [query] will not block. */
+  val isReady: Boolean
+    get() = true
+
+  /** Suspends until stored [AlarmValue]s are loaded. */
+  suspend fun awaitReady() {}
+
+  /**
+   * Reads the [AlarmValue] with the [id] without waiting for all of them to be loaded if possible.
+   * Returns null if there is no such alarm.
+   */
+  fun peek(id: Int): AlarmValue? = query().firstOrNull { it.id == id }?.value
+
   /**
    * Awaits until all pending changes are durably stored. This call is required before the system
    * goes to sleep or the application can be destroyed.
@@ -1,21 +1,9 @@
 package com.better.alarm.data
 
-import android.provider.Settings
-import com.better.alarm.data.Alarmtone.Companion.defaultAlarmAlertUri
+import java.util.concurrent.ConcurrentHashMap
 import kotlinx.serialization.SerialName
 import kotlinx.serialization.Serializable
 
-/** Creates a [String] in a format this is understood by [android.media.RingtoneManager]. */
-fun Alarmtone.ringtoneManagerUri(): String? {
-  return when (this) {
-    is Alarmtone.Silent -> null
-    // RingtoneManager.getDefaultUri(RingtoneManager.TYPE_ALARM) ?
-    is Alarmtone.Default -> defaultAlarmAlertUri
-    is Alarmtone.SystemDefault -> defaultAlarmAlertUri
-    is Alarmtone.Sound -> uriString
-  }
-}
-
 @Serializable
 sealed class Alarmtone {
   @SerialName("Silent") @Serializable data object Silent : Alarmtone()
@@ -38,8 +26,15 @@ sealed class Alarmtone {
   }
 
   companion object {
-    val defaultAlarmAlertUri =
-        Settings.System.DEFAULT_ALARM_ALERT_URI?.toString() ?: "DEFAULT_ALARM_ALERT_URI_IN_TEST"
+    private val sounds = ConcurrentHashMap<String, Sound>()
+
+    /** Same instance for equal [Sound]s, objects are returned as is */
+    fun intern(alarmtone: Alarmtone): Alarmtone {
+      return when (alarmtone) {
+        is Sound -> sounds.putIfAbsent(alarmtone.uriString, alarmtone) ?: alarmtone
+        else -> alarmtone
+      }
+    }
 
     fun fromString(string: String): Alarmtone {
       return when (string) {
@@ -49,15 +44,5 @@ sealed class Alarmtone {
         else -> Sound(string)
       }
     }
-
-    /** For migration from ContentProvider table */
-    fun migrateFromString(string: String?): Alarmtone {
-      return when (string) {
-        null -> Silent
-        "" -> Default
-        defaultAlarmAlertUri -> Default
-        else -> Sound(string)
-      }
-    }
   }
 }
@@ -1,11 +1,11 @@
 package com.better.alarm.data
 
-import android.os.Looper
 import androidx.datastore.core.DataStore
 import androidx.datastore.core.DataStoreFactory
 import androidx.datastore.core.Serializer
 import androidx.datastore.core.handlers.ReplaceFileCorruptionHandler
 import com.better.alarm.logger.Logger
+import com.better.alarm.platform.MainThread
 import java.io.File
 import java.io.InputStream
 import java.io.OutputStream
@@ -13,8 +13,6 @@ import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.async
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.first
-import kotlinx.coroutines.flow.launchIn
-import kotlinx.coroutines.flow.onEach
 import kotlinx.coroutines.flow.update
 import kotlinx.coroutines.runBlocking
 import kotlinx.coroutines.withTimeout
@@ -44,19 +42,24 @@ import org.koin.core.time.measureTimedValue
  * in certain key places. These places are:
  * - [android.app.Activity.onPause] before returning from the method
  * - [android.content.BroadcastReceiver.onReceive] before returning from the method
+ *
+ * Changes are written by a [WriteBehind], a burst of changes is written once.
  */
 class DataStoreAlarmsRepository(
     private val logger: Logger,
     private val ioScope: CoroutineScope,
+    private val mainThread: MainThread,
     initial: AlarmValues,
     private val dataStore: DataStore<AlarmValues>,
-    override val initialized: Boolean
+    override val initialized: Boolean,
+    maxWriteDelayMillis: Long = WriteBehind.DEFAULT_MAX_DELAY_MILLIS,
 ) : AlarmsRepository {
   companion object {
     fun createBlocking(
         datastoreDir: File,
         logger: Logger,
-        ioScope: CoroutineScope
+        ioScope: CoroutineScope,
+        mainThread: MainThread,
     ): AlarmsRepository {
       val initialized = datastoreDir.resolve("alarms").exists()
       val dataStore: DataStore<AlarmValues> =
@@ -77,69 +80,77 @@ class DataStoreAlarmsRepository(
       return DataStoreAlarmsRepository(
               logger = logger,
               ioScope = ioScope,
+              mainThread = mainThread,
               initial = restoredValues,
               dataStore = dataStore,
               initialized = initialized,
           )
-          .also { it.launch() }
     }
   }
 
   private val alarmsByIdState: MutableStateFlow<Map<Int, AlarmValue>> =
       MutableStateFlow(initial.alarms)
 
+  private val writeBehind =
+      WriteBehind(ioScope, maxDelayMillis = maxWriteDelayMillis) { writeAlarms() }
+
+  /** Guarded by `this` */
+  private val ids = IdAllocator(initial.alarms.keys)
+
+  @Synchronized
   override fun create(): AlarmStore {
-    val usedIds = alarmsByIdState.value.keys
-    val id = (0..Int.MAX_VALUE).first { it !in usedIds }
-    alarmsByIdState.update { alarmsById ->
+    val id = ids.allocate()
+    update { alarmsById ->
       val created = id to AlarmValue(id = id)
       alarmsById.plus(created)
     }
     return createStoreView(id)
   }
 
+  /** All values are added to the state at once, which is written once */
+  @Synchronized
+  override fun createAll(values: List<AlarmValue>): List<AlarmStore> {
+    val created = values.map { value -> value.copy(id = ids.allocate()) }
+    update { alarmsById -> alarmsById + created.associateBy { it.id } }
+    return created.map { value -> createStoreView(value.id) }
+  }
+
   override fun query(): List<AlarmStore> {
     return alarmsByIdState.value.map { (id, _) -> createStoreView(id) }
   }
 
-  private fun launch() {
-    alarmsByIdState
-        .onEach { newData ->
-          val storeDuration = measureDuration {
-            dataStore.updateData { prev ->
-              val duration = measureDuration {
-                // changed
-                prev.alarms
-                    .filter { (id, value) -> id in newData && value != newData[id] }
-                    .forEach { (id, prevValue) ->
-                      logger.debug { "changed $prevValue => ${newData[id]}" }
-                    }
-                // added
-                newData
-                    .filter { (id, value) -> id !in prev.alarms }
-                    .forEach { logger.debug { "added ${it.value}" } }
-                // removed
-                prev.alarms
-                    .filter { (id, value) -> id !in newData }
-                    .forEach { logger.debug { "removed ${it.value}" } }
-              }
-              logger.debug { "Logging took ${duration.toInt()}ms" }
-              AlarmValues(alarms = newData)
-            }
-          }
-          logger.debug { "Store took ${storeDuration.toInt()}ms" }
-        }
-        .launchIn(ioScope)
+  /** Changes the state and its version in one critical section, see [WriteBehind.changed] */
+  @Synchronized
+  private fun update(func: (Map<Int, AlarmValue>) -> Map<Int, AlarmValue>) {
+    alarmsByIdState.update(func)
+    writeBehind.changed()
   }
 
-  override fun awaitStored() {
-    val duration = measureDuration {
-      runBlocking {
-        withTimeout(5000) {
-          dataStore.data.first { stored -> stored.alarms == alarmsByIdState.value }
+  /** Writes the current state, returns its version */
+  private suspend fun writeAlarms(): Long {
+    val (version, newData) =
+        synchronized(this) { writeBehind.lastVersion to alarmsByIdState.value }
+    val storeDuration = measureDuration {
+      dataStore.updateData { prev ->
+        newData.forEach { (id, value) ->
+          when (val prevValue = prev.alarms[id]) {
+            null -> logger.debug { "added $value" }
+            value -> Unit
+            else -> logger.debug { "changed $prevValue => $value" }
+          }
         }
+        prev.alarms.forEach { (id, value) ->
+          if (id !in newData) logger.debug { "removed $value" }
+        }
+        AlarmValues(alarms = newData)
       }
     }
+    logger.debug { "Store took ${storeDuration.toInt()}ms" }
+    return version
+  }
+
+  override fun awaitStored() {
+    val duration = measureDuration { writeBehind.awaitStored() }
     logger.debug { "awaitStored() took ${duration.toInt()}ms" }
   }
 
@@ -153,17 +164,20 @@ class DataStoreAlarmsRepository(
       override val id: Int = id
       override var value: AlarmValue
         get() {
-          check(Looper.getMainLooper() == Looper.myLooper()) { "Must be called on main thread" }
+          check(mainThread.isCurrent()) { "Must be called on main thread" }
           return requireNotNull(alarmsByIdState.value).getValue(id)
         }
         set(value) {
-          check(Looper.getMainLooper() == Looper.myLooper()) { "Must be called on main thread" }
-          alarmsByIdState.update { it.plus(id to value) }
+          check(mainThread.isCurrent()) { "Must be called on main thread" }
+          update { it.plus(id to value) }
         }
 
       override fun delete() {
-        check(Looper.getMainLooper() == Looper.myLooper()) { "Must be called on main thread" }
-        alarmsByIdState.update { it.minus(id) }
+        check(mainThread.isCurrent()) { "Must be called on main thread" }
+        synchronized(this@DataStoreAlarmsRepository) {
+          update { it.minus(id) }
+          ids.release(id)
+        }
       }
     }
   }
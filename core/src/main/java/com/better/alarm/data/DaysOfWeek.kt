@@ -0,0 +1,135 @@
+package com.better.alarm.data
+
+import com.better.alarm.platform.StringResources
+import java.text.DateFormatSymbols
+import java.util.Calendar
+import java.util.Locale
+import kotlinx.serialization.Serializable
+
+/**
+ * Days of week code as a single int.
+ * * 0x00: no day
+ * * 0x01: Monday
+ * * 0x02: Tuesday
+ * * 0x04: Wednesday
+ * * 0x08: Thursday
+ * * 0x10: Friday
+ * * 0x20: Saturday
+ * * 0x40: Sunday
+ */
+@Serializable
+data class DaysOfWeek(val coded: Int) {
+  fun isDaySet(dayIndex: Int): Boolean {
+    return dayIndex.isSet()
+  }
+
+  /**
+   * Localized label, e.g. "Mon, Tue" or "every day". Labels are rendered once per locale and then
+   * looked up from [Labels].
+   */
+  fun toString(strings: StringResources, showNever: Boolean): String {
+    return when {
+      coded == 0 && showNever -> strings.never
+      else -> Labels.get(strings, coded and ALL_DAYS)
+    }
+  }
+
+  private fun Int.isSet(): Boolean {
+    return coded and (1 shl this) > 0
+  }
+
+  /** returns number of days from today until next alarm */
+  fun getNextAlarm(today: Calendar): Int {
+    val todayIndex = (today.get(Calendar.DAY_OF_WEEK) + 5) % 7
+    return getNextAlarm(coded, todayIndex)
+  }
+
+  override fun toString(): String {
+    return (if (0.isSet()) "m" else "_") +
+        (if (1.isSet()) 't' else '_') +
+        (if (2.isSet()) 'w' else '_') +
+        (if (3.isSet()) 't' else '_') +
+        (if (4.isSet()) 'f' else '_') +
+        (if (5.isSet()) 's' else '_') +
+        if (6.isSet()) 's' else '_'
+  }
+
+  fun withSet(position: Int): DaysOfWeek {
+    require(position in 0..7) { "Invalid position: $position" }
+    return DaysOfWeek(coded or (1 shl position))
+  }
+
+  fun withCleared(position: Int): DaysOfWeek {
+    require(position in 0..7) { "Invalid position: $position" }
+    return DaysOfWeek(coded and (1 shl position).inv())
+  }
+
+  companion object {
+    /**
+     * Returns number of days from the day with [todayIndex] (0 is Monday) until the next day set in
+     * [coded] or -1 if no days are set.
+     */
+    @JvmStatic
+    fun getNextAlarm(coded: Int, todayIndex: Int): Int {
+      return NEXT_ALARM[(coded and ALL_DAYS) * 7 + todayIndex].toInt()
+    }
+
+    private const val ALL_DAYS = 0x7f
+
+    /** [getNextAlarm] for every combination of days and every day of week, 128×7 entries. */
+    private val NEXT_ALARM =
+        ByteArray((ALL_DAYS + 1) * 7) { entry ->
+          val coded = entry / 7
+          val todayIndex = entry % 7
+          val dayCount = (0..6).firstOrNull { coded and (1 shl (todayIndex + it) % 7) > 0 } ?: -1
+          dayCount.toByte()
+        }
+
+    private val DAY_MAP =
+        intArrayOf(
+            Calendar.MONDAY,
+            Calendar.TUESDAY,
+            Calendar.WEDNESDAY,
+            Calendar.THURSDAY,
+            Calendar.FRIDAY,
+            Calendar.SATURDAY,
+            Calendar.SUNDAY)
+  }
+
+  /**
+   * Labels for all 128 combinations of days, rendered lazily for the current [Locale]. Labels are
+   * dropped as soon as the default locale changes.
+   */
+  private object Labels {
+    @Volatile private var cache: LocalizedLabels? = null
+
+    private class LocalizedLabels(val locale: Locale) {
+      val labels = arrayOfNulls<String>(ALL_DAYS + 1)
+    }
+
+    fun get(strings: StringResources, coded: Int): String {
+      val locale = Locale.getDefault()
+      val current =
+          cache?.takeIf { it.locale == locale } ?: LocalizedLabels(locale).also { cache = it }
+      return current.labels[coded] ?: render(strings, coded).also { current.labels[coded] = it }
+    }
+
+    private fun render(strings: StringResources, coded: Int): String {
+      return when (coded) {
+        0 -> ""
+        ALL_DAYS -> strings.everyDay
+        else -> {
+          val days = (0..6).filter { coded and (1 shl it) > 0 }
+          // short or long form?
+          val dayStrings =
+              when {
+                days.size > 1 -> DateFormatSymbols().shortWeekdays
+                else -> DateFormatSymbols().weekdays
+              }
+
+          days.map { dayIndex -> dayStrings[DAY_MAP[dayIndex]] }.joinToString(strings.dayConcat)
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package com.better.alarm.data
+
+import java.util.BitSet
+
+/**
+ * Allocates the lowest free id like `(0..Int.MAX_VALUE).first { it !in used }`, but without
+ * scanning the used ids. Used ids are bits of a [BitSet], all ids below [nextFree] are used, so
+ * that [allocate] starts the search there and skips 64 ids per word.
+ *
+ * Not thread safe.
+ */
+class IdAllocator(used: Iterable<Int> = emptyList()) {
+  private val used = BitSet()
+
+  /** All ids below this one are used */
+  private var nextFree = 0
+
+  init {
+    used.forEach { id -> this.used.set(id) }
+    nextFree = this.used.nextClearBit(0)
+  }
+
+  /** Returns the lowest free id and marks it as used */
+  fun allocate(): Int {
+    val id = used.nextClearBit(nextFree)
+    used.set(id)
+    nextFree = id + 1
+    return id
+  }
+
+  /** Marks the [id] as free */
+  fun release(id: Int) {
+    used.clear(id)
+    if (id < nextFree) nextFree = id
+  }
+}
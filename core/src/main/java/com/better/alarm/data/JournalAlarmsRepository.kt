@@ -0,0 +1,227 @@
+package com.better.alarm.data
+
+import com.better.alarm.logger.Logger
+import com.better.alarm.platform.DirectorySync
+import com.better.alarm.platform.MainThread
+import java.io.File
+import java.io.IOException
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import org.koin.core.time.measureDuration
+import org.koin.core.time.measureTimedValue
+
+/**
+ * [AlarmsRepository] which appends changes of single alarms to an [AlarmsJournal].
+ *
+ * Every change gets a sequence number, which is the version of the [WriteBehind], and is sent to
+ * the writer which appends all pending changes at once. [awaitStored] waits until the journal
+ * contains the last sequence number, see [DataStoreAlarmsRepository] for the places where this is
+ * required.
+ *
+ * Alarms which were stored by the [DataStoreAlarmsRepository] are restored from its file.
+ *
+ * [create] returns right away and restores the alarms in the `ioScope`. [query], [create] and
+ * [initialized] block until the alarms are restored, callers which must not block use [awaitReady].
+ * [peek] reads a single alarm from the [AlarmRecords] of the journal while the alarms are restored.
+ */
+class JournalAlarmsRepository
+private constructor(
+    private val logger: Logger,
+    private val ioScope: CoroutineScope,
+    private val mainThread: MainThread,
+    private val journal: AlarmsJournal,
+    private val maxWriteDelayMillis: Long,
+) : AlarmsRepository {
+  companion object {
+    /** Starts restoring the alarms in the [ioScope] and returns without waiting for it. */
+    fun create(
+        datastoreDir: File,
+        logger: Logger,
+        ioScope: CoroutineScope,
+        mainThread: MainThread,
+        maxWriteDelayMillis: Long = WriteBehind.DEFAULT_MAX_DELAY_MILLIS,
+        directorySync: DirectorySync = DirectorySync.nio,
+    ): JournalAlarmsRepository {
+      return JournalAlarmsRepository(
+              logger = logger,
+              ioScope = ioScope,
+              mainThread = mainThread,
+              journal = AlarmsJournal(datastoreDir, logger, directorySync = directorySync),
+              maxWriteDelayMillis = maxWriteDelayMillis,
+          )
+          .apply { ioScope.launch { restore() } }
+    }
+
+    fun createBlocking(
+        datastoreDir: File,
+        logger: Logger,
+        ioScope: CoroutineScope,
+        mainThread: MainThread,
+        maxWriteDelayMillis: Long = WriteBehind.DEFAULT_MAX_DELAY_MILLIS,
+    ): AlarmsRepository {
+      return create(datastoreDir, logger, ioScope, mainThread, maxWriteDelayMillis).apply {
+        awaitReadyBlocking()
+      }
+    }
+  }
+
+  private val ready = CompletableDeferred<Unit>()
+
+  /** Guarded by `this`, filled by [restore] before [ready] is completed */
+  private val alarmsById = HashMap<Int, AlarmValue>()
+  private var ids = IdAllocator()
+  private var wasInitialized = false
+  private lateinit var writeBehind: WriteBehind
+
+  private val changes = Channel<AlarmsJournal.Record>(Channel.UNLIMITED)
+
+  override val initialized: Boolean
+    get() {
+      awaitReadyBlocking()
+      return synchronized(this) { wasInitialized }
+    }
+
+  override val isReady: Boolean
+    get() = ready.isCompleted
+
+  override suspend fun awaitReady() {
+    ready.await()
+  }
+
+  override fun create(): AlarmStore {
+    awaitReadyBlocking()
+    return synchronized(this) {
+      val id = ids.allocate()
+      put(id, AlarmValue(id = id))
+      createStoreView(id)
+    }
+  }
+
+  /** All values are sent to the writer at once and are appended by a single write */
+  override fun createAll(values: List<AlarmValue>): List<AlarmStore> {
+    awaitReadyBlocking()
+    return synchronized(this) {
+      values.map { value ->
+        val id = ids.allocate()
+        put(id, value.copy(id = id))
+        createStoreView(id)
+      }
+    }
+  }
+
+  override fun query(): List<AlarmStore> {
+    awaitReadyBlocking()
+    return synchronized(this) { alarmsById.keys.map { id -> createStoreView(id) } }
+  }
+
+  override fun peek(id: Int): AlarmValue? {
+    if (!isReady) {
+      val (peeked, duration) = measureTimedValue { journal.peek(id) }
+      if (peeked != null) {
+        logger.debug { "peek($id) took ${duration.toInt()}ms" }
+        return peeked.getOrNull()
+      }
+    }
+    awaitReadyBlocking()
+    return synchronized(this) { alarmsById[id] }
+  }
+
+  private fun restore() {
+    try {
+      val (restoredValues, duration) = measureTimedValue { journal.restore() }
+      synchronized(this) {
+        wasInitialized = journal.initialized
+        alarmsById.putAll(restoredValues)
+        ids = IdAllocator(restoredValues.keys)
+        writeBehind =
+            WriteBehind(ioScope, journal.sequence, maxWriteDelayMillis) { appendPendingChanges() }
+      }
+      logger.debug { "restore() took ${duration.toInt()}ms" }
+      ready.complete(Unit)
+    } catch (e: Exception) {
+      logger.error(e) { "Failed to restore alarms" }
+      ready.completeExceptionally(e)
+    }
+  }
+
+  /** Blocks the caller if the alarms are not restored yet, this must not be done on the I/O scope */
+  private fun awaitReadyBlocking() {
+    if (ready.isCompleted && !ready.isCancelled) return
+    val duration = measureDuration { runBlocking { ready.await() } }
+    logger.warning { "Waited ${duration.toInt()}ms for the alarms to be restored" }
+  }
+
+  /**
+   * Appends all changes which were sent, returns the sequence number of the last stored one. If the
+   * write fails, the journal keeps the changes in memory and the [WriteBehind] calls this again
+   * because the returned sequence is behind the last change.
+   */
+  private fun appendPendingChanges(): Long {
+    val records = mutableListOf<AlarmsJournal.Record>()
+    while (true) records.add(changes.tryReceive().getOrNull() ?: break)
+    if (records.isEmpty() && journal.storedSequence == journal.sequence) {
+      return journal.storedSequence
+    }
+    records.forEach { record ->
+      logger.debug { record.value?.let { "put $it" } ?: "deleted ${record.id}" }
+    }
+    try {
+      val duration = measureDuration { journal.append(records) }
+      logger.debug { "Store of ${records.size} changes took ${duration.toInt()}ms" }
+    } catch (e: IOException) {
+      logger.error(e) { "Failed to store ${records.size} changes, retrying with the next write" }
+    }
+    return journal.storedSequence
+  }
+
+  override fun awaitStored() {
+    // nothing can be changed before the alarms are restored
+    if (!isReady) return
+    val duration = measureDuration { writeBehind.awaitStored() }
+    logger.debug { "awaitStored() took ${duration.toInt()}ms" }
+  }
+
+  @Synchronized
+  private fun get(id: Int): AlarmValue = alarmsById.getValue(id)
+
+  @Synchronized
+  private fun put(id: Int, value: AlarmValue) {
+    if (alarmsById.put(id, value) != value) {
+      changes.trySend(AlarmsJournal.Record(writeBehind.nextVersion(), id, value))
+      writeBehind.notifyChanged()
+    }
+  }
+
+  @Synchronized
+  private fun remove(id: Int) {
+    if (alarmsById.remove(id) != null) {
+      ids.release(id)
+      changes.trySend(AlarmsJournal.Record(writeBehind.nextVersion(), id, null))
+      writeBehind.notifyChanged()
+    }
+  }
+
+  /** Creates an [AlarmStore] for the given id, changes are appended to the journal. */
+  private fun createStoreView(id: Int): AlarmStore {
+    return object : AlarmStore {
+      override val id: Int = id
+      override var value: AlarmValue
+        get() {
+          check(mainThread.isCurrent()) { "Must be called on main thread" }
+          return get(id)
+        }
+        set(value) {
+          check(mainThread.isCurrent()) { "Must be called on main thread" }
+          put(id, value)
+        }
+
+      override fun delete() {
+        check(mainThread.isCurrent()) { "Must be called on main thread" }
+        remove(id)
+      }
+    }
+  }
+}
@@ -0,0 +1,149 @@
+package com.better.alarm.data
+
+import kotlinx.serialization.ExperimentalSerializationApi
+import kotlinx.serialization.protobuf.ProtoBuf
+
+/**
+ * [AlarmValues.alarms] which are decoded on first access. The [ProtoBuf] bytes are scanned once to
+ * find the id and the position of every [AlarmValue], [get] decodes one alarm at a time. Used by
+ * [AlarmsJournal.peek] to read a single alarm from the snapshot, which has the same layout and the
+ * [sequence].
+ *
+ * Not thread safe.
+ */
+@OptIn(ExperimentalSerializationApi::class)
+class LazyAlarmValues(private val bytes: ByteArray) : AbstractMap<Int, AlarmValue>() {
+  private val slots = HashMap<Int, Int>()
+  private var offsets = IntArray(16)
+  private var lengths = IntArray(16)
+  private var decoded = arrayOfNulls<AlarmValue>(16)
+
+  /** Field 2 of a journal snapshot, 0 for [AlarmValues] */
+  var sequence: Long = 0
+    private set
+
+  init {
+    val reader = Reader(bytes, 0, bytes.size)
+    while (reader.hasMore()) {
+      val tag = reader.varint().toInt()
+      when (tag) {
+        ENTRY -> {
+          val length = reader.varint().toInt()
+          readEntry(reader.position, length)
+          reader.position += length
+        }
+        SEQUENCE -> sequence = reader.varint()
+        else -> reader.skip(tag)
+      }
+    }
+  }
+
+  override val size: Int
+    get() = slots.size
+
+  override val keys: Set<Int>
+    get() = slots.keys
+
+  override fun containsKey(key: Int): Boolean = key in slots
+
+  override fun get(key: Int): AlarmValue? = slots[key]?.let { decode(it) }
+
+  override val entries: Set<Map.Entry<Int, AlarmValue>>
+    get() =
+        object : AbstractSet<Map.Entry<Int, AlarmValue>>() {
+          override val size: Int
+            get() = slots.size
+
+          override fun iterator(): Iterator<Map.Entry<Int, AlarmValue>> {
+            return slots.entries
+                .asSequence()
+                .map { (id, slot) ->
+                  object : Map.Entry<Int, AlarmValue> {
+                    override val key: Int = id
+                    override val value: AlarmValue
+                      get() = decode(slot)
+                  }
+                }
+                .iterator()
+          }
+        }
+
+  private fun decode(slot: Int): AlarmValue {
+    return decoded[slot]
+        ?: ProtoBuf.decodeFromByteArray(
+                AlarmValue.serializer(),
+                bytes.copyOfRange(offsets[slot], offsets[slot] + lengths[slot]))
+            .also { decoded[slot] = it }
+  }
+
+  /** Reads the key and the position of the value, a later entry replaces an earlier one */
+  private fun readEntry(start: Int, length: Int) {
+    val reader = Reader(bytes, start, start + length)
+    var id = 0
+    var valueOffset = start
+    var valueLength = 0
+    while (reader.hasMore()) {
+      val tag = reader.varint().toInt()
+      when (tag) {
+        KEY -> id = reader.varint().toInt()
+        VALUE -> {
+          valueLength = reader.varint().toInt()
+          valueOffset = reader.position
+          reader.position += valueLength
+        }
+        else -> reader.skip(tag)
+      }
+    }
+    val slot = slots.getOrPut(id) { slots.size.also { grow(it) } }
+    offsets[slot] = valueOffset
+    lengths[slot] = valueLength
+    decoded[slot] = null
+  }
+
+  private fun grow(slot: Int) {
+    if (slot < offsets.size) return
+    val capacity = offsets.size * 2
+    offsets = offsets.copyOf(capacity)
+    lengths = lengths.copyOf(capacity)
+    decoded = decoded.copyOf(capacity)
+  }
+
+  /** Reads the protobuf wire format between [position] and [end] */
+  private class Reader(private val bytes: ByteArray, var position: Int, private val end: Int) {
+    fun hasMore() = position < end
+
+    fun varint(): Long {
+      var result = 0L
+      var shift = 0
+      while (true) {
+        check(position < end) { "Truncated varint" }
+        val byte = bytes[position++].toInt()
+        result = result or ((byte and 0x7f).toLong() shl shift)
+        if (byte and 0x80 == 0) return result
+        shift += 7
+      }
+    }
+
+    /** Skips the value of a field with the [tag] */
+    fun skip(tag: Int) {
+      when (tag and 7) {
+        0 -> varint()
+        1 -> position += 8
+        2 -> {
+          val length = varint().toInt()
+          position += length
+        }
+        5 -> position += 4
+        else -> error("Unsupported wire type in $tag")
+      }
+    }
+  }
+
+  private companion object {
+    /** Tags are `field number shl 3 or wire type` */
+    const val ENTRY = 1 shl 3 or 2
+    const val SEQUENCE = 2 shl 3
+    const val KEY = 1 shl 3
+    const val VALUE = 2 shl 3 or 2
+  }
+}
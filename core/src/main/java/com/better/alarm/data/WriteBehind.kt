@@ -0,0 +1,89 @@
+package com.better.alarm.data
+
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import kotlinx.coroutines.withTimeoutOrNull
+
+/**
+ * Write-behind stage of a repository. Every change of the in-memory state gets a monotonic version
+ * from [changed]. A single writer coroutine waits at most [maxDelayMillis] after a change, so that
+ * a burst of changes is stored with one [write]. [write] stores the current state and returns its
+ * version.
+ *
+ * [awaitStored] writes pending changes right away and waits until the stored version has reached
+ * the version of the last change, no states are compared.
+ */
+class WriteBehind(
+    scope: CoroutineScope,
+    /** Version of the state which is already stored */
+    initialVersion: Long = 0,
+    private val maxDelayMillis: Long = DEFAULT_MAX_DELAY_MILLIS,
+    dispatcher: CoroutineDispatcher = singleWriter(),
+    private val write: suspend () -> Long,
+) {
+  private val dirty = Channel<Unit>(Channel.CONFLATED)
+  private val flush = Channel<Unit>(Channel.CONFLATED)
+  private val stored = MutableStateFlow(initialVersion)
+
+  /** Version of the last change, guarded by `this` */
+  private var version = initialVersion
+
+  init {
+    scope.launch(dispatcher) {
+      for (change in dirty) {
+        // a change which got its version before it was queued is written by the next round
+        do {
+          withTimeoutOrNull(maxDelayMillis) { flush.receive() }
+          stored.value = write()
+        } while (stored.value < lastVersion)
+      }
+    }
+  }
+
+  /** Version of the last change */
+  val lastVersion: Long
+    @Synchronized get() = version
+
+  /** Version of the last stored state */
+  val storedVersion: Long
+    get() = stored.value
+
+  /**
+   * Increments the version. Must be called in the same critical section as the change of the state,
+   * so that a state which is written has the version which is returned by [write].
+   */
+  fun changed(): Long = nextVersion().also { notifyChanged() }
+
+  /**
+   * Increments the version without waking up the writer. Used for changes which are queued for
+   * [write] after they got their version, [notifyChanged] must be called after they are queued.
+   */
+  @Synchronized fun nextVersion(): Long = ++version
+
+  /** Wakes up the writer for changes which got their version from [nextVersion] */
+  fun notifyChanged() {
+    dirty.trySend(Unit)
+  }
+
+  /** Blocks until the [target] version is stored, does not wait for [maxDelayMillis]. */
+  fun awaitStored(target: Long = lastVersion, timeoutMillis: Long = 5000) {
+    if (stored.value >= target) return
+    flush.trySend(Unit)
+    runBlocking { withTimeout(timeoutMillis) { stored.first { it >= target } } }
+  }
+
+  companion object {
+    const val DEFAULT_MAX_DELAY_MILLIS = 100L
+
+    @OptIn(ExperimentalCoroutinesApi::class)
+    fun singleWriter(): CoroutineDispatcher = Dispatchers.IO.limitedParallelism(1)
+  }
+}
@@ -0,0 +1,19 @@
+package com.better.alarm.data.contentprovider
+
+import com.better.alarm.data.AlarmValue
+
+/** Alarms in the SQLite database of old versions, which are migrated to the repository once. */
+interface DatabaseQuery {
+  /**
+   * Reads the alarms ordered by id, [windowSize] rows at a time, and calls the [action] for each of
+   * them without collecting them.
+   */
+  fun forEach(windowSize: Int = WINDOW_SIZE, action: (AlarmValue) -> Unit)
+
+  /** Deletes the alarms with the [ids] in one transaction. */
+  fun deleteAll(ids: Collection<Int>)
+
+  companion object {
+    const val WINDOW_SIZE = 256
+  }
+}
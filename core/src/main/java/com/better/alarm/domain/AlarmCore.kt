@@ -0,0 +1,859 @@
+/*
+ * Copyright (C) 2009 The Android Open Source Project
+ * Copyright (C) 2012 Yuriy Kulikov yuriy.kulikov.87@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.better.alarm.domain
+
+import com.better.alarm.data.AlarmStore
+import com.better.alarm.data.AlarmValue
+import com.better.alarm.data.Alarmtone
+import com.better.alarm.data.CalendarType
+import com.better.alarm.data.Prefs
+import com.better.alarm.data.modify
+import com.better.alarm.domain.statemachine.ComplexTransition
+import com.better.alarm.domain.statemachine.State
+import com.better.alarm.domain.statemachine.StateMachine
+import com.better.alarm.domain.statemachine.StateMachineDefinition
+import com.better.alarm.domain.statemachine.TransitionTrace
+import com.better.alarm.logger.Logger
+import com.better.alarm.platform.BuildFlags
+import com.better.alarm.receivers.Intents
+import java.util.*
+import java.util.concurrent.TimeUnit
+
+sealed class Event {
+  override fun toString(): String = javaClass.simpleName
+}
+
+data class Snooze(val hour: Int?, val minute: Int?) : Event()
+
+data class Change(val value: AlarmValue) : Event()
+
+object PrealarmDurationChanged : Event()
+
+object Dismiss : Event()
+
+object RequestSkip : Event()
+
+object Fired : Event()
+
+object Enable : Event()
+
+object Disable : Event()
+
+object Refresh : Event()
+
+object TimeSet : Event()
+
+object InexactFired : Event()
+
+object Delete : Event()
+
+object Create : Event()
+
+/**
+ * Alarm is a class which models a real word alarm. It is a simple state machine. External events
+ * (e.g. user input [snooze] or [dismiss]) or timer events [onAlarmFired] trigger transitions. Alarm
+ * notifies listeners when transitions happen by broadcasting Intents listed in [Intents], e.g.
+ * [Intents.ALARM_PREALARM_ACTION] or [Intents.ALARM_DISMISS_ACTION]
+ *
+ * State and properties of the alarm are stored in the database and are updated every time when
+ * changes to alarm happen.
+ *
+ * ```
+ * @startuml
+ * State DISABLED
+ * State RESCHEDULE
+ * State ENABLE
+ * State ENABLED {
+ * State PREALARM_SET
+ * State SET
+ * State FIRED
+ * State PREALARM_FIRED
+ * State SNOOZED
+ * State PREALARM_SNOOZED
+ * RESCHEDULE :Complex transitiontran
+ * PREALARM_FIRED :timer
+ * SNOOZED :timer
+ * PREALARM_SNOOZED :timer
+ * PREALARM_SET :timer
+ * SET :timer
+ *
+ * DISABLED -down-> ENABLE :enable\nchange
+ * ENABLED -up-> DISABLED :disable
+ * ENABLED -up-> RESCHEDULE :dismiss
+ * ENABLED -up-> ENABLE :change\nrefresh
+ *
+ * PREALARM_SET -down-> PREALARM_FIRED :fired
+ * PREALARM_FIRED -down-> PREALARM_SNOOZED :snooze
+ * PREALARM_SNOOZED -up-> FIRED
+ * SET -down-> FIRED :fired
+ * PREALARM_FIRED --right--> FIRED :fired
+ * FIRED -down->  SNOOZED :snooze
+ * SNOOZED -up-> FIRED :fired
+ *
+ * RESCHEDULE -up-> DISABLED :disabled
+ *
+ * RESCHEDULE -down-> PREALARM_SET :PA
+ * RESCHEDULE -down-> SET :nPA
+ * ENABLE -down-> PREALARM_SET :PA
+ * ENABLE -down-> SET :nPA
+ * }
+ * @enduml
+ * ```
+ */
+class AlarmCore(
+    private val alarmStore: AlarmStore,
+    private val log: Logger,
+    private val mAlarmsScheduler: IAlarmsScheduler,
+    private val broadcaster: IStateNotifier,
+    private val prefs: Prefs,
+    private val store: Store,
+    private val calendars: Calendars,
+    private val buildFlags: BuildFlags,
+    private val onDelete: (Int) -> Unit,
+    transitionTrace: TransitionTrace? = null,
+) : Alarm {
+  private val stateMachine =
+      StateMachine<Event, AlarmCore>(
+          "Alarm " + alarmStore.id, log, this, transitionTrace, alarmStore.id)
+  private val container: AlarmValue
+    get() = alarmStore.value
+
+  /** Cleared by [AlarmState] handlers which do not handle the event */
+  private var handled: Boolean = false
+
+  /** Next time of the snoozed alarm, see [SnoozedState] */
+  private var snoozedNextTime: Calendar? = null
+
+  /** Strategy used to notify other components about alarm state. */
+  interface IStateNotifier {
+    fun broadcastAlarmState(id: Int, action: String, calendar: Calendar? = null)
+
+    fun broadcastAlarmState(id: Int, action: String)
+  }
+
+  fun start() {
+    val initial = definition.states.firstOrNull { it.name == alarmStore.value.state }
+    stateMachine.start(definition, initial ?: DisabledState)
+    updateListInStore()
+  }
+
+  /**
+   * States are shared by all alarms, see [StateMachineDefinition]. Handlers are extensions of the
+   * [AlarmCore] which processes the event, all data of an alarm belongs to the [AlarmCore].
+   */
+  private companion object {
+    val definition =
+        StateMachineDefinition<Event, AlarmCore> {
+          addState(RootState)
+          addState(DisabledState, RootState)
+          addState(EnabledState, RootState)
+          addState(DeletedState, RootState)
+          addState(RescheduleTransition, RootState)
+          addState(EnableTransition, RootState)
+
+          addState(SetState, EnabledState)
+          addState(PreAlarmSetState, SetState)
+          addState(NormalSetState, SetState)
+          addState(SnoozedState, EnabledState)
+          addState(SkippingSetState, EnabledState)
+          addState(PreAlarmFiredState, EnabledState)
+          addState(FiredState, EnabledState)
+          addState(PreAlarmSnoozedState, EnabledState)
+        }
+  }
+
+  private object RootState : AlarmState() {
+    override fun onEvent(context: AlarmCore, event: Event): Boolean {
+      if (context.buildFlags.isDebug) {
+        throw RuntimeException("Unhandled event: $event")
+      } else {
+        context.log.warning { "Unhandled event: $event" }
+        return true
+      }
+    }
+  }
+
+  private object DeletedState : AlarmState() {
+    override fun AlarmCore.onEnter(reason: Event) {
+      removeAlarm()
+      removeFromStore()
+      onDelete(id)
+      alarmStore.delete()
+    }
+  }
+
+  private object DisabledState : AlarmState() {
+    override fun AlarmCore.onEnter(reason: Event) {
+      updateListInStore()
+    }
+
+    override fun AlarmCore.onChange(alarmValue: AlarmValue) {
+      writeChangeData(alarmValue)
+      updateListInStore()
+      if (container.isEnabled) {
+        stateMachine.transitionTo(EnableTransition)
+      }
+    }
+
+    override fun AlarmCore.onEnable() {
+      alarmStore.modify { withIsEnabled(true) }
+      stateMachine.transitionTo(EnableTransition)
+    }
+
+    override fun AlarmCore.onDelete() {
+      stateMachine.transitionTo(DeletedState)
+    }
+
+    override fun AlarmCore.onRefresh() {
+      // NOP
+    }
+
+    override fun AlarmCore.onSystemTimeSet() {
+      // NOP
+    }
+
+    override fun AlarmCore.onPreAlarmDurationChanged() {
+      // NOP
+    }
+
+    override fun AlarmCore.onSnooze(snooze: Snooze) {
+      log.warning { "$this is in DisabledState" }
+    }
+
+    override fun AlarmCore.onDismiss() {
+      log.warning { "$this is in DisabledState" }
+    }
+
+    override fun AlarmCore.onDisable() {
+      log.warning { "$this is in DisabledState" }
+    }
+  }
+
+  private object RescheduleTransition : ComplexTransition<Event, AlarmCore>() {
+    override fun performComplexTransition(context: AlarmCore) =
+        with(context) {
+          if (container.isRepeatSet) {
+            if (container.isPrealarm && prefs.preAlarmDuration.value != -1) {
+              stateMachine.transitionTo(PreAlarmSetState)
+            } else {
+              stateMachine.transitionTo(NormalSetState)
+            }
+          } else if (container.isDeleteAfterDismiss) {
+            log.debug { "Delete after dismiss!" }
+            stateMachine.transitionTo(DeletedState)
+          } else {
+            log.debug { "Repeating is not set, disabling the alarm" }
+            alarmStore.modify { withIsEnabled(false) }
+            stateMachine.transitionTo(DisabledState)
+          }
+        }
+  }
+
+  /**
+   * Transition checks if preAlarm for the next alarm is in the future. This is required to prevent
+   * the situation when user sets alarm in time which is less than preAlarm duration. In this case
+   * main alarm should be set.
+   */
+  private object EnableTransition : ComplexTransition<Event, AlarmCore>() {
+    override fun performComplexTransition(context: AlarmCore) =
+        with(context) {
+          val preAlarmMinutes = prefs.preAlarmDuration.value
+          val preAlarm =
+              calculateNextTimeMillis() - TimeUnit.MINUTES.toMillis(preAlarmMinutes.toLong())
+          if (container.isPrealarm && preAlarm > calendars.nowMillis() && preAlarmMinutes != -1) {
+            stateMachine.transitionTo(PreAlarmSetState)
+          } else {
+            stateMachine.transitionTo(NormalSetState)
+          }
+        }
+  }
+
+  /** Master state for all enabled states. Handles disable and delete */
+  private object EnabledState : AlarmState() {
+    override fun AlarmCore.onEnter(reason: Event) {
+      if (!container.isEnabled) {
+        // if due to an exception during development an alarm is not enabled but the state is
+        alarmStore.modify { withIsEnabled(true) }
+      }
+      updateListInStore()
+    }
+
+    override fun AlarmCore.onChange(alarmValue: AlarmValue) {
+      writeChangeData(alarmValue)
+      updateListInStore()
+      if (container.isEnabled) {
+        stateMachine.transitionTo(EnableTransition)
+      } else {
+        stateMachine.transitionTo(DisabledState)
+      }
+    }
+
+    override fun AlarmCore.onDismiss() {
+      stateMachine.transitionTo(RescheduleTransition)
+    }
+
+    override fun AlarmCore.onDisable() {
+      alarmStore.modify { withIsEnabled(false) }
+      stateMachine.transitionTo(DisabledState)
+    }
+
+    override fun AlarmCore.onRefresh() {
+      stateMachine.transitionTo(EnableTransition)
+    }
+
+    override fun AlarmCore.onSystemTimeSet() {
+      // nothing to do
+    }
+
+    override fun AlarmCore.onDelete() {
+      stateMachine.transitionTo(DeletedState)
+    }
+  }
+
+  private object SetState : AlarmState() {
+    override fun AlarmCore.onEnter(reason: Event) {
+      updateListInStore()
+    }
+
+    override fun AlarmCore.onInexactFired() {
+      broadcastAlarmState(Intents.ALARM_SHOW_SKIP)
+    }
+
+    override fun AlarmCore.onRequestSkip() {
+      when {
+        container.isRepeatSet -> stateMachine.transitionTo(SkippingSetState)
+        else -> stateMachine.transitionTo(RescheduleTransition)
+      }
+    }
+
+    override fun exit(context: AlarmCore, reason: Event?) =
+        with(context) {
+          broadcastAlarmState(Intents.ALARM_REMOVE_SKIP)
+          if (!alarmWillBeRescheduled(reason)) {
+            removeAlarm()
+          }
+          mAlarmsScheduler.removeInexactAlarm(id)
+        }
+
+    override fun AlarmCore.onSystemTimeSet() {
+      stateMachine.transitionTo(EnableTransition)
+    }
+  }
+
+  private object NormalSetState : AlarmState() {
+    override fun AlarmCore.onEnter(reason: Event) {
+      broadcastAlarmSetWithNormalTime(calculateNextTimeMillis(), reason.isUserInteraction())
+    }
+
+    override fun AlarmCore.onResume() {
+      val nextTime = calculateNextTime()
+      setAlarm(nextTime, CalendarType.NORMAL)
+      showSkipNotification(nextTime)
+    }
+
+    override fun AlarmCore.onFired() {
+      stateMachine.transitionTo(FiredState)
+    }
+
+    override fun AlarmCore.onPreAlarmDurationChanged() {
+      stateMachine.transitionTo(EnableTransition)
+    }
+  }
+
+  private object PreAlarmSetState : AlarmState() {
+    override fun AlarmCore.onEnter(reason: Event) {
+      broadcastAlarmSetWithNormalTime(calculateNextPrealarmTimeMillis(), reason.isUserInteraction())
+    }
+
+    override fun AlarmCore.onResume() {
+      val nextPrealarmTime = calculateNextPrealarmTimeMillis()
+      if (nextPrealarmTime > calendars.nowMillis()) {
+        val calendar = calendarOf(nextPrealarmTime)
+        setAlarm(calendar, CalendarType.PREALARM)
+        showSkipNotification(calendar)
+      } else {
+        // TODO this should never happen
+        log.e("PreAlarm is still in the past!")
+        stateMachine.transitionTo(if (container.isEnabled) EnableTransition else DisabledState)
+      }
+    }
+
+    private fun AlarmCore.calculateNextPrealarmTimeMillis(): Long {
+      return with(container) {
+        NextOccurrenceCalculator.nextPrealarmTime(
+            hour = hour,
+            minutes = minutes,
+            daysOfWeek = daysOfWeek.coded,
+            date = NextOccurrenceCalculator.dateOf(this, calendars.zone()),
+            prealarmMinutes = prefs.preAlarmDuration.value,
+            zone = calendars.zone(),
+            now = calendars.nowMillis(),
+        )
+      }
+    }
+
+    override fun AlarmCore.onFired() {
+      stateMachine.transitionTo(PreAlarmFiredState)
+    }
+
+    override fun AlarmCore.onPreAlarmDurationChanged() {
+      stateMachine.transitionTo(EnableTransition)
+    }
+  }
+
+  private object SkippingSetState : AlarmState() {
+    override fun AlarmCore.onEnter(reason: Event) {
+      updateListInStore()
+    }
+
+    override fun AlarmCore.onResume() {
+      val nextTime = calculateNextTimeMillis()
+      if (nextTime > calendars.nowMillis()) {
+        mAlarmsScheduler.setInexactAlarm(id, calendarOf(nextTime))
+
+        val nextAfterSkip =
+            with(container) {
+              NextOccurrenceCalculator.nextTimeAfterSkip(
+                  hour = hour,
+                  minutes = minutes,
+                  daysOfWeek = daysOfWeek.coded,
+                  date = NextOccurrenceCalculator.dateOf(this, calendars.zone()),
+                  zone = calendars.zone(),
+                  now = calendars.nowMillis(),
+              )
+            }
+
+        // this will never (hopefully) fire, but in order to display it everywhere...
+        setAlarm(calendarOf(nextAfterSkip), CalendarType.NORMAL)
+      } else {
+        stateMachine.transitionTo(if (container.isEnabled) EnableTransition else DisabledState)
+      }
+    }
+
+    override fun AlarmCore.onFired() {
+      // yeah should never happen
+      stateMachine.transitionTo(FiredState)
+    }
+
+    override fun AlarmCore.onInexactFired() {
+      stateMachine.transitionTo(EnableTransition)
+    }
+
+    override fun exit(context: AlarmCore, reason: Event?) =
+        with(context) {
+          mAlarmsScheduler.removeInexactAlarm(id)
+          // avoids flicker of the icon
+          if (reason !is RequestSkip) {
+            removeAlarm()
+          }
+        }
+  }
+
+  /** handles both snoozed and main for now */
+  private object FiredState : AlarmState() {
+    override fun AlarmCore.onEnter(reason: Event) {
+      broadcastAlarmState(Intents.ALARM_ALERT_ACTION)
+      val autoSilenceMinutes = prefs.autoSilence.value
+      if (autoSilenceMinutes > 0) {
+        // -1 means OFF
+        val nextTime = calendars.now()
+        nextTime.add(Calendar.MINUTE, autoSilenceMinutes)
+        setAlarm(nextTime, CalendarType.AUTOSILENCE)
+      }
+    }
+
+    override fun AlarmCore.onFired() {
+      broadcastAlarmState(Intents.ACTION_SOUND_EXPIRED)
+      // this is like a dismiss but we show an additional notification
+      stateMachine.transitionTo(RescheduleTransition)
+    }
+
+    override fun AlarmCore.onSnooze(snooze: Snooze) {
+      stateMachine.transitionTo(SnoozedState)
+    }
+
+    override fun exit(context: AlarmCore, reason: Event?) =
+        with(context) {
+          broadcastAlarmState(Intents.ALARM_DISMISS_ACTION)
+          removeAlarm()
+        }
+  }
+
+  private object PreAlarmFiredState : AlarmState() {
+    override fun AlarmCore.onEnter(reason: Event) {
+      broadcastAlarmState(Intents.ALARM_PREALARM_ACTION)
+      setAlarm(calculateNextTime(), CalendarType.NORMAL)
+    }
+
+    override fun AlarmCore.onFired() {
+      stateMachine.transitionTo(FiredState)
+    }
+
+    override fun AlarmCore.onSnooze(snooze: Snooze) {
+      if (snooze.minute != null) {
+        // snooze to time with prealarm -> go to snoozed
+        stateMachine.transitionTo(SnoozedState)
+      } else {
+        stateMachine.transitionTo(PreAlarmSnoozedState)
+      }
+    }
+
+    override fun exit(context: AlarmCore, reason: Event?) =
+        with(context) {
+          removeAlarm()
+          if (reason !is Fired) {
+            // do not dismiss because we will immediately fire another event at the service
+            broadcastAlarmState(Intents.ALARM_DISMISS_ACTION)
+          }
+        }
+  }
+
+  private object SnoozedState : AlarmState() {
+    private fun AlarmCore.nextRegualarSnoozeCalendar(): Calendar {
+      val nextTime = calendars.now()
+      val snoozeMinutes = prefs.snoozeDuration.value
+      nextTime.add(Calendar.MINUTE, snoozeMinutes)
+      return nextTime
+    }
+
+    override fun AlarmCore.onEnter(reason: Event) {
+      val now = calendars.now()
+      val nextTime =
+          when {
+            reason is Snooze && reason.hour != null && reason.minute != null -> {
+              log.debug { "Enter snooze $reason" }
+              val customTime =
+                  calendars.now().apply {
+                    set(Calendar.HOUR_OF_DAY, reason.hour)
+                    set(Calendar.MINUTE, reason.minute)
+                  }
+              when {
+                customTime.after(now) -> customTime
+                else -> nextRegualarSnoozeCalendar()
+              }
+            }
+            else -> nextRegualarSnoozeCalendar()
+          }
+      snoozedNextTime = nextTime
+      // change the next time to show notification properly
+      alarmStore.modify { withNextTime(nextTime) }
+      // updateListInStore()
+      broadcastAlarmState(Intents.ALARM_SNOOZE_ACTION, nextTime) // Yar. 18.08
+    }
+
+    override fun AlarmCore.onResume() {
+      // alarm was started again while snoozed alarm was hanging in there
+      if (snoozedNextTime == null) {
+        snoozedNextTime = nextRegualarSnoozeCalendar()
+      }
+
+      setAlarm(snoozedNextTime!!, CalendarType.NORMAL)
+    }
+
+    override fun AlarmCore.onFired() {
+      stateMachine.transitionTo(FiredState)
+    }
+
+    override fun AlarmCore.onSnooze(snooze: Snooze) {
+      // reschedule from notification
+      enter(this, snooze)
+      onResume()
+    }
+
+    override fun exit(context: AlarmCore, reason: Event?) =
+        with(context) {
+          removeAlarm()
+          broadcastAlarmState(Intents.ACTION_CANCEL_SNOOZE)
+        }
+  }
+
+  private object PreAlarmSnoozedState : AlarmState() {
+    override fun AlarmCore.onEnter(reason: Event) {
+      // Yar 18.08: setAlarm -> resume; setAlarm(calculateNextTime(), CalendarType.NORMAL);
+      broadcastAlarmState(Intents.ALARM_SNOOZE_ACTION, calculateNextTime())
+    }
+
+    override fun AlarmCore.onFired() {
+      stateMachine.transitionTo(FiredState)
+    }
+
+    override fun AlarmCore.onSnooze(snooze: Snooze) {
+      // reschedule from notification
+      stateMachine.transitionTo(SnoozedState)
+    }
+
+    override fun exit(context: AlarmCore, reason: Event?) =
+        with(context) {
+          removeAlarm()
+          broadcastAlarmState(Intents.ACTION_CANCEL_SNOOZE)
+        }
+
+    override fun AlarmCore.onResume() {
+      setAlarm(calculateNextTime(), CalendarType.NORMAL)
+    }
+  }
+
+  private fun broadcastAlarmState(action: String, calendar: Calendar? = null) {
+    log.trace { "[Alarm ${container.id}] broadcastAlarmState($action)" }
+    when {
+      calendar != null -> broadcaster.broadcastAlarmState(container.id, action, calendar)
+      else -> broadcaster.broadcastAlarmState(container.id, action)
+    }
+    updateListInStore()
+  }
+
+  private fun broadcastAlarmSetWithNormalTime(millis: Long, fromUserInteraction: Boolean) {
+    store.sets().onNext(Store.AlarmSet(container, millis, fromUserInteraction))
+    updateListInStore()
+  }
+
+  private fun showSkipNotification(c: Calendar) {
+    val skipTime = prefs.skipDuration.value
+    val toShowSkip = c.timeInMillis - TimeUnit.MINUTES.toMillis(skipTime.toLong())
+    when {
+      skipTime == -1 -> {
+        // switched off
+      }
+      toShowSkip > calendars.nowMillis() -> {
+        mAlarmsScheduler.setInexactAlarm(id, calendarOf(toShowSkip))
+      }
+      else -> {
+        log.debug { "Alarm $id is due in less than $skipTime minutes - show notification" }
+        broadcastAlarmState(Intents.ALARM_SHOW_SKIP)
+      }
+    }
+  }
+
+  private fun setAlarm(calendar: Calendar, calendarType: CalendarType) {
+    mAlarmsScheduler.setAlarm(container.id, calendarType, calendar, container)
+    alarmStore.modify { withNextTime(calendar) }
+  }
+
+  private fun removeAlarm() {
+    mAlarmsScheduler.removeAlarm(container.id)
+  }
+
+  private fun removeFromStore() {
+    store.removeAlarm(container.id)
+  }
+
+  private fun writeChangeData(data: AlarmValue) {
+    alarmStore.modify { withChangeData(data) }
+  }
+
+  private fun calculateNextTime(): Calendar = calendarOf(calculateNextTimeMillis())
+
+  private fun calculateNextTimeMillis(): Long {
+    return with(container) {
+      NextOccurrenceCalculator.nextTime(
+          hour = hour,
+          minutes = minutes,
+          daysOfWeek = daysOfWeek.coded,
+          date = NextOccurrenceCalculator.dateOf(this, calendars.zone()),
+          zone = calendars.zone(),
+          now = calendars.nowMillis(),
+      )
+    }
+  }
+
+  private fun calendarOf(millis: Long): Calendar = calendars.now().apply { timeInMillis = millis }
+
+  private fun alarmWillBeRescheduled(reason: Event?): Boolean {
+    return reason is Change && reason.value.isEnabled
+  }
+
+  /**
+   * Base class for the states of the [AlarmCore]. States are stateless singletons, handlers are
+   * extensions of the [AlarmCore] which the event is dispatched to.
+   */
+  private abstract class AlarmState : State<Event, AlarmCore>() {
+    final override fun enter(context: AlarmCore, reason: Event?) =
+        with(context) {
+          when (reason) {
+            null -> onResume()
+            else -> {
+              if (this@AlarmState !is EnabledState && this@AlarmState !is ComplexTransition<*, *>) {
+                alarmStore.modify { withState(name) }
+              }
+              onEnter(reason)
+              onResume()
+            }
+          }
+        }
+
+    open fun AlarmCore.onEnter(reason: Event) {}
+
+    open fun AlarmCore.onResume() {}
+
+    override fun exit(context: AlarmCore, reason: Event?) {}
+
+    override fun onEvent(context: AlarmCore, event: Event): Boolean =
+        with(context) {
+          handled = true
+          when (event) {
+            Create -> Unit
+            is Enable -> onEnable()
+            is Disable -> onDisable()
+            is Snooze -> onSnooze(event)
+            is Dismiss -> onDismiss()
+            is Change -> onChange(event.value)
+            is Fired -> onFired()
+            is PrealarmDurationChanged -> onPreAlarmDurationChanged()
+            is Refresh -> onRefresh()
+            is TimeSet -> onSystemTimeSet()
+            is InexactFired -> onInexactFired()
+            is RequestSkip -> onRequestSkip()
+            is Delete -> onDelete()
+            Create -> {
+              check(!buildFlags.isDebug) { "Unexpected $event" }
+            }
+          }
+          handled
+        }
+
+    protected fun AlarmCore.markNotHandled() {
+      handled = false
+    }
+
+    protected open fun AlarmCore.onEnable() = markNotHandled()
+
+    protected open fun AlarmCore.onDisable() = markNotHandled()
+
+    protected open fun AlarmCore.onSnooze(snooze: Snooze) = markNotHandled()
+
+    protected open fun AlarmCore.onDismiss() = markNotHandled()
+
+    protected open fun AlarmCore.onChange(alarmValue: AlarmValue) = markNotHandled()
+
+    protected open fun AlarmCore.onFired() = markNotHandled()
+
+    protected open fun AlarmCore.onInexactFired() = markNotHandled()
+
+    protected open fun AlarmCore.onRequestSkip() = markNotHandled()
+
+    protected open fun AlarmCore.onPreAlarmDurationChanged() = markNotHandled()
+
+    protected open fun AlarmCore.onRefresh() = markNotHandled()
+
+    protected open fun AlarmCore.onSystemTimeSet() = markNotHandled()
+
+    protected open fun AlarmCore.onDelete() = markNotHandled()
+  }
+
+  private fun updateListInStore() {
+    store.putAlarm(container)
+  }
+
+  fun onAlarmFired() {
+    stateMachine.sendEvent(Fired)
+  }
+
+  fun preAlarmDurationChanged() {
+    stateMachine.sendEvent(PrealarmDurationChanged)
+  }
+
+  fun onInexactAlarmFired() {
+    stateMachine.sendEvent(InexactFired)
+  }
+
+  override fun requestSkip() {
+    stateMachine.sendEvent(RequestSkip)
+  }
+
+  override fun isSkipping(): Boolean = container.skipping
+
+  fun refresh() {
+    stateMachine.sendEvent(Refresh)
+  }
+
+  fun onTimeSet() {
+    stateMachine.sendEvent(TimeSet)
+  }
+
+  fun change(data: AlarmValue) {
+    stateMachine.sendEvent(Change(data))
+  }
+
+  override fun enable(enable: Boolean) {
+    stateMachine.sendEvent(if (enable) Enable else Disable)
+  }
+
+  override fun snooze() {
+    stateMachine.sendEvent(Snooze(null, null))
+  }
+
+  override fun snooze(hourOfDay: Int, minute: Int) {
+    stateMachine.sendEvent(Snooze(hourOfDay, minute))
+  }
+
+  override fun dismiss() {
+    stateMachine.sendEvent(Dismiss)
+  }
+
+  override fun delete() {
+    stateMachine.sendEvent(Delete)
+  }
+
+  // ++++++++++++++++++++++++++++++++++++++++++++++++++++++
+  // ++++++ getters for GUI +++++++++++++++++++++++++++++++
+  // ++++++++++++++++++++++++++++++++++++++++++++++++++++++
+
+  override val id: Int
+    get() = container.id
+
+  override val labelOrDefault: String
+    get() = container.label
+
+  override val alarmtone: Alarmtone
+    get() = container.alarmtone
+
+  override fun toString(): String {
+    return "AlarmCore ${container.id} $stateMachine on ${AlarmsScheduler.DATE_FORMAT.format(container.nextTimeMillis)}"
+  }
+
+  override fun edit(func: AlarmValue.() -> AlarmValue) {
+    val prev = container
+    change(
+        func(prev).also {
+          require(prev.id == it.id)
+          require(prev.state == it.state)
+          require(prev.nextTimeMillis == it.nextTimeMillis)
+        })
+  }
+
+  override val data: AlarmValue
+    get() = container
+}
+
+private fun Event.isUserInteraction(): Boolean {
+  return when (this) {
+    is Enable -> true
+    is Change -> true
+    Create -> true
+    Delete -> true
+    Disable -> true
+    Dismiss -> true
+    RequestSkip -> true
+    is Snooze -> true
+    Fired -> false
+    InexactFired -> false
+    PrealarmDurationChanged -> false
+    Refresh -> false
+    TimeSet -> false
+  }
+}
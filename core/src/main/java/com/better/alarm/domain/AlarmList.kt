@@ -0,0 +1,170 @@
+package com.better.alarm.domain
+
+import com.better.alarm.data.AlarmValue
+
+/**
+ * Immutable list of [AlarmValue]s ordered by [AlarmValue.id].
+ *
+ * Alarms are stored in a trie keyed by id, 32 children per node. [put] and [remove] copy only the
+ * nodes on the path to the changed alarm, all other nodes are shared with the previous list. This
+ * makes updates O(log n) and lists of different versions can be kept and compared cheaply.
+ */
+class AlarmList
+private constructor(
+    private val root: Node?,
+    /** Shift of the [root], ids of the list are `< 1 shl (shift + BITS)` */
+    private val shift: Int,
+) : AbstractList<AlarmValue>() {
+  override val size: Int
+    get() = root?.size ?: 0
+
+  /** Alarm with the given [id] or null */
+  fun findById(id: Int): AlarmValue? {
+    if (id < 0 || id ushr shift ushr BITS != 0) return null
+    var node = root ?: return null
+    var level = shift
+    while (level > 0) {
+      node = node.slots[(id ushr level) and MASK] as Node? ?: return null
+      level -= BITS
+    }
+    return node.slots[id and MASK] as AlarmValue?
+  }
+
+  /** List in which the alarm with the same id is replaced by [value] or [value] is added. */
+  fun put(value: AlarmValue): AlarmList {
+    val id = value.id
+    require(id >= 0) { "Negative id in $value" }
+    val existing = findById(id)
+    if (existing == value) return this
+    var root = root
+    var shift = shift
+    while (id ushr shift ushr BITS != 0) {
+      root = root?.let { Node(arrayOfNulls<Any>(WIDTH).apply { set(0, it) }, it.size) }
+      shift += BITS
+    }
+    return AlarmList(put(root, shift, id, value, if (existing == null) 1 else 0), shift)
+  }
+
+  /** List without the alarm with the given [id] */
+  fun remove(id: Int): AlarmList {
+    if (findById(id) == null) return this
+    return AlarmList(remove(checkNotNull(root), shift, id), shift)
+  }
+
+  override fun get(index: Int): AlarmValue {
+    if (index < 0 || index >= size) throw IndexOutOfBoundsException("$index of $size")
+    var node = checkNotNull(root)
+    var level = shift
+    var remaining = index
+    while (true) {
+      for (slot in node.slots) {
+        if (slot == null) continue
+        if (level == 0) {
+          if (remaining == 0) return slot as AlarmValue
+          remaining--
+        } else {
+          val child = slot as Node
+          if (remaining < child.size) {
+            node = child
+            break
+          }
+          remaining -= child.size
+        }
+      }
+      level -= BITS
+    }
+  }
+
+  override fun iterator(): Iterator<AlarmValue> = ValuesIterator()
+
+  /** Lists which share nodes are compared without visiting the shared nodes. */
+  override fun equals(other: Any?): Boolean {
+    return when {
+      other === this -> true
+      other is AlarmList && other.shift == shift -> sameValues(root, other.root, shift)
+      else -> super.equals(other)
+    }
+  }
+
+  override fun hashCode(): Int = super.hashCode()
+
+  /** Visits the values in the order of their ids without creating an intermediate list */
+  private inner class ValuesIterator : Iterator<AlarmValue> {
+    private val nodes = arrayOfNulls<Node>(shift / BITS + 1).apply { set(0, root) }
+    private val positions = IntArray(nodes.size)
+    private var level = 0
+    private var remaining = size
+
+    override fun hasNext(): Boolean = remaining > 0
+
+    override fun next(): AlarmValue {
+      if (remaining == 0) throw NoSuchElementException()
+      while (true) {
+        val position = positions[level]
+        if (position == WIDTH) {
+          level--
+          positions[level]++
+          continue
+        }
+        val slot = checkNotNull(nodes[level]).slots[position]
+        when {
+          slot == null -> positions[level]++
+          level == nodes.size - 1 -> {
+            positions[level]++
+            remaining--
+            return slot as AlarmValue
+          }
+          else -> {
+            level++
+            nodes[level] = slot as Node
+            positions[level] = 0
+          }
+        }
+      }
+    }
+  }
+
+  /** Node of the trie. Slots of the leaves are [AlarmValue]s, of other nodes [Node]s. */
+  private class Node(val slots: Array<Any?>, val size: Int)
+
+  companion object {
+    private const val BITS = 5
+    private const val WIDTH = 1 shl BITS
+    private const val MASK = WIDTH - 1
+
+    val EMPTY = AlarmList(null, 0)
+
+    fun of(values: Iterable<AlarmValue>): AlarmList {
+      return values.fold(EMPTY) { list, value -> list.put(value) }
+    }
+
+    private fun put(node: Node?, shift: Int, id: Int, value: AlarmValue, added: Int): Node {
+      val slots = node?.slots?.copyOf() ?: arrayOfNulls(WIDTH)
+      val index = (id ushr shift) and MASK
+      slots[index] =
+          if (shift == 0) value else put(slots[index] as Node?, shift - BITS, id, value, added)
+      return Node(slots, (node?.size ?: 0) + added)
+    }
+
+    /** Removes the [id] which must be present, returns null if the node is empty after that */
+    private fun remove(node: Node, shift: Int, id: Int): Node? {
+      if (node.size == 1) return null
+      val index = (id ushr shift) and MASK
+      val slots = node.slots.copyOf()
+      slots[index] = if (shift == 0) null else remove(slots[index] as Node, shift - BITS, id)
+      return Node(slots, node.size - 1)
+    }
+
+    private fun sameValues(left: Node?, right: Node?, shift: Int): Boolean {
+      return when {
+        left === right -> true
+        left == null || right == null || left.size != right.size -> false
+        shift == 0 -> left.slots.contentEquals(right.slots)
+        else ->
+            left.slots.indices.all { i ->
+              sameValues(left.slots[i] as Node?, right.slots[i] as Node?, shift - BITS)
+            }
+      }
+    }
+  }
+}
@@ -0,0 +1,34 @@
+package com.better.alarm.domain
+
+import java.util.*
+
+/** Created by Yuriy on 24.06.2017. */
+interface AlarmSetter {
+
+  fun removeRTCAlarm()
+
+  fun setUpRTCAlarm(id: Int, typeName: String, calendar: Calendar)
+
+  /**
+   * Fires alarms with [ids] and [typeNames] now, in the given order. All alarms are sent with a
+   * single broadcast.
+   */
+  fun fireNow(ids: IntArray, typeNames: Array<String>)
+
+  fun removeInexactAlarm(id: Int)
+
+  fun setInexactAlarm(id: Int, calendar: Calendar)
+
+  /**
+   * Removes inexact alarms which are due and returns their ids. Must be called when the inexact
+   * alarm goes off, the next inexact alarm is set afterwards.
+   */
+  fun removeDueInexactAlarms(): IntArray
+
+  companion object {
+    const val EXTRA_ID = AlarmsScheduler.EXTRA_ID
+    const val EXTRA_TYPE = AlarmsScheduler.EXTRA_TYPE
+    const val EXTRA_IDS = AlarmsScheduler.EXTRA_IDS
+    const val EXTRA_TYPES = AlarmsScheduler.EXTRA_TYPES
+  }
+}
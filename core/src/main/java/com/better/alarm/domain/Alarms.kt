@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2012 Yuriy Kulikov yuriy.kulikov.87@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.better.alarm.domain
+
+import com.better.alarm.data.AlarmStore
+import com.better.alarm.data.AlarmValue
+import com.better.alarm.data.AlarmsRepository
+import com.better.alarm.data.DatastoreMigration
+import com.better.alarm.data.DaysOfWeek
+import com.better.alarm.data.Prefs
+import com.better.alarm.data.contentprovider.DatabaseQuery
+import com.better.alarm.domain.statemachine.TransitionTrace
+import com.better.alarm.logger.Logger
+import com.better.alarm.platform.BuildFlags
+
+/** The Alarms implements application domain logic */
+class Alarms(
+    private val prefs: Prefs,
+    private val store: Store,
+    private val calendars: Calendars,
+    private val alarmsScheduler: IAlarmsScheduler,
+    private val broadcaster: AlarmCore.IStateNotifier,
+    private val alarmsRepository: AlarmsRepository,
+    private val logger: Logger,
+    private val databaseQuery: DatabaseQuery,
+    private val buildFlags: BuildFlags,
+    private val transitionTrace: TransitionTrace? = null,
+) : IAlarmsManager, DatastoreMigration {
+  private val alarms: MutableMap<Int, AlarmCore> = mutableMapOf()
+
+  /** Read before the first alarm is created, alarms created before [start] do not change it */
+  private val initialized: Boolean by lazy { alarmsRepository.initialized }
+
+  /**
+   * Restores all alarms in one batch: the alarms list in the [store] and the next alarm are
+   * published once when all alarms have been started.
+   *
+   * Alarms which were created before are already started and are not restored again.
+   */
+  fun start() {
+    store.batch {
+      alarmsScheduler.batch {
+        val restored =
+            alarmsRepository
+                .query()
+                .filter { alarmStore -> alarmStore.id !in alarms }
+                .map { alarmStore -> createAlarm(alarmStore) }
+        restored.associateByTo(alarms) { it.id }
+        restored.forEach { it.start() }
+        if (!initialized) {
+          migrateDatabase()
+          if (alarms.isEmpty()) {
+            insertDefaultAlarms()
+          }
+        }
+      }
+    }
+    // one subscription for all alarms instead of one per alarm
+    prefs.preAlarmDuration
+        .observe()
+        .skip(1) // not interested in the first update on startup
+        .subscribe { onPreAlarmDurationChanged() }
+  }
+
+  private fun onPreAlarmDurationChanged() {
+    alarmsScheduler.batch {
+      alarms.values.forEach { alarmCore -> alarmCore.preAlarmDurationChanged() }
+    }
+  }
+
+  fun refresh() {
+    alarmsScheduler.batch { alarms.values.forEach { alarmCore -> alarmCore.refresh() } }
+  }
+
+  fun onTimeSet() {
+    alarmsScheduler.batch { alarms.values.forEach { alarmCore -> alarmCore.onTimeSet() } }
+  }
+
+  override fun getAlarm(alarmId: Int): AlarmCore? {
+    return alarms[alarmId].also {
+      if (it == null) {
+        val exception =
+            RuntimeException("Alarm with id $alarmId not found!").apply { fillInStackTrace() }
+        logger.error(exception) { "Alarm with id $alarmId not found!" }
+      }
+    }
+  }
+
+  override fun createNewAlarm(): Alarm {
+    // decided before the repository contains the new alarm
+    initialized
+    val alarm = createAlarm(alarmsRepository.create())
+    alarms[alarm.id] = alarm
+    alarm.start()
+    return alarm
+  }
+
+  override fun createAll(values: List<AlarmValue>): List<Alarm> {
+    // decided before the repository contains the new alarms
+    initialized
+    return store.batch {
+      alarmsScheduler.batch {
+        alarmsRepository.createAll(values).map { alarmStore ->
+          createAlarm(alarmStore).also { alarm ->
+            alarms[alarm.id] = alarm
+            alarm.start()
+          }
+        }
+      }
+    }
+  }
+
+  /** Alarms with the [ids] were fired together, their events are delivered in one batch */
+  fun onAlarmsFired(ids: IntArray) {
+    store.batch { ids.forEach { id -> getAlarm(id)?.let { onAlarmFired(it) } } }
+  }
+
+  /** Inexact alarms with the [ids] are due, their events are delivered in one batch */
+  fun onInexactAlarmsFired(ids: IntArray) {
+    store.batch { ids.forEach { id -> getAlarm(id)?.onInexactAlarmFired() } }
+  }
+
+  fun onAlarmFired(alarm: AlarmCore) {
+    // TODO this should not be needed
+    alarmsScheduler.removeAlarm(alarm.id)
+    alarm.onAlarmFired()
+  }
+
+  override fun enable(alarm: AlarmValue, enable: Boolean) {
+    alarms.getValue(alarm.id).enable(enable)
+  }
+
+  private fun createAlarm(alarmStore: AlarmStore): AlarmCore {
+    return AlarmCore(
+        alarmStore,
+        logger,
+        alarmsScheduler,
+        broadcaster,
+        prefs,
+        store,
+        calendars,
+        buildFlags,
+        onDelete = { alarms.remove(it) },
+        transitionTrace = transitionTrace,
+    )
+  }
+
+  override fun drop() {
+    alarms.values.toList().forEach { it.delete() }
+    alarms.clear()
+  }
+
+  override fun insertDefaultAlarms() {
+    logger.debug { "insertDefaultAlarms() adding default alarms ..." }
+    createNewAlarm().edit {
+      copy(
+          daysOfWeek = DaysOfWeek(31),
+          hour = 8,
+          minutes = 30,
+      )
+    }
+    createNewAlarm().edit {
+      copy(
+          daysOfWeek = DaysOfWeek(96),
+          hour = 9,
+          minutes = 0,
+      )
+    }
+  }
+
+  /**
+   * Rows are read in windows of [DatabaseQuery.WINDOW_SIZE] and collected into one list, so that
+   * the alarms are created with one write. Rows are deleted in one transaction after the alarms are
+   * stored. If the process dies before the alarms are stored, the repository is still not
+   * initialized and the migration starts over. Rows which are left if it dies after that are not
+   * read again.
+   */
+  override fun migrateDatabase() {
+    val restored = mutableListOf<AlarmValue>()
+    val ids = mutableListOf<Int>()
+    databaseQuery.forEach { value ->
+      logger.debug { "Migrating $value from SQLite to DataStore" }
+      restored.add(value)
+      ids.add(value.id)
+    }
+    logger.info { "migrateDatabase() found ${restored.size} alarms in SQLite database" }
+    if (restored.isEmpty()) return
+    createAll(restored)
+    alarmsRepository.awaitStored()
+    databaseQuery.deleteAll(ids)
+  }
+}
@@ -15,7 +15,6 @@
  */
 package com.better.alarm.domain
 
-import com.better.alarm.BuildConfig
 import com.better.alarm.data.AlarmValue
 import com.better.alarm.data.CalendarType
 import com.better.alarm.data.Prefs
@@ -24,7 +23,6 @@ import com.better.alarm.util.Optional
 import java.text.SimpleDateFormat
 import java.util.Calendar
 import java.util.Locale
-import java.util.PriorityQueue
 
 class AlarmsScheduler(
     private val setter: AlarmSetter,
@@ -40,9 +38,12 @@ class AlarmsScheduler(
       val type: CalendarType,
       val alarmValue: AlarmValue
   ) : Comparable<ScheduledAlarm> {
+    /** Snapshot of the [calendar] time, used as the ordering key in [ScheduledAlarmsQueue]. */
+    val millis: Long = calendar.timeInMillis
 
     override fun compareTo(other: ScheduledAlarm): Int {
-      return this.calendar.compareTo(other.calendar)
+      val byTime = millis.compareTo(other.millis)
+      return if (byTime != 0) byTime else id.compareTo(other.id)
     }
 
     override fun toString(): String {
@@ -50,10 +51,21 @@ class AlarmsScheduler(
     }
   }
 
-  private val queue: PriorityQueue<ScheduledAlarm> = PriorityQueue()
+  private val queue = ScheduledAlarmsQueue()
+
+  private val lookAhead = LookAheadSchedule()
+
+  /** [lookAhead] has changed since it was published to the [store] */
+  private var lookAheadChanged = false
 
   private var isStarted = false
 
+  /** Depth of nested [beginTransaction] calls. Head updates are deferred while it is not 0. */
+  private var transactionDepth = 0
+
+  /** Head of the queue when the outermost transaction has begun. */
+  private var headBeforeTransaction: ScheduledAlarm? = null
+
   /** Actually start scheduling alarms */
   fun start() {
     isStarted = true
@@ -65,6 +77,7 @@ class AlarmsScheduler(
       }
     }
     notifyListeners()
+    publishLookAhead()
   }
 
   override fun setAlarm(id: Int, type: CalendarType, calendar: Calendar, alarmValue: AlarmValue) {
@@ -84,15 +97,44 @@ class AlarmsScheduler(
     replaceAlarm(id, null)
   }
 
+  override fun beginTransaction() {
+    if (transactionDepth++ == 0) {
+      headBeforeTransaction = queue.peek()
+    }
+  }
+
+  override fun endTransaction() {
+    check(transactionDepth > 0) { "endTransaction() without beginTransaction()" }
+    if (--transactionDepth == 0) {
+      val prevHead = headBeforeTransaction
+      headBeforeTransaction = null
+      updateHead(prevHead)
+    }
+  }
+
   private fun replaceAlarm(id: Int, newAlarm: ScheduledAlarm?) {
     val prevHead: ScheduledAlarm? = queue.peek()
 
-    // remove if we have already an alarm
-    queue.removeAll { it.id == id }
+    // replaces the alarm with the same id if we have one already
     if (newAlarm != null) {
-      queue.add(newAlarm)
+      queue.put(newAlarm)
+    } else {
+      queue.remove(id)
     }
+    updateLookAhead(id, newAlarm)
 
+    if (transactionDepth > 0) {
+      log.trace { "defer setting ${queue.peek()} (transaction)" }
+    } else {
+      updateHead(prevHead)
+    }
+  }
+
+  /**
+   * Fires alarms in the past and sets the RTC alarm for the head of the queue if it is not the same
+   * as [prevHead].
+   */
+  private fun updateHead(prevHead: ScheduledAlarm?) {
     if (isStarted) {
       fireAlarmsInThePast()
     }
@@ -115,21 +157,32 @@ class AlarmsScheduler(
       // if head remains the same, do nothing
       else -> log.trace { "skip setting $currentHead (already set)" }
     }
+
+    if (isStarted) {
+      publishLookAhead()
+    }
   }
 
   /**
    * If two alarms were set for the same time, then the second alarm will be processed in the past.
-   * In this case we remove it from the queue and fire it.
+   * In this case we remove it from the queue and fire it. All alarms in the past are fired at once,
+   * in the order of the queue.
    */
   private fun fireAlarmsInThePast() {
-    val now = calendars.now()
-    while (!queue.isEmpty() && queue.peek()?.calendar?.before(now) == true) {
+    val nowMillis = calendars.now().timeInMillis
+    if (queue.peek()?.let { it.millis < nowMillis } != true) return
+    val firedInThePast = mutableListOf<ScheduledAlarm>()
+    while (queue.peek()?.let { it.millis < nowMillis } == true) {
       // remove happens in fire
       queue.poll()?.let { firedInThePastAlarm ->
         log.warning { "In the past - $firedInThePastAlarm" }
-        setter.fireNow(firedInThePastAlarm.id, firedInThePastAlarm.type.name)
+        updateLookAhead(firedInThePastAlarm.id, null)
+        firedInThePast.add(firedInThePastAlarm)
       }
     }
+    setter.fireNow(
+        firedInThePast.map { it.id }.toIntArray(),
+        firedInThePast.map { it.type.name }.toTypedArray())
   }
 
   /**
@@ -160,15 +213,41 @@ class AlarmsScheduler(
         .run { store.next().onNext(this) }
   }
 
+  /** Only occurrences of the alarm with [id] are recalculated. */
+  private fun updateLookAhead(id: Int, scheduledAlarm: ScheduledAlarm?) {
+    lookAhead.update(id, scheduledAlarm, calendars.zone())
+    lookAheadChanged = true
+  }
+
+  private fun publishLookAhead() {
+    if (lookAheadChanged) {
+      lookAheadChanged = false
+      store.lookAhead.onNext(lookAhead.snapshot())
+    }
+  }
+
   private fun findNextNormalAlarm(): ScheduledAlarm? {
-    return queue.sorted().firstOrNull { it.type != CalendarType.AUTOSILENCE }
+    return queue.nextVisible
   }
 
   companion object {
     val DATE_FORMAT: SimpleDateFormat = SimpleDateFormat("dd-MM-yy HH:mm:ss", Locale.GERMANY)
-    const val ACTION_FIRED = BuildConfig.APPLICATION_ID + ".ACTION_FIRED"
-    const val ACTION_INEXACT_FIRED = BuildConfig.APPLICATION_ID + ".ACTION_INEXACT_FIRED"
     const val EXTRA_ID = "intent.extra.alarm"
     const val EXTRA_TYPE = "intent.extra.type"
+    const val EXTRA_IDS = "intent.extra.alarms"
+    const val EXTRA_TYPES = "intent.extra.types"
+  }
+}
+
+/**
+ * Performs the [block] in a transaction, see [IAlarmsScheduler.beginTransaction]. RTC alarm and
+ * listeners are updated once after the [block].
+ */
+inline fun <T> IAlarmsScheduler.batch(block: () -> T): T {
+  beginTransaction()
+  try {
+    return block()
+  } finally {
+    endTransaction()
   }
 }
@@ -0,0 +1,19 @@
+package com.better.alarm.domain;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/** Created by Yuriy on 29.06.2017. */
+public interface Calendars {
+  Calendar now();
+
+  /** Current time in millis. Same as {@code now().getTimeInMillis()} without a new Calendar. */
+  default long nowMillis() {
+    return now().getTimeInMillis();
+  }
+
+  /** Time zone of the {@link #now()} calendars. */
+  default TimeZone zone() {
+    return now().getTimeZone();
+  }
+}
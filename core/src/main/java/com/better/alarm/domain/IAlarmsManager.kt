@@ -40,4 +40,10 @@ interface IAlarmsManager {
    * @return Alarm
    */
   fun createNewAlarm(): Alarm
+
+  /**
+   * Creates alarms with the given [values], ids of the [values] are ignored. Alarms are stored with
+   * one write and the store publishes them once.
+   */
+  fun createAll(values: List<AlarmValue>): List<Alarm>
 }
@@ -33,4 +33,14 @@ public interface IAlarmsScheduler {
   void setInexactAlarm(int id, Calendar calendar);
 
   void removeInexactAlarm(int id);
+
+  /**
+   * Starts a batch of changes. Changes are applied to the schedule immediately, but alarms in the
+   * past are fired, the RTC alarm is set and listeners are notified only once, when the outermost
+   * batch ends with {@link #endTransaction()}. Transactions can be nested.
+   */
+  void beginTransaction();
+
+  /** Ends the batch started with {@link #beginTransaction()}. */
+  void endTransaction();
 }
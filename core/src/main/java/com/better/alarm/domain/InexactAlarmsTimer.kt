@@ -0,0 +1,74 @@
+package com.better.alarm.domain
+
+import java.util.TreeSet
+
+/**
+ * Coalesces inexact alarms of all alarm ids into a single system alarm.
+ *
+ * Deadlines are kept in a tree ordered by (time, id) and indexed by id. Only the earliest deadline
+ * is passed to [arm] and it is only re-armed if the earliest deadline changes. When it fires, all
+ * due ids are taken with [pollDue] at once.
+ */
+class InexactAlarmsTimer(
+    private val arm: (millis: Long) -> Unit,
+    private val cancel: () -> Unit,
+) {
+  private data class Deadline(val millis: Long, val id: Int) : Comparable<Deadline> {
+    override fun compareTo(other: Deadline): Int {
+      val byTime = millis.compareTo(other.millis)
+      return if (byTime != 0) byTime else id.compareTo(other.id)
+    }
+  }
+
+  private val byTime = TreeSet<Deadline>()
+  private val byId = HashMap<Int, Deadline>()
+
+  /** Deadline which was passed to [arm] or null if there is none. */
+  var armedMillis: Long? = null
+    private set
+
+  val size: Int
+    get() = byId.size
+
+  /** Sets the deadline for the [id], replacing the previous one if there was one. */
+  fun set(id: Int, millis: Long) {
+    byId.remove(id)?.let { byTime.remove(it) }
+    val deadline = Deadline(millis, id)
+    byId[id] = deadline
+    byTime.add(deadline)
+    rearm()
+  }
+
+  fun remove(id: Int) {
+    byId.remove(id)?.let { byTime.remove(it) }
+    rearm()
+  }
+
+  /**
+   * Removes all deadlines which are not after [now] and returns their ids in the order of the
+   * deadlines. The timer is re-armed for the next deadline.
+   */
+  fun pollDue(now: Long): IntArray {
+    val due = byTime.headSet(Deadline(now, Int.MAX_VALUE), true)
+    val ids = IntArray(due.size)
+    due.forEachIndexed { index, deadline ->
+      ids[index] = deadline.id
+      byId.remove(deadline.id)
+    }
+    due.clear()
+    // fired, nothing is armed anymore
+    armedMillis = null
+    rearm()
+    return ids
+  }
+
+  private fun rearm() {
+    val earliest = if (byTime.isEmpty()) null else byTime.first().millis
+    when {
+      earliest == armedMillis -> Unit
+      earliest == null -> cancel()
+      else -> arm(earliest)
+    }
+    armedMillis = earliest
+  }
+}
@@ -0,0 +1,73 @@
+package com.better.alarm.domain
+
+import com.better.alarm.data.CalendarType
+import com.better.alarm.domain.AlarmsScheduler.ScheduledAlarm
+import com.better.alarm.domain.Store.Occurrence
+import java.util.Collections
+import java.util.TimeZone
+import java.util.TreeSet
+import java.util.concurrent.TimeUnit
+
+/**
+ * Upcoming [Occurrence]s of all scheduled alarms, see [Store.LookAhead].
+ *
+ * The first occurrence of an alarm is the scheduled one. It is followed by the alarm itself if a
+ * prealarm is scheduled and by next occurrences of repeating alarms up to [horizon] after the
+ * scheduled one, calculated with [NextOccurrenceCalculator]. Changing an alarm only replaces
+ * occurrences of this alarm in a tree ordered by (time, id), the snapshot of the first [size]
+ * occurrences is created on demand.
+ */
+internal class LookAheadSchedule(
+    private val size: Int = DEFAULT_SIZE,
+    private val horizon: Long = DEFAULT_HORIZON,
+) {
+  private val byTime =
+      TreeSet<Occurrence>(compareBy<Occurrence> { it.millis }.thenBy { it.id }.thenBy { it.type })
+  private val byId = HashMap<Int, List<Occurrence>>()
+
+  /** Replaces occurrences of the alarm with [id] with the ones of [scheduled]. */
+  fun update(id: Int, scheduled: ScheduledAlarm?, zone: TimeZone) {
+    byId.remove(id)?.let { byTime.removeAll(it) }
+    if (scheduled != null && scheduled.type != CalendarType.AUTOSILENCE) {
+      val occurrences = occurrencesOf(scheduled, zone)
+      byId[id] = occurrences
+      byTime.addAll(occurrences)
+    }
+  }
+
+  fun snapshot(): Store.LookAhead {
+    return Store.LookAhead(Collections.unmodifiableList(byTime.take(size)))
+  }
+
+  private fun occurrencesOf(scheduled: ScheduledAlarm, zone: TimeZone): List<Occurrence> {
+    val value = scheduled.alarmValue
+    // prealarm is followed by the alarm itself
+    val count =
+        when {
+          value.isRepeatSet -> size
+          scheduled.type == CalendarType.PREALARM -> 2
+          else -> 1
+        }
+    val occurrences = mutableListOf(Occurrence(scheduled.id, scheduled.type, scheduled.millis))
+    val until = scheduled.millis + horizon
+    var millis = scheduled.millis
+    while (occurrences.size < count) {
+      millis =
+          NextOccurrenceCalculator.nextTime(
+              value.hour,
+              value.minutes,
+              value.daysOfWeek.coded,
+              NextOccurrenceCalculator.dateOf(value, zone),
+              zone,
+              millis + 1)
+      if (millis <= scheduled.millis || millis > until) break
+      occurrences.add(Occurrence(scheduled.id, CalendarType.NORMAL, millis))
+    }
+    return occurrences
+  }
+
+  companion object {
+    const val DEFAULT_SIZE = 64
+    val DEFAULT_HORIZON = TimeUnit.DAYS.toMillis(7)
+  }
+}
@@ -0,0 +1,137 @@
+package com.better.alarm.domain
+
+import com.better.alarm.data.AlarmValue
+import com.better.alarm.data.DaysOfWeek
+import java.util.TimeZone
+
+/**
+ * Calculates next occurrences of an alarm as epoch millis.
+ *
+ * Unlike [java.util.Calendar] arithmetic nothing is allocated: local dates are represented as epoch
+ * days and converted to epoch millis using the offsets of the given [TimeZone].
+ *
+ * Parameters describe the alarm: [hour] and [minutes] of the day, [daysOfWeek] is the
+ * [DaysOfWeek.coded] bitmask and [date] is the epoch millis of the date of the alarm or [NO_DATE].
+ *
+ * ## Daylight saving time
+ *
+ * Local time which falls into a gap (clocks jump forward) is shifted forward by the length of the
+ * gap, e.g. 02:30 becomes 03:30. Local time which occurs twice (clocks go back) is resolved to the
+ * later instant (standard time). This is the same as [java.util.GregorianCalendar] does for
+ * [java.util.Calendar.set], but unlike [java.util.Calendar.add] the time of the alarm is kept when
+ * moving to the next day, even if it was shifted on the current day.
+ */
+object NextOccurrenceCalculator {
+  /** Value of the `date` parameter for alarms which do not have a date. */
+  const val NO_DATE = Long.MIN_VALUE
+
+  /** Value of the `date` parameter for the [value] in the [zone] */
+  fun dateOf(value: AlarmValue, zone: TimeZone): Long {
+    return if (value.hasDate) AlarmValue.noonOf(value.dateEpochDay, zone) else NO_DATE
+  }
+
+  private const val MINUTE = 60 * 1000L
+  private const val HOUR = 60 * MINUTE
+  private const val DAY = 24 * HOUR
+
+  /** Next time when the alarm should go off. */
+  fun nextTime(
+      hour: Int,
+      minutes: Int,
+      daysOfWeek: Int,
+      date: Long,
+      zone: TimeZone,
+      now: Long,
+  ): Long {
+    val timeOfDay = hour * HOUR + minutes * MINUTE
+    return toEpochMillis(nextDay(timeOfDay, daysOfWeek, date, zone, now), timeOfDay, zone)
+  }
+
+  /**
+   * Next time when the prealarm should go off, [prealarmMinutes] before the [nextTime]. Since
+   * prealarm is before the main alarm, it can be already in the past. In this case it is moved to
+   * the next day on which the alarm is set.
+   */
+  fun nextPrealarmTime(
+      hour: Int,
+      minutes: Int,
+      daysOfWeek: Int,
+      date: Long,
+      prealarmMinutes: Int,
+      zone: TimeZone,
+      now: Long,
+  ): Long {
+    val prealarm = nextTime(hour, minutes, daysOfWeek, date, zone, now) - prealarmMinutes * MINUTE
+    val localPrealarm = toLocalMillis(prealarm, zone)
+    val timeOfDay = localPrealarm.mod(DAY)
+    var day = localPrealarm.floorDiv(DAY)
+    if (prealarm < now) {
+      day++
+    }
+    day += daysUntilNextSet(daysOfWeek, day)
+    return toEpochMillis(day, timeOfDay, zone)
+  }
+
+  /** Next time when the alarm should go off if the [nextTime] is skipped. */
+  fun nextTimeAfterSkip(
+      hour: Int,
+      minutes: Int,
+      daysOfWeek: Int,
+      date: Long,
+      zone: TimeZone,
+      now: Long,
+  ): Long {
+    val timeOfDay = hour * HOUR + minutes * MINUTE
+    val day = nextDay(timeOfDay, daysOfWeek, date, zone, now) + 1
+    return toEpochMillis(day + daysUntilNextSet(daysOfWeek, day), timeOfDay, zone)
+  }
+
+  /** Epoch day on which the alarm with the given local [timeOfDay] goes off next time. */
+  private fun nextDay(
+      timeOfDay: Long,
+      daysOfWeek: Int,
+      date: Long,
+      zone: TimeZone,
+      now: Long,
+  ): Long {
+    if (date != NO_DATE) {
+      return toLocalMillis(date, zone).floorDiv(DAY)
+    }
+    val today = toLocalMillis(now, zone).floorDiv(DAY)
+    // if alarm is behind current time, advance one day
+    val day = if (toEpochMillis(today, timeOfDay, zone) < now) today + 1 else today
+    return day + daysUntilNextSet(daysOfWeek, day)
+  }
+
+  /** Number of days from [epochDay] until the next day set in [daysOfWeek] or 0 if none is set. */
+  private fun daysUntilNextSet(daysOfWeek: Int, epochDay: Long): Int {
+    return DaysOfWeek.getNextAlarm(daysOfWeek, dayOfWeekIndex(epochDay)).coerceAtLeast(0)
+  }
+
+  /** Index of the day of week as used in [DaysOfWeek], 0 is Monday. Epoch day 0 is a Thursday. */
+  private fun dayOfWeekIndex(epochDay: Long): Int = (epochDay + 3).mod(7)
+
+  private fun toLocalMillis(epochMillis: Long, zone: TimeZone): Long {
+    return epochMillis + zone.getOffset(epochMillis)
+  }
+
+  /**
+   * Converts local [timeOfDay] on the [epochDay] to epoch millis. Offsets a day before and a day
+   * after are used as candidates, since there is at most one transition in between.
+   */
+  private fun toEpochMillis(epochDay: Long, timeOfDay: Long, zone: TimeZone): Long {
+    val local = epochDay * DAY + timeOfDay
+    val offsetBefore = zone.getOffset(local - DAY)
+    val offsetAfter = zone.getOffset(local + DAY)
+    if (offsetBefore == offsetAfter) {
+      return local - offsetBefore
+    }
+    // valid after the transition, or the later instant if local time occurs twice
+    val afterTransition = local - offsetAfter
+    if (zone.getOffset(afterTransition) == offsetAfter) {
+      return afterTransition
+    }
+    // valid before the transition or in a gap, then it is shifted forward by the gap
+    return local - offsetBefore
+  }
+}
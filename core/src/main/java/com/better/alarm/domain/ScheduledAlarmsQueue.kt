@@ -0,0 +1,64 @@
+package com.better.alarm.domain
+
+import com.better.alarm.data.CalendarType
+import com.better.alarm.domain.AlarmsScheduler.ScheduledAlarm
+import java.util.TreeSet
+
+/**
+ * Time-ordered queue of [ScheduledAlarm]s which holds at most one entry per alarm id.
+ *
+ * Entries are kept in a tree ordered by (time, id) and indexed by id, so [put] and [remove] are
+ * O(log n) instead of a linear scan. The next entry which is not [CalendarType.AUTOSILENCE] is
+ * maintained on every change and available in O(1) as [nextVisible].
+ */
+internal class ScheduledAlarmsQueue {
+  private val byTime = TreeSet<ScheduledAlarm>()
+  private val visibleByTime = TreeSet<ScheduledAlarm>()
+  private val byId = HashMap<Int, ScheduledAlarm>()
+
+  /** Earliest entry which is not [CalendarType.AUTOSILENCE] or null if there is none. */
+  var nextVisible: ScheduledAlarm? = null
+    private set
+
+  val size: Int
+    get() = byId.size
+
+  fun isEmpty(): Boolean = byId.isEmpty()
+
+  fun isNotEmpty(): Boolean = byId.isNotEmpty()
+
+  /** Earliest entry or null if the queue is empty. */
+  fun peek(): ScheduledAlarm? = if (byTime.isEmpty()) null else byTime.first()
+
+  /** Removes and returns the earliest entry or null if the queue is empty. */
+  fun poll(): ScheduledAlarm? = peek()?.also { remove(it.id) }
+
+  /** Adds the [alarm] replacing the previous entry with the same id if there was one. */
+  fun put(alarm: ScheduledAlarm) {
+    remove(alarm.id)
+    byId[alarm.id] = alarm
+    byTime.add(alarm)
+    if (alarm.type != CalendarType.AUTOSILENCE) {
+      visibleByTime.add(alarm)
+      val currentNext = nextVisible
+      if (currentNext == null || alarm < currentNext) {
+        nextVisible = alarm
+      }
+    }
+  }
+
+  /** Removes the entry with the given [id]. Returns the removed entry or null. */
+  fun remove(id: Int): ScheduledAlarm? {
+    val removed = byId.remove(id) ?: return null
+    byTime.remove(removed)
+    if (removed.type != CalendarType.AUTOSILENCE) {
+      visibleByTime.remove(removed)
+      if (removed === nextVisible) {
+        nextVisible = if (visibleByTime.isEmpty()) null else visibleByTime.first()
+      }
+    }
+    return removed
+  }
+
+  operator fun get(id: Int): ScheduledAlarm? = byId[id]
+}
@@ -0,0 +1,225 @@
+package com.better.alarm.domain
+
+import com.better.alarm.data.AlarmValue
+import com.better.alarm.data.CalendarType
+import com.better.alarm.services.Event
+import com.better.alarm.services.EventPipeline
+import com.better.alarm.util.Optional
+import io.reactivex.Observable
+import io.reactivex.subjects.BehaviorSubject
+import io.reactivex.subjects.PublishSubject
+import io.reactivex.subjects.Subject
+
+/** Created by Yuriy on 10.06.2017. */
+data class Store(
+    val alarmsSubject: BehaviorSubject<List<AlarmValue>>,
+    val next: BehaviorSubject<Optional<Next>>,
+    val sets: Subject<AlarmSet>,
+    val events: Subject<Event>,
+) {
+  val uiVisible: BehaviorSubject<Boolean> = BehaviorSubject.createDefault(false)
+
+  /** Upcoming occurrences of all alarms, updated by [AlarmsScheduler]. */
+  val lookAhead: BehaviorSubject<LookAhead> = BehaviorSubject.createDefault(LookAhead(emptyList()))
+
+  /**
+   * [events] after conflation. Consumers which turn events into intents and notifications subscribe
+   * to [EventPipeline.events]. Events of a transaction are delivered when it ends.
+   */
+  val eventPipeline: EventPipeline =
+      EventPipeline().also { pipeline -> events.subscribe(pipeline::offer) }
+
+  private val alarmChanges: PublishSubject<AlarmsChange> = PublishSubject.create()
+
+  /** Incremented on every change of the [alarmsSubject] done by [putAlarm] or [removeAlarm] */
+  private var version: Long = 0
+
+  /** Depth of nested [beginTransaction] calls. Changes are not published while it is not 0. */
+  private var transactionDepth = 0
+
+  /** Alarms when the outermost transaction has begun */
+  private var beforeTransaction: AlarmList = AlarmList.EMPTY
+
+  /** Alarms with all changes done in the current transaction */
+  private var inTransaction: AlarmList = AlarmList.EMPTY
+
+  /** Ids of the alarms which were put or removed in the current transaction */
+  private val changedInTransaction = LinkedHashSet<Int>()
+
+  fun alarms(): Observable<List<AlarmValue>> {
+    return alarmsSubject().distinctUntilChanged()
+  }
+
+  /**
+   * Changes of the alarms. The first emission contains all current alarms as [AlarmsChange.added],
+   * the following ones only the alarms which have changed since the previous one.
+   */
+  fun alarmChanges(): Observable<AlarmsChange> {
+    return Observable.defer {
+      val alarms = currentAlarms()
+      Observable.just(AlarmsChange(version, alarms, alarms, emptyList(), emptyList()))
+          .concatWith(alarmChanges)
+    }
+  }
+
+  /** Adds the [value] or replaces the alarm with the same id. Does nothing if nothing changed. */
+  @Synchronized
+  fun putAlarm(value: AlarmValue) {
+    val prev = currentAlarms()
+    val existing = prev.findById(value.id)
+    if (existing == value) return
+    when {
+      transactionDepth > 0 -> {
+        inTransaction = prev.put(value)
+        changedInTransaction.add(value.id)
+      }
+      existing == null -> publish(prev.put(value), added = listOf(value))
+      else -> publish(prev.put(value), changed = listOf(value))
+    }
+  }
+
+  /** Removes the alarm with the given [id] if it is present. */
+  @Synchronized
+  fun removeAlarm(id: Int) {
+    val prev = currentAlarms()
+    if (prev.findById(id) == null) return
+    if (transactionDepth > 0) {
+      inTransaction = prev.remove(id)
+      changedInTransaction.add(id)
+    } else {
+      publish(prev.remove(id), removed = listOf(id))
+    }
+  }
+
+  /**
+   * Begins a transaction. Changes done by [putAlarm] and [removeAlarm] are published as one
+   * [AlarmsChange] when the outermost transaction ends. [events] are held in the [eventPipeline]
+   * until then. Use [batch].
+   */
+  @Synchronized
+  fun beginTransaction() {
+    eventPipeline.hold()
+    if (transactionDepth++ == 0) {
+      beforeTransaction = alarmsInSubject()
+      inTransaction = beforeTransaction
+    }
+  }
+
+  @Synchronized
+  fun endTransaction() {
+    check(transactionDepth > 0) { "endTransaction() without beginTransaction()" }
+    if (--transactionDepth == 0) publishTransaction()
+    eventPipeline.release()
+  }
+
+  private fun publishTransaction() {
+    val added = mutableListOf<AlarmValue>()
+    val changed = mutableListOf<AlarmValue>()
+    val removed = mutableListOf<Int>()
+    changedInTransaction.forEach { id ->
+      val before = beforeTransaction.findById(id)
+      val after = inTransaction.findById(id)
+      when {
+        before == after -> Unit
+        before == null -> added.add(checkNotNull(after))
+        after == null -> removed.add(id)
+        else -> changed.add(after)
+      }
+    }
+    changedInTransaction.clear()
+    val alarms = inTransaction
+    beforeTransaction = AlarmList.EMPTY
+    inTransaction = AlarmList.EMPTY
+    if (added.isNotEmpty() || changed.isNotEmpty() || removed.isNotEmpty()) {
+      publish(alarms, added, changed, removed)
+    }
+  }
+
+  /** Performs the [block] in a transaction, see [beginTransaction]. */
+  inline fun <T> batch(block: () -> T): T {
+    beginTransaction()
+    try {
+      return block()
+    } finally {
+      endTransaction()
+    }
+  }
+
+  private fun publish(
+      alarms: AlarmList,
+      added: List<AlarmValue> = emptyList(),
+      changed: List<AlarmValue> = emptyList(),
+      removed: List<Int> = emptyList(),
+  ) {
+    version++
+    alarmsSubject.onNext(alarms)
+    alarmChanges.onNext(AlarmsChange(version, alarms, added, changed, removed))
+  }
+
+  private fun currentAlarms(): AlarmList {
+    return if (transactionDepth > 0) inTransaction else alarmsInSubject()
+  }
+
+  /** Lists which were put into the [alarmsSubject] directly are converted once */
+  private fun alarmsInSubject(): AlarmList {
+    return when (val alarms = alarmsSubject.value) {
+      is AlarmList -> alarms
+      null -> AlarmList.EMPTY
+      else -> AlarmList.of(alarms)
+    }
+  }
+
+  fun alarmsSubject(): BehaviorSubject<List<AlarmValue>> = alarmsSubject
+
+  fun next(): BehaviorSubject<Optional<Next>> = next
+
+  fun sets(): Subject<AlarmSet> = sets
+
+  data class Next(
+      val isPrealarm: Boolean,
+      val alarm: AlarmValue,
+      val nextNonPrealarmTime: Long,
+  ) {
+    fun alarm(): AlarmValue = alarm
+
+    fun nextNonPrealarmTime(): Long = nextNonPrealarmTime
+  }
+
+  /** Alarm with [id] goes off at [millis] as [type]. */
+  data class Occurrence(
+      val id: Int,
+      val type: CalendarType,
+      val millis: Long,
+  )
+
+  /**
+   * Immutable snapshot of upcoming [occurrences] of all alarms ordered by time. Contains at most
+   * [LookAheadSchedule.DEFAULT_SIZE] occurrences in the next week.
+   */
+  data class LookAhead(val occurrences: List<Occurrence>) {
+    /** Occurrences before [millis], e.g. for the next 7 days. */
+    fun until(millis: Long): List<Occurrence> = occurrences.takeWhile { it.millis < millis }
+  }
+
+  /**
+   * Alarms which were [added], [changed] or [removed] (ids) by the change with the given [version].
+   * [alarms] are all alarms after the change.
+   */
+  data class AlarmsChange(
+      val version: Long,
+      val alarms: List<AlarmValue>,
+      val added: List<AlarmValue>,
+      val changed: List<AlarmValue>,
+      val removed: List<Int>,
+  )
+
+  data class AlarmSet(
+      val alarm: AlarmValue,
+      val millis: Long,
+      val fromUserInteraction: Boolean,
+  ) {
+    fun alarm(): AlarmValue = alarm
+
+    fun millis(): Long = millis
+  }
+}
@@ -0,0 +1,17 @@
+package com.better.alarm.domain.statemachine
+
+abstract class ComplexTransition<T, C> : State<T, C>() {
+  abstract fun performComplexTransition(context: C)
+
+  override fun enter(context: C, reason: T?) {
+    performComplexTransition(context)
+  }
+
+  override fun onEvent(context: C, event: T): Boolean {
+    throw RuntimeException("performComplexTransition() must transit immediately")
+  }
+
+  override fun exit(context: C, reason: T?) {
+    // nothing to do
+  }
+}
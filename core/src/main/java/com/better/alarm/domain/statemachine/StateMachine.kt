@@ -0,0 +1,423 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Yuriy Kulikov
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.better.alarm.domain.statemachine
+
+import com.better.alarm.logger.Logger
+
+/**
+ * # State Machine
+ *
+ * State machine (SM) processes incoming events in its [currentState]. If this state cannot handle
+ * the event ([State.onEvent] returned false), event is propagated to the parent of the state.
+ *
+ * ## State pattern
+ *
+ * SM has a finite amount of states of which exactly one is the current state. SM delegates
+ * processing of incoming events to this state. State can be changed by the SM itself as a reaction
+ * to an external event.
+ *
+ * [State pattern on Wikipedia](https://en.wikipedia.org/wiki/State_pattern)
+ *
+ * [State Machine on Wikipedia](https://en.wikipedia.org/wiki/Finite-state_machine)
+ *
+ * ## Hierarchical Finite State Machine
+ *
+ * States are organized as a rooted forest (union of rooted trees). SM has multiple sub-hierarchies,
+ * each one is a rooted tree. If a state was not able to process an event (returned *false* from
+ * [State.onEvent]), the event if delivered to the parent of this state.
+ *
+ * **Any state can be current state, not just leaf states**
+ *
+ * [Tree on Wikipedia](https://en.wikipedia.org/wiki/Tree_(graph_theory))
+ *
+ * ## Event propagation
+ *
+ * Consider this SM, which is in the *x* state:
+ * ```
+ *          root       O
+ *        /      \      \
+ *       A        B      M
+ *     /  \     /  \      \
+ *   a    b   *x*    y     G
+ * ```
+ *
+ * If *x* is not able to handle an event, it is delivered to B, which is a parent of *x*. If B is
+ * also not able to handle this event, it goes to the next parent. If no parent is available (root
+ * was not able to handle), an exception is thrown. O-M-G is a separate hierarchy which is not used
+ * in this case (no common parent).
+ *
+ * [HFSM](https://en.wikipedia.org/wiki/UML_state_machine#Hierarchically_nested_states)
+ *
+ * ## Transitions
+ *
+ * Transition is a change of the SM state due to an external event. Transitions trigger [State.exit]
+ * and [State.enter] on the states which are involved in the transition. All states in the hierarchy
+ * are notified, not only the leaf states.
+ *
+ * Consider moving from *x* to *y*:
+ * ```
+ *
+ *          root         ->             ->         root
+ *        /      \       ->             ->       /      \
+ *       A        B      -> from x to y ->      A        B
+ *     /  \     /  \     ->             ->    /  \     /  \
+ *   a    b   *x*    y   ->             ->   a    b  x    *y*
+ * ```
+ *
+ * States will be notified in this order: x.exit(), y.enter(). The B state will not get any event
+ * because root was not exited or entered.
+ * * Consider moving from *a* to *y*:
+ * ```
+ *          root         ->             ->         root
+ *        /      \       ->             ->       /      \
+ *       A        B      -> from x to b ->      A        B
+ *     /  \     /  \     ->             ->    /  \      /  \
+ *  *a*    b   x    y    ->             ->   a    b    x   *y*
+ * ```
+ *
+ * States will be notified in this order: a.exit(), A.exit(), B.enter(), y.enter(). The root state
+ * will not get any event because root was not exited or entered. A and B states are parent states
+ * of the leaf states and they also receive [State.enter] and [State.exit]. Both callbacks will
+ * receive the **reason** - an external event which has caused the transition.
+ *
+ * ## Transitions between trees
+ *
+ * Consider moving from *a* to *M*:
+ * ```
+ *          root        O       ->             ->         root        O
+ *        /      \       \      ->             ->       /      \       \
+ *       A        B       M     -> from x to L ->      A        B      *M*
+ *     /  \     /  \       \    ->             ->    /  \     /  \       \
+ *  *a*    b   x    y       G   ->             ->   a    b    x   y       G
+ * ```
+ *
+ * States will be notified in this order: a.exit(), A.exit(), root.exit(), O.enter(), M.enter().
+ *
+ * ## Run to completion
+ *
+ * Events are processed one at a time. Events which are sent while the SM is processing, for example
+ * from [State.enter] or [State.exit], are queued and processed after the current event and all
+ * transitions caused by it are complete. Deferred events are put in front of the queue when the
+ * state changes. Processing is a loop, so the stack depth does not depend on the amount of events.
+ *
+ * ## Shared definition
+ *
+ * The tree of states is a [StateMachineDefinition] which can be shared by many state machines.
+ * States do not hold any data of a particular state machine, instead they receive the [context] of
+ * the state machine which processes the event. A state machine itself only holds the current state
+ * and the deferred events.
+ *
+ * ## Tracing
+ *
+ * Processed events are recorded in a [TransitionTrace] if one is given. Events and transitions are
+ * not logged.
+ *
+ * ## Origin
+ *
+ * This particular state machine is a part of an open source project licensed under MIT license. It
+ * is inspired by an
+ * [Android SM](https://android.googlesource.com/platform/frameworks/base/+/refs/heads/master/core/java/com/android/internal/util/StateMachine.java)
+ */
+class StateMachine<T : Any, C>(
+    val name: String,
+    private val logger: Logger,
+    private val context: C,
+    private val trace: TransitionTrace? = null,
+    private val traceId: Int = 0,
+) {
+  private lateinit var definition: StateMachineDefinition<T, C>
+
+  /** Index of the current state of the state machine in the [definition] */
+  private var current: Int = -1
+
+  /** Index of the state into which the state machine transitions */
+  private var target: Int = -1
+
+  /** True while the SM is processing. See [runToCompletion]. */
+  private var processing: Boolean = false
+
+  /** Events which are waiting to be processed by the [runToCompletion] loop */
+  private val queue = ArrayDeque<T>()
+
+  /**
+   * Events not processed by current state and put on hold until the next transition. Most state
+   * machines never defer, so the list is only created when needed.
+   */
+  private var deferred: ArrayDeque<T>? = null
+
+  /**
+   * Start the state machine with a shared [definition]. [State.enter] will be called on the
+   * [initial] state and its parents.
+   */
+  fun start(definition: StateMachineDefinition<T, C>, initial: State<T, C>, event: T? = null) {
+    this.definition = definition
+    current = definition.indexOf(initial)
+    target = current
+    enterInitialState(event)
+  }
+
+  /**
+   * Configure and start the state machine with a definition which is not shared. [State.enter] will
+   * be called on the initial state and its parents.
+   */
+  fun start(
+      event: T? = null,
+      configurator:
+          StateMachineDefinition.Builder<T, C>.(StateMachineDefinition.Builder<T, C>) -> Unit
+  ) {
+    val builder = StateMachineDefinition.Builder<T, C>().apply { configurator(this, this) }
+    val initial = requireNotNull(builder.initialState) { "[$name] initial state is not set" }
+    start(StateMachineDefinition(builder), initial, event)
+  }
+
+  /**
+   * Process the event. If [State.onEvent] returns false, event goes to the next parent state. If
+   * the SM is already processing, the event is queued and processed when the current event is done.
+   */
+  fun sendEvent(event: T) {
+    queue.addLast(event)
+    if (!processing) runToCompletion {}
+  }
+
+  /** Process all [events] in one [runToCompletion] loop, in the given order. */
+  fun sendEvents(events: List<T>) {
+    for (i in events.indices) queue.addLast(events[i])
+    if (!processing) runToCompletion {}
+  }
+
+  private fun processEvent(event: T) {
+    val hierarchy = definition.branch(current)
+    var processed = false
+    for (state in hierarchy) {
+      if (state.onEvent(context, event)) {
+        processed = true
+        break
+      }
+    }
+
+    require(processed) { "[$name] was not able to handle $event" }
+  }
+
+  /**
+   * Trigger a transition. Allowed only while processing events. All exiting states will receive
+   * [State.exit] and all entering states [State.enter] calls. Transitions will be performed after
+   * the [sendEvent] is done. Can be called from [State.enter]. In this case last call wins.
+   */
+  fun transitionTo(state: State<T, C>) {
+    check(processing) { "transitionTo can only be called within processEvent" }
+    target = definition.indexOf(state)
+  }
+
+  /**
+   * Indicate that current state defers processing of this event to the next state. Event will be
+   * delivered upon state change to the next state.
+   */
+  fun deferEvent(event: T) {
+    logger.debug { "[$name] deferring $event from $name to next state" }
+    val list = deferred ?: ArrayDeque<T>().also { deferred = it }
+    list.addLast(event)
+  }
+
+  /**
+   * Loop until [current] is not the same as [target] which can be caused by [transitionTo]. States
+   * of the current branch up to the common part are exited, then states of the target branch are
+   * entered starting from the common part. Events deferred in the previous states are put in front
+   * of the [queue].
+   */
+  private fun performTransitions(reason: T?) {
+    check(processing)
+    if (current == target) return
+    while (current != target) {
+      val currentBranch = definition.branch(current)
+      val targetBranch = definition.branch(target)
+      val shared = definition.common(current, target)
+      val toExit = currentBranch.size - shared
+      val toEnter = targetBranch.size - shared
+
+      // now that we know the branches, change the current state to target state
+      // calling exit/enter may change this afterwards
+      current = target
+
+      for (i in 0 until toExit) currentBranch[i].exit(context, reason)
+      for (i in toEnter - 1 downTo 0) targetBranch[i].enter(context, reason)
+    }
+
+    val list = deferred ?: return
+    while (list.isNotEmpty()) queue.addFirst(list.removeLast())
+  }
+
+  /** Goes all states from root to [current] and invokes [State.enter] */
+  private fun enterInitialState(event: T?) = runToCompletion {
+    val toEnter = definition.branch(current)
+    logger.debug { "[$name] entering ${toEnter.reversed()}" }
+    for (i in toEnter.size - 1 downTo 0) toEnter[i].enter(context, event)
+    performTransitions(event)
+  }
+
+  /**
+   * Executes the [block] and then processes the [queue] until it is empty. If processing fails, the
+   * remaining events are dropped, so that the next event does not process them.
+   */
+  private inline fun runToCompletion(block: () -> Unit) {
+    processing = true
+    try {
+      block()
+      while (queue.isNotEmpty()) {
+        val event = queue.removeFirst()
+        val from = current
+        val start = if (trace != null) System.nanoTime() else 0L
+        processEvent(event)
+        performTransitions(event)
+        trace?.record(
+            traceId,
+            event,
+            definition.states[from],
+            definition.states[current],
+            start,
+            System.nanoTime() - start)
+      }
+    } catch (e: Throwable) {
+      queue.clear()
+      throw e
+    } finally {
+      processing = false
+    }
+  }
+}
+
+/**
+ * Tree of [State]s which can be shared by many [StateMachine]s. The tree does not change after it
+ * is built, so all branches and paths between the states are computed here once and event
+ * processing does not allocate.
+ */
+class StateMachineDefinition<T : Any, C>(builder: Builder<T, C>) {
+  /** States in the order they were added */
+  val states: List<State<T, C>> = builder.nodes.keys.toList()
+
+  /** Index of every state in [states] */
+  private val indices: Map<State<T, C>, Int> =
+      states.withIndex().associate { (index, state) -> state to index }
+
+  /** Branch of every state up to its root, the state itself first. */
+  private val branches: Array<Array<State<T, C>>> =
+      Array(states.size) { index ->
+        generateSequence(builder.nodes.getValue(states[index])) { it.parentNode }
+            .map { it.state }
+            .toList()
+            .toTypedArray()
+      }
+
+  /**
+   * Number of states which the branches of two states have in common. States which are not shared
+   * are exited and entered when a state machine transitions between these two states.
+   */
+  private val common: IntArray =
+      IntArray(states.size * states.size) { index ->
+        commonRootPath(branches[index / states.size], branches[index % states.size])
+      }
+
+  /** Builds the definition with the states added in [configurator] */
+  constructor(
+      configurator: Builder<T, C>.(Builder<T, C>) -> Unit
+  ) : this(Builder<T, C>().apply { configurator(this, this) })
+
+  fun indexOf(state: State<T, C>): Int = indices.getValue(state)
+
+  fun branch(index: Int): Array<State<T, C>> = branches[index]
+
+  fun common(from: Int, to: Int): Int = common[from * states.size + to]
+
+  /** Number of states at the root end which both branches share */
+  private fun commonRootPath(from: Array<State<T, C>>, to: Array<State<T, C>>): Int {
+    var shared = 0
+    while (shared < from.size &&
+        shared < to.size &&
+        from[from.size - 1 - shared] == to[to.size - 1 - shared]) {
+      shared++
+    }
+    return shared
+  }
+
+  class Builder<T, C> {
+    internal val nodes = mutableMapOf<State<T, C>, Node<T, C>>()
+    internal var initialState: State<T, C>? = null
+
+    /**
+     * Adds a new state. Parent must be added before it is used here as [parent].
+     *
+     * State machines which are started with [StateMachine.start] and a configurator require at
+     * least one state with [initial] == true or [setInitialState]
+     */
+    fun addState(state: State<T, C>, parent: State<T, C>? = null, initial: Boolean = false) {
+      val parentNode: Node<T, C>? =
+          parent?.let {
+            requireNotNull(nodes[it]) { "Parent $parent must be added before adding a child" }
+          }
+
+      nodes[state] = Node(state, parentNode)
+
+      if (initial) setInitialState(state)
+    }
+
+    fun setInitialState(state: State<T, C>) {
+      initialState = state
+    }
+  }
+}
+
+/** Node in the state tree */
+internal class Node<T, C>(val state: State<T, C>, val parentNode: Node<T, C>?)
+
+/**
+ * Event handler in a [StateMachine]. States are shared by all state machines of a
+ * [StateMachineDefinition], data of a particular state machine belongs to its [context].
+ */
+abstract class State<T, C> {
+  /**
+   * State is entered. It is not called if the state is re-entered (transition to self).
+   *
+   * [reason] is the message which caused and and *null* if [enter] is called from the initial state
+   * is entered.
+   */
+  abstract fun enter(context: C, reason: T?)
+
+  /**
+   * State is exited. It is only called if the state is completely left. Transitions in the child
+   * states do not cause this.
+   *
+   * [reason] is the message which caused and and *null* if [exit] is called from the initial state
+   * is entered.
+   */
+  abstract fun exit(context: C, reason: T?)
+
+  /**
+   * Process events in the state. Return *true* if the state has handled the event and *false* if
+   * not. Unhandled event will be propagated to the parent.
+   */
+  abstract fun onEvent(context: C, event: T): Boolean
+
+  open val name: String = javaClass.simpleName
+
+  override fun toString(): String = name
+}
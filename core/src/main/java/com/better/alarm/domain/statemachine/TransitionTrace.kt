@@ -0,0 +1,76 @@
+package com.better.alarm.domain.statemachine
+
+/**
+ * Fixed-size ring buffer of events processed by [StateMachine]s. Every record has the id of the
+ * state machine, the type of the event, the states before and after the event, the time when
+ * processing started and how long the handlers and transitions took.
+ *
+ * All storage is allocated upfront, [record] neither allocates nor formats strings, so the trace
+ * can be always on. Only the last [capacity] records are kept. Use [dump] to get them as CSV.
+ */
+class TransitionTrace(val capacity: Int = DEFAULT_CAPACITY) {
+  private val ids = IntArray(capacity)
+  private val events = arrayOfNulls<Class<*>>(capacity)
+  private val froms = arrayOfNulls<State<*, *>>(capacity)
+  private val tos = arrayOfNulls<State<*, *>>(capacity)
+  private val startNanos = LongArray(capacity)
+  private val durationNanos = LongArray(capacity)
+
+  /** Total amount of records, the next record is written at `written % capacity` */
+  private var written: Long = 0
+
+  init {
+    require(capacity > 0) { "capacity must be positive, was $capacity" }
+  }
+
+  /** Amount of records which [dump] will return */
+  val size: Int
+    @Synchronized get() = minOf(written, capacity.toLong()).toInt()
+
+  @Synchronized
+  fun record(
+      id: Int,
+      event: Any,
+      from: State<*, *>,
+      to: State<*, *>,
+      start: Long,
+      duration: Long,
+  ) {
+    val index = (written % capacity).toInt()
+    ids[index] = id
+    events[index] = event.javaClass
+    froms[index] = from
+    tos[index] = to
+    startNanos[index] = start
+    durationNanos[index] = duration
+    written++
+  }
+
+  /** Writes the records as CSV with a header, oldest first. */
+  @Synchronized
+  fun dump(out: Appendable) {
+    out.append("id,event,from,to,nanoTime,durationNanos\n")
+    val first = written - size
+    for (i in first until written) {
+      val index = (i % capacity).toInt()
+      out.append(ids[index].toString())
+          .append(',')
+          .append(events[index]?.simpleName)
+          .append(',')
+          .append(froms[index]?.name)
+          .append(',')
+          .append(tos[index]?.name)
+          .append(',')
+          .append(startNanos[index].toString())
+          .append(',')
+          .append(durationNanos[index].toString())
+          .append('\n')
+    }
+  }
+
+  fun dump(): String = StringBuilder().also { dump(it) }.toString()
+
+  companion object {
+    const val DEFAULT_CAPACITY = 2048
+  }
+}
@@ -0,0 +1,7 @@
+package com.better.alarm.platform
+
+/** Flags of the build variant, in the app they come from BuildConfig. */
+interface BuildFlags {
+  /** Debug builds fail on unexpected events instead of logging them */
+  val isDebug: Boolean
+}
@@ -0,0 +1,21 @@
+package com.better.alarm.platform
+
+import java.io.File
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+
+/**
+ * Syncs the entries of a directory, so that a file which was renamed in it is still there after a
+ * crash. In the app it uses `android.system.Os`, because `java.nio.file` needs API 26.
+ */
+fun interface DirectorySync {
+  /** Throws an [java.io.IOException] if the directory can not be synced */
+  fun sync(dir: File)
+
+  companion object {
+    /** Implementation for the JVM */
+    val nio = DirectorySync { dir ->
+      FileChannel.open(dir.toPath(), StandardOpenOption.READ).use { it.force(true) }
+    }
+  }
+}
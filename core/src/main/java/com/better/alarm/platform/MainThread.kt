@@ -0,0 +1,6 @@
+package com.better.alarm.platform
+
+/** Tells if the caller runs on the main thread, in the app it is the thread of the main Looper. */
+fun interface MainThread {
+  fun isCurrent(): Boolean
+}
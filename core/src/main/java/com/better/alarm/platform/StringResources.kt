@@ -0,0 +1,13 @@
+package com.better.alarm.platform
+
+/** Localized strings used by the domain, in the app they come from the string resources. */
+interface StringResources {
+  /** Label of alarms which do not repeat */
+  val never: String
+
+  /** Label of alarms which repeat on all days */
+  val everyDay: String
+
+  /** Separator of the days in labels, e.g. ", " */
+  val dayConcat: String
+}
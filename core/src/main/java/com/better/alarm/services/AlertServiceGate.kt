@@ -0,0 +1,30 @@
+package com.better.alarm.services
+
+/**
+ * Decides which [Event]s are pushed to the alert service. Dismiss, mute and demute are only pushed
+ * while the service has an alert, so a burst of snooze and dismiss events does not start the
+ * foreground service again and again.
+ *
+ * Not thread safe, events are delivered by the [EventPipeline] one at a time.
+ */
+class AlertServiceGate {
+  /** Ids of the alarms which were pushed to the service and not dismissed yet */
+  private val alerting = mutableSetOf<Int>()
+
+  /** Returns true if the [event] has to be pushed to the alert service */
+  fun shouldPush(event: Event): Boolean {
+    return when (event) {
+      is Event.AlarmEvent -> true.also { alerting.add(event.id) }
+      is Event.PrealarmEvent -> true.also { alerting.add(event.id) }
+      is Event.DismissEvent -> alerting.remove(event.id)
+      is Event.MuteEvent,
+      is Event.DemuteEvent -> alerting.isNotEmpty()
+      is Event.SnoozedEvent,
+      is Event.Autosilenced,
+      is Event.CancelSnoozedEvent,
+      is Event.ShowSkip,
+      is Event.HideSkip -> false
+      is Event.NullEvent -> throw RuntimeException("NullEvent")
+    }
+  }
+}
@@ -0,0 +1,222 @@
+package com.better.alarm.services
+
+import io.reactivex.Observable
+import io.reactivex.subjects.PublishSubject
+
+/**
+ * Queue between the producers of [Event]s and the consumers which turn them into intents, wakelocks
+ * and notifications.
+ *
+ * Events are delivered on the thread which has offered them. Events offered while the pipeline is
+ * held (see [hold]) or while a consumer is handling another event are queued and conflated:
+ * - [Event.ShowSkip] and [Event.HideSkip] for the same id replace each other, only the latest one
+ *   is delivered
+ * - [Event.MuteEvent] and [Event.DemuteEvent] replace each other, only the latest one is delivered
+ * - an event which is equal to the last queued event is not queued again
+ *
+ * Events are never dropped, a queued event is the latest state for its key. If the queue of a held
+ * pipeline has [capacity] events, queued events are delivered right away. If it is full while a
+ * consumer is handling an event, the queue grows beyond the [capacity] and the event is counted as
+ * overflowed.
+ *
+ * Offered, delivered, conflated and overflowed events and the time they have spent in the queue are
+ * counted per event type, see [stats] and [dump].
+ */
+class EventPipeline(
+    val capacity: Int = DEFAULT_CAPACITY,
+    private val nanoTime: () -> Long = System::nanoTime,
+) {
+  private val subject: PublishSubject<Event> = PublishSubject.create()
+  private val queue = ArrayDeque<Queued>(capacity)
+  private val stats = LinkedHashMap<Class<out Event>, Counters>()
+
+  /** Depth of nested [hold] calls. Events are queued while it is not 0. */
+  private var holdDepth = 0
+
+  /** True while queued events are delivered, events offered meanwhile are queued */
+  private var delivering = false
+
+  /** True if the queue of a held pipeline was full and has to be delivered before [release] */
+  private var overflow = false
+
+  init {
+    require(capacity > 0) { "capacity must be positive, was $capacity" }
+  }
+
+  /** Events after conflation */
+  fun events(): Observable<Event> = subject
+
+  fun offer(event: Event) {
+    synchronized(this) {
+      counters(event).offered++
+      if (conflate(event)) return
+      if (queue.size >= capacity) {
+        if (delivering) {
+          counters(event).overflowed++
+        } else {
+          overflow = true
+        }
+      }
+      queue.addLast(Queued(event, nanoTime()))
+      if (delivering || holdDepth > 0 && !overflow) return
+      delivering = true
+    }
+    deliverQueued()
+  }
+
+  /** Events are queued and conflated until the outermost [release]. Use [batch]. */
+  @Synchronized
+  fun hold() {
+    holdDepth++
+  }
+
+  fun release() {
+    synchronized(this) {
+      check(holdDepth > 0) { "release() without hold()" }
+      if (--holdDepth > 0 || delivering) return
+      delivering = true
+    }
+    deliverQueued()
+  }
+
+  /** Performs the [block] while the pipeline is held, see [hold]. */
+  inline fun <T> batch(block: () -> T): T {
+    hold()
+    try {
+      return block()
+    } finally {
+      release()
+    }
+  }
+
+  /** Counters per event type, by [Class.getSimpleName] */
+  @Synchronized
+  fun stats(): Map<String, EventStats> {
+    return stats.entries.associate { (type, counters) -> type.simpleName to counters.snapshot() }
+  }
+
+  /** Writes the [stats] as CSV with a header. */
+  fun dump(out: Appendable) {
+    out.append("event,offered,delivered,conflated,overflowed,meanWaitNanos,maxWaitNanos\n")
+    stats().forEach { (event, stats) ->
+      out.append(event)
+          .append(',')
+          .append(stats.offered.toString())
+          .append(',')
+          .append(stats.delivered.toString())
+          .append(',')
+          .append(stats.conflated.toString())
+          .append(',')
+          .append(stats.overflowed.toString())
+          .append(',')
+          .append(stats.meanWaitNanos.toString())
+          .append(',')
+          .append(stats.maxWaitNanos.toString())
+          .append('\n')
+    }
+  }
+
+  fun dump(): String = StringBuilder().also { dump(it) }.toString()
+
+  private fun deliverQueued() {
+    try {
+      while (true) {
+        val queued =
+            synchronized(this) {
+              if (queue.isEmpty()) overflow = false
+              if (queue.isEmpty() || holdDepth > 0 && !overflow) {
+                delivering = false
+                return
+              }
+              queue.removeFirst().also { counters(it.event).delivered(nanoTime() - it.enqueued) }
+            }
+        subject.onNext(queued.event)
+      }
+    } catch (e: Throwable) {
+      synchronized(this) { delivering = false }
+      throw e
+    }
+  }
+
+  /**
+   * Removes queued events which are replaced by the [event]. Returns true if the [event] itself is
+   * redundant and must not be queued.
+   */
+  private fun conflate(event: Event): Boolean {
+    if (queue.lastOrNull()?.event == event) {
+      counters(event).conflated++
+      return true
+    }
+    val iterator = queue.iterator()
+    while (iterator.hasNext()) {
+      val queued = iterator.next().event
+      if (replaces(event, queued)) {
+        counters(queued).conflated++
+        iterator.remove()
+      }
+    }
+    return false
+  }
+
+  private fun replaces(event: Event, queued: Event): Boolean {
+    return when (event) {
+      is Event.ShowSkip,
+      is Event.HideSkip -> queued.skipId() == event.skipId()
+      is Event.MuteEvent,
+      is Event.DemuteEvent -> queued is Event.MuteEvent || queued is Event.DemuteEvent
+      else -> false
+    }
+  }
+
+  private fun Event.skipId(): Int? {
+    return when (this) {
+      is Event.ShowSkip -> id
+      is Event.HideSkip -> id
+      else -> null
+    }
+  }
+
+  private fun counters(event: Event): Counters = stats.getOrPut(event.javaClass) { Counters() }
+
+  private class Queued(val event: Event, val enqueued: Long)
+
+  private class Counters {
+    var offered: Long = 0
+    var delivered: Long = 0
+    var conflated: Long = 0
+    var overflowed: Long = 0
+    var waitNanos: Long = 0
+    var maxWaitNanos: Long = 0
+
+    fun delivered(wait: Long) {
+      delivered++
+      waitNanos += wait
+      maxWaitNanos = maxOf(maxWaitNanos, wait)
+    }
+
+    fun snapshot(): EventStats {
+      return EventStats(
+          offered = offered,
+          delivered = delivered,
+          conflated = conflated,
+          overflowed = overflowed,
+          meanWaitNanos = if (delivered == 0L) 0 else waitNanos / delivered,
+          maxWaitNanos = maxWaitNanos,
+      )
+    }
+  }
+
+  /** Amount of events of one type and the time they have waited in the queue before delivery */
+  data class EventStats(
+      val offered: Long,
+      val delivered: Long,
+      val conflated: Long,
+      val overflowed: Long,
+      val meanWaitNanos: Long,
+      val maxWaitNanos: Long,
+  )
+
+  companion object {
+    const val DEFAULT_CAPACITY = 64
+  }
+}
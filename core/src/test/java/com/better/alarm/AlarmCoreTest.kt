@@ -107,6 +107,7 @@ class AlarmCoreTest {
             prefs,
             store,
             calendars,
+            DebugBuildFlags,
             onDelete = {})
         .apply {
           start()
@@ -371,16 +372,16 @@ class AlarmCoreTest {
     val alarm = createAlarm()
     act("Set on 18 ov November") {
       alarm.edit {
-        copy(
-            date =
+        withDate(
                 Calendar.getInstance().apply {
                   set(Calendar.MONTH, 11)
                   set(Calendar.DAY_OF_MONTH, 18)
-                },
-            isEnabled = true,
-            hour = 13,
-            minutes = 15,
-        )
+                })
+            .copy(
+                isEnabled = true,
+                hour = 13,
+                minutes = 15,
+            )
       }
     }
     val calendar = requireNotNull(alarmSetterMock.calendar)
@@ -395,15 +396,15 @@ class AlarmCoreTest {
     val alarm = createAlarm()
     act("Set two days from now") {
       alarm.edit {
-        copy(
-            date =
+        withDate(
                 Calendar.getInstance().apply {
                   set(Calendar.DAY_OF_YEAR, get(Calendar.DAY_OF_YEAR + 2))
-                },
-            isEnabled = true,
-            hour = 13,
-            minutes = 15,
-        )
+                })
+            .copy(
+                isEnabled = true,
+                hour = 13,
+                minutes = 15,
+            )
       }
     }
 
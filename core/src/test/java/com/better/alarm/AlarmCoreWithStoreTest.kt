@@ -63,7 +63,7 @@ class AlarmCoreWithStoreTest {
   }
   private val repository: AlarmsRepository =
       DataStoreAlarmsRepository.createBlocking(
-          createTempDirectory().toFile(), logger, CoroutineScope(Dispatchers.IO))
+          createTempDirectory().toFile(), logger, CoroutineScope(Dispatchers.IO), { true })
 
   fun advanceTime(timeString: String) {
     require(timeString.contains(":"))
@@ -112,6 +112,7 @@ class AlarmCoreWithStoreTest {
             prefs,
             store,
             calendars,
+            DebugBuildFlags,
             onDelete = {})
         .apply {
           start()
@@ -0,0 +1,110 @@
+package com.better.alarm
+
+import com.better.alarm.data.AlarmValue
+import com.better.alarm.domain.AlarmList
+import com.better.alarm.domain.Store
+import com.better.alarm.util.Optional
+import io.reactivex.subjects.BehaviorSubject
+import io.reactivex.subjects.PublishSubject
+import java.util.Random
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+
+class AlarmListTest {
+  private fun alarm(id: Int, hour: Int = 0) = AlarmValue(id = id, hour = hour)
+
+  @Test
+  fun `list behaves like a list sorted by id`() {
+    val random = Random(42)
+    var list = AlarmList.EMPTY
+    val reference = sortedMapOf<Int, AlarmValue>()
+    repeat(5000) {
+      val id = random.nextInt(3000)
+      if (random.nextInt(3) == 0) {
+        list = list.remove(id)
+        reference.remove(id)
+      } else {
+        val value = alarm(id, hour = random.nextInt(24))
+        list = list.put(value)
+        reference[id] = value
+      }
+    }
+
+    assertThat(list).isEqualTo(reference.values.toList())
+    assertThat(list.size).isEqualTo(reference.size)
+    assertThat(list.map { it.id }).isEqualTo(reference.keys.toList())
+    assertThat(list[reference.size / 2]).isEqualTo(reference.values.toList()[reference.size / 2])
+    reference.forEach { (id, value) -> assertThat(list.findById(id)).isEqualTo(value) }
+  }
+
+  @Test
+  fun `previous versions are not changed by updates`() {
+    val first = AlarmList.of(listOf(alarm(1), alarm(40), alarm(2000)))
+    val second = first.put(alarm(40, hour = 7)).remove(2000)
+
+    assertThat(first).containsExactly(alarm(1), alarm(40), alarm(2000))
+    assertThat(second).containsExactly(alarm(1), alarm(40, hour = 7))
+    assertThat(second.remove(40).put(alarm(40))).isEqualTo(first.remove(2000))
+  }
+
+  @Test
+  fun `unchanged values do not create a new list`() {
+    val list = AlarmList.of(listOf(alarm(1), alarm(2)))
+
+    assertThat(list.put(alarm(1))).isSameAs(list)
+    assertThat(list.remove(3)).isSameAs(list)
+  }
+
+  @Test
+  fun `store emits changes with versions`() {
+    val store =
+        Store(
+            alarmsSubject = BehaviorSubject.createDefault(listOf(alarm(1))),
+            next = BehaviorSubject.createDefault(Optional.absent()),
+            sets = PublishSubject.create(),
+            events = PublishSubject.create())
+
+    val changes = store.alarmChanges().test()
+    store.putAlarm(alarm(2))
+    store.putAlarm(alarm(1, hour = 5))
+    store.putAlarm(alarm(1, hour = 5))
+    store.removeAlarm(2)
+
+    changes.assertValueCount(4)
+    val (initial, added, changed, removed) = changes.values()
+    assertThat(initial.added).containsExactly(alarm(1))
+    assertThat(added.added).containsExactly(alarm(2))
+    assertThat(changed.changed).containsExactly(alarm(1, hour = 5))
+    assertThat(removed.removed).containsExactly(2)
+    assertThat(changes.values().map { it.version }).containsExactly(0, 1, 2, 3)
+    assertThat(store.alarms().blockingFirst()).containsExactly(alarm(1, hour = 5))
+  }
+
+  @Test
+  fun `changes in a transaction are published once`() {
+    val store =
+        Store(
+            alarmsSubject = BehaviorSubject.createDefault(listOf(alarm(1), alarm(2))),
+            next = BehaviorSubject.createDefault(Optional.absent()),
+            sets = PublishSubject.create(),
+            events = PublishSubject.create())
+    val changes = store.alarmChanges().skip(1).test()
+
+    store.batch {
+      store.putAlarm(alarm(3))
+      store.putAlarm(alarm(3, hour = 1))
+      store.putAlarm(alarm(1, hour = 1))
+      store.batch { store.removeAlarm(2) }
+      store.putAlarm(alarm(4))
+      store.removeAlarm(4)
+      changes.assertNoValues()
+    }
+
+    changes.assertValueCount(1)
+    val change = changes.values().single()
+    assertThat(change.added).containsExactly(alarm(3, hour = 1))
+    assertThat(change.changed).containsExactly(alarm(1, hour = 1))
+    assertThat(change.removed).containsExactly(2)
+    assertThat(change.alarms).containsExactly(alarm(1, hour = 1), alarm(3, hour = 1))
+  }
+}
@@ -0,0 +1,374 @@
+package com.better.alarm
+
+import com.better.alarm.data.AlarmValue
+import com.better.alarm.data.Alarmtone
+import com.better.alarm.data.CalendarType
+import com.better.alarm.data.DaysOfWeek
+import com.better.alarm.data.Prefs
+import com.better.alarm.data.stores.InMemoryRxDataStoreFactory
+import com.better.alarm.domain.AlarmCore
+import com.better.alarm.domain.AlarmSetter
+import com.better.alarm.domain.AlarmsScheduler
+import com.better.alarm.domain.Calendars
+import com.better.alarm.domain.Store
+import com.better.alarm.domain.batch
+import com.better.alarm.logger.Logger
+import com.better.alarm.util.Optional
+import io.mockk.mockk
+import io.reactivex.Single
+import io.reactivex.schedulers.TestScheduler
+import io.reactivex.subjects.BehaviorSubject
+import io.reactivex.subjects.PublishSubject
+import java.util.ArrayList
+import java.util.Calendar
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Before
+import org.junit.Test
+
+class AlarmSchedulerTest {
+  private lateinit var stateNotifierMock: AlarmCore.IStateNotifier
+  private lateinit var alarmSetterMock: SetterMock
+  private lateinit var testScheduler: TestScheduler
+  private lateinit var store: Store
+  private lateinit var prefs: Prefs
+  private lateinit var logger: Logger
+  private lateinit var alarmsScheduler: AlarmsScheduler
+  private val calendars = Calendars { Calendar.getInstance() }
+
+  @Before
+  fun setUp() {
+    testScheduler = TestScheduler()
+    logger = Logger.create()
+
+    prefs = Prefs.create(Single.just(true), InMemoryRxDataStoreFactory.create())
+
+    store =
+        Store(
+            alarmsSubject = BehaviorSubject.createDefault(ArrayList()),
+            next = BehaviorSubject.createDefault(Optional.absent()),
+            sets = PublishSubject.create(),
+            events = PublishSubject.create())
+
+    stateNotifierMock = mockk()
+    alarmSetterMock = SetterMock()
+    alarmsScheduler = AlarmsScheduler(alarmSetterMock, logger, store, prefs, calendars)
+  }
+
+  class SetterMock : AlarmSetter {
+    var id: Int? = null
+    var typeName: String? = null
+    var calendar: Calendar? = null
+    val inexactAlarms = mutableMapOf<Int, Calendar>()
+    /** Number of times the RTC alarm was set or removed */
+    var rtcUpdates = 0
+
+    override fun setUpRTCAlarm(id: Int, typeName: String, calendar: Calendar) {
+      rtcUpdates++
+      this.id = id
+      this.typeName = typeName
+      this.calendar = calendar
+    }
+
+    override fun removeRTCAlarm() {
+      rtcUpdates++
+      id = null
+      typeName = null
+      calendar = null
+    }
+
+    /** Alarms fired in the past, one list per [fireNow] call */
+    val firedNow = mutableListOf<List<Pair<Int, String>>>()
+
+    override fun fireNow(ids: IntArray, typeNames: Array<String>) {
+      firedNow.add(ids.zip(typeNames))
+    }
+
+    override fun removeInexactAlarm(id: Int) {
+      inexactAlarms.remove(id)
+    }
+
+    override fun setInexactAlarm(id: Int, calendar: Calendar) {
+      inexactAlarms[id] = calendar
+    }
+
+    override fun removeDueInexactAlarms(): IntArray {
+      val now = System.currentTimeMillis()
+      val due = inexactAlarms.filterValues { it.timeInMillis <= now }.keys
+      due.forEach { inexactAlarms.remove(it) }
+      return due.toIntArray()
+    }
+  }
+
+  @Test
+  fun `Only closest alarm is set by the scheduler`() {
+    alarmsScheduler.start()
+    alarmsScheduler.setAlarm(
+        1,
+        CalendarType.NORMAL,
+        Calendar.getInstance().apply { add(Calendar.HOUR_OF_DAY, 1) },
+        createTestAlarmValue(1))
+
+    assertThat(alarmSetterMock.id).isEqualTo(1)
+  }
+
+  @Test
+  fun `Only closest alarm is set by the scheduler if more alarms are present`() {
+    alarmsScheduler.start()
+    alarmsScheduler.setAlarm(
+        1,
+        CalendarType.NORMAL,
+        Calendar.getInstance().apply { add(Calendar.HOUR_OF_DAY, 1) },
+        createTestAlarmValue(1))
+
+    alarmsScheduler.setAlarm(
+        2,
+        CalendarType.NORMAL,
+        Calendar.getInstance().apply { add(Calendar.HOUR_OF_DAY, 2) },
+        createTestAlarmValue(2))
+
+    assertThat(alarmSetterMock.id).isEqualTo(1)
+  }
+
+  @Test
+  fun `Only closest alarm is set by the scheduler if more alarms are present scheduled before current`() {
+    alarmsScheduler.start()
+    alarmsScheduler.setAlarm(
+        2,
+        CalendarType.NORMAL,
+        Calendar.getInstance().apply { add(Calendar.HOUR_OF_DAY, 2) },
+        createTestAlarmValue(2))
+
+    alarmsScheduler.setAlarm(
+        1,
+        CalendarType.NORMAL,
+        Calendar.getInstance().apply { add(Calendar.HOUR_OF_DAY, 1) },
+        createTestAlarmValue(1))
+
+    assertThat(alarmSetterMock.id).isEqualTo(1)
+  }
+
+  @Test
+  fun `Scheduler must wait until it has been started to set alarms`() {
+    alarmsScheduler.setAlarm(
+        2,
+        CalendarType.NORMAL,
+        Calendar.getInstance().apply { add(Calendar.HOUR_OF_DAY, 2) },
+        createTestAlarmValue(2))
+
+    alarmsScheduler.setAlarm(
+        1,
+        CalendarType.NORMAL,
+        Calendar.getInstance().apply { add(Calendar.HOUR_OF_DAY, 1) },
+        createTestAlarmValue(1))
+
+    assertThat(alarmSetterMock.id).isNull()
+    alarmsScheduler.start()
+    assertThat(alarmSetterMock.id).isEqualTo(1)
+  }
+
+  @Test
+  fun `Rescheduling an alarm replaces its previous entry`() {
+    alarmsScheduler.start()
+    alarmsScheduler.setAlarm(
+        1,
+        CalendarType.NORMAL,
+        Calendar.getInstance().apply { add(Calendar.HOUR_OF_DAY, 1) },
+        createTestAlarmValue(1))
+    alarmsScheduler.setAlarm(
+        2,
+        CalendarType.NORMAL,
+        Calendar.getInstance().apply { add(Calendar.HOUR_OF_DAY, 2) },
+        createTestAlarmValue(2))
+
+    alarmsScheduler.setAlarm(
+        1,
+        CalendarType.NORMAL,
+        Calendar.getInstance().apply { add(Calendar.HOUR_OF_DAY, 3) },
+        createTestAlarmValue(1))
+
+    assertThat(alarmSetterMock.id).isEqualTo(2)
+    alarmsScheduler.removeAlarm(2)
+    assertThat(alarmSetterMock.id).isEqualTo(1)
+    alarmsScheduler.removeAlarm(1)
+    assertThat(alarmSetterMock.id).isNull()
+    assertThat(store.next().value?.isPresent()).isFalse()
+  }
+
+  @Test
+  fun `Autosilence is scheduled but not shown as next alarm`() {
+    alarmsScheduler.start()
+    alarmsScheduler.setAlarm(
+        2,
+        CalendarType.NORMAL,
+        Calendar.getInstance().apply { add(Calendar.HOUR_OF_DAY, 2) },
+        createTestAlarmValue(2))
+    alarmsScheduler.setAlarm(
+        1,
+        CalendarType.AUTOSILENCE,
+        Calendar.getInstance().apply { add(Calendar.MINUTE, 10) },
+        createTestAlarmValue(1))
+
+    assertThat(alarmSetterMock.id).isEqualTo(1)
+    assertThat(store.next().value?.getOrNull()?.alarm?.id).isEqualTo(2)
+
+    alarmsScheduler.setAlarm(
+        3,
+        CalendarType.PREALARM,
+        Calendar.getInstance().apply { add(Calendar.MINUTE, 5) },
+        createTestAlarmValue(3))
+
+    assertThat(alarmSetterMock.id).isEqualTo(3)
+    assertThat(store.next().value?.getOrNull()?.alarm?.id).isEqualTo(3)
+
+    alarmsScheduler.removeAlarm(3)
+    assertThat(alarmSetterMock.id).isEqualTo(1)
+    assertThat(store.next().value?.getOrNull()?.alarm?.id).isEqualTo(2)
+  }
+
+  @Test
+  fun `Batch sets RTC alarm and notifies listeners once`() {
+    alarmsScheduler.start()
+    val nextUpdates = store.next().test()
+    alarmSetterMock.rtcUpdates = 0
+
+    alarmsScheduler.batch {
+      (1..3).forEach { id ->
+        alarmsScheduler.setAlarm(
+            id,
+            CalendarType.NORMAL,
+            Calendar.getInstance().apply { add(Calendar.HOUR_OF_DAY, 4 - id) },
+            createTestAlarmValue(id))
+      }
+      assertThat(alarmSetterMock.rtcUpdates).isEqualTo(0)
+    }
+
+    assertThat(alarmSetterMock.rtcUpdates).isEqualTo(1)
+    assertThat(alarmSetterMock.id).isEqualTo(3)
+    // initial value and the batch
+    nextUpdates.assertValueCount(2)
+  }
+
+  @Test
+  fun `Batch which does not change the head does not set RTC alarm`() {
+    alarmsScheduler.start()
+    val inOneHour = Calendar.getInstance().apply { add(Calendar.HOUR_OF_DAY, 1) }
+    val alarmValue = createTestAlarmValue(1)
+    alarmsScheduler.setAlarm(1, CalendarType.NORMAL, inOneHour, alarmValue)
+    alarmSetterMock.rtcUpdates = 0
+
+    alarmsScheduler.batch {
+      alarmsScheduler.removeAlarm(1)
+      alarmsScheduler.setAlarm(1, CalendarType.NORMAL, inOneHour, alarmValue)
+    }
+
+    assertThat(alarmSetterMock.rtcUpdates).isEqualTo(0)
+  }
+
+  @Test
+  fun `Alarms in the past are fired at once in order`() {
+    listOf(3 to -1, 1 to -3, 2 to -3, 4 to 1).forEach { (id, minutes) ->
+      alarmsScheduler.setAlarm(
+          id,
+          if (id == 2) CalendarType.PREALARM else CalendarType.NORMAL,
+          Calendar.getInstance().apply { add(Calendar.MINUTE, minutes) },
+          createTestAlarmValue(id))
+    }
+
+    alarmsScheduler.start()
+
+    assertThat(alarmSetterMock.firedNow)
+        .containsExactly(listOf(1 to "NORMAL", 2 to "PREALARM", 3 to "NORMAL"))
+    assertThat(alarmSetterMock.id).isEqualTo(4)
+  }
+
+  @Test
+  fun `Look-ahead contains following occurrences of repeating alarms`() {
+    alarmsScheduler.start()
+    val first = Calendar.getInstance().apply { add(Calendar.HOUR_OF_DAY, 1) }
+    val everyDay =
+        createTestAlarmValue(1)
+            .copy(
+                hour = first.get(Calendar.HOUR_OF_DAY),
+                minutes = first.get(Calendar.MINUTE),
+                daysOfWeek = DaysOfWeek(0x7f))
+    alarmsScheduler.setAlarm(1, CalendarType.NORMAL, first, everyDay)
+    alarmsScheduler.setAlarm(
+        2,
+        CalendarType.PREALARM,
+        Calendar.getInstance().apply { add(Calendar.MINUTE, 90) },
+        createTestAlarmValue(2))
+
+    val occurrences = store.lookAhead.value!!.occurrences
+    // alarm itself follows the prealarm
+    assertThat(occurrences.filter { it.id == 2 }.map { it.type })
+        .containsExactly(CalendarType.PREALARM, CalendarType.NORMAL)
+    // every day for a week, one less if clocks go back this week
+    assertThat(occurrences.count { it.id == 1 }).isIn(7, 8)
+    assertThat(occurrences.first().millis).isEqualTo(first.timeInMillis)
+    assertThat(occurrences.map { it.millis }).isSorted
+    assertThat(store.lookAhead.value!!.until(first.timeInMillis + 1)).hasSize(1)
+  }
+
+  @Test
+  fun `Look-ahead is updated for the changed alarm only`() {
+    alarmsScheduler.start()
+    alarmsScheduler.setAlarm(
+        1,
+        CalendarType.NORMAL,
+        Calendar.getInstance().apply { add(Calendar.HOUR_OF_DAY, 1) },
+        createTestAlarmValue(1))
+    alarmsScheduler.setAlarm(
+        2,
+        CalendarType.NORMAL,
+        Calendar.getInstance().apply { add(Calendar.HOUR_OF_DAY, 2) },
+        createTestAlarmValue(2))
+    val before = store.lookAhead.value!!
+
+    alarmsScheduler.setAlarm(
+        2,
+        CalendarType.AUTOSILENCE,
+        Calendar.getInstance().apply { add(Calendar.HOUR_OF_DAY, 3) },
+        createTestAlarmValue(2))
+
+    assertThat(before.occurrences.map { it.id }).containsExactly(1, 2)
+    // autosilence is not an occurrence
+    assertThat(store.lookAhead.value!!.occurrences.map { it.id }).containsExactly(1)
+
+    alarmsScheduler.removeAlarm(1)
+    assertThat(store.lookAhead.value!!.occurrences).isEmpty()
+  }
+
+  @Test
+  fun `Look-ahead is published once per batch`() {
+    alarmsScheduler.start()
+    val updates = store.lookAhead.test()
+
+    alarmsScheduler.batch {
+      (1..3).forEach { id ->
+        alarmsScheduler.setAlarm(
+            id,
+            CalendarType.NORMAL,
+            Calendar.getInstance().apply { add(Calendar.HOUR_OF_DAY, id) },
+            createTestAlarmValue(id))
+      }
+    }
+
+    // initial value and the batch
+    updates.assertValueCount(2)
+    assertThat(store.lookAhead.value!!.occurrences.map { it.id }).containsExactly(1, 2, 3)
+  }
+
+  private fun createTestAlarmValue(id: Int, label: String = id.toString()) =
+      AlarmValue(
+          id = id,
+          alarmtone = Alarmtone.Default,
+          daysOfWeek = DaysOfWeek(0),
+          hour = 12,
+          isEnabled = true,
+          isPrealarm = false,
+          isVibrate = false,
+          label = label,
+          minutes = 1,
+          nextTimeMillis = calendars.now().timeInMillis,
+          state = "")
+}
@@ -48,8 +48,7 @@ class AlarmsTest {
     instance
   }
   private val alarmsRepository = TestAlarmsRepository()
-  private val databaseQuery =
-      mockk<DatabaseQuery>(relaxed = true) { every { query() } returns emptyList() }
+  private val databaseQuery = mockk<DatabaseQuery>(relaxed = true)
 
   @Rule
   @JvmField
@@ -74,7 +73,7 @@ class AlarmsTest {
             PublishSubject.create())
   }
 
-  private fun createAlarms(): Alarms {
+  private fun createAlarms(start: Boolean = true): Alarms {
     val alarmsScheduler = AlarmsScheduler(alarmSetterMock, logger, store, prefs, calendars)
     val alarms =
         Alarms(
@@ -85,9 +84,12 @@ class AlarmsTest {
             stateNotifierMock,
             alarmsRepository,
             logger,
-            databaseQuery)
-    alarms.start()
-    alarmsScheduler.start()
+            databaseQuery,
+            DebugBuildFlags)
+    if (start) {
+      alarms.start()
+      alarmsScheduler.start()
+    }
     return alarms
   }
 
@@ -141,6 +143,87 @@ class AlarmsTest {
     }
   }
 
+  @Test
+  fun timeSetUpdatesRtcAlarmOnce() {
+    val instance = createAlarms()
+    listOf(5, 6, 7).forEach { hour ->
+      instance.createNewAlarm().edit { withIsEnabled(true).withHour(hour).copy(minutes = 30) }
+    }
+    assertThat(alarmSetterMock.calendar?.get(Calendar.HOUR_OF_DAY)).isEqualTo(5)
+    alarmSetterMock.rtcUpdates = 0
+
+    // when
+    currentHour = 6
+    instance.onTimeSet()
+
+    // verify
+    assertThat(alarmSetterMock.rtcUpdates).isEqualTo(1)
+    assertThat(alarmSetterMock.calendar?.get(Calendar.HOUR_OF_DAY)).isEqualTo(6)
+  }
+
+  @Test
+  fun prealarmDurationChangeReschedulesPrealarms() {
+    val instance = createAlarms()
+    instance.createNewAlarm().edit {
+      withIsEnabled(true).withHour(7).copy(minutes = 0, isPrealarm = true)
+    }
+
+    // when
+    prefs.preAlarmDuration.value = 10
+
+    // verify
+    assertThat(alarmSetterMock.calendar?.get(Calendar.HOUR_OF_DAY)).isEqualTo(6)
+    assertThat(alarmSetterMock.calendar?.get(Calendar.MINUTE)).isEqualTo(50)
+  }
+
+  @Test
+  fun startPublishesAllAlarmsAndNextAlarmOnce() {
+    listOf(5, 6, 7).forEach { hour ->
+      alarmsRepository.create().modify {
+        copy(isEnabled = true, hour = hour, daysOfWeek = DaysOfWeek(0x7f), state = "NormalSetState")
+      }
+    }
+    val alarmsScheduler = AlarmsScheduler(alarmSetterMock, logger, store, prefs, calendars)
+    alarmsScheduler.start()
+    val changes = store.alarmChanges().test()
+    val nextUpdates = store.next().skip(1).test()
+
+    // when
+    Alarms(
+            prefs,
+            store,
+            calendars,
+            alarmsScheduler,
+            stateNotifierMock,
+            alarmsRepository,
+            logger,
+            databaseQuery,
+            DebugBuildFlags)
+        .start()
+
+    // verify
+    changes.assertValueCount(2)
+    assertThat(changes.values().last().added.map { it.hour }).containsExactly(5, 6, 7)
+    nextUpdates.assertValueCount(1)
+    assertThat(alarmSetterMock.calendar?.get(Calendar.HOUR_OF_DAY)).isEqualTo(5)
+  }
+
+  @Test
+  fun createAllPublishesAllAlarmsOnce() {
+    val instance: IAlarmsManager = createAlarms()
+    val changes = store.alarmChanges().test()
+
+    // when
+    val created =
+        instance.createAll(
+            (0 until 100).map { AlarmValue(hour = it % 24, label = "Provisioned $it") })
+
+    // verify
+    assertThat(created.map { it.id }).isEqualTo((0 until 100).toList())
+    changes.assertValueCount(2)
+    assertThat(changes.values().last().added).hasSize(100)
+  }
+
   @Test
   fun alarmsFromMemoryMustBePresentInTheList() {
     // given
@@ -418,6 +501,42 @@ class AlarmsTest {
             ))
   }
 
+  @Test
+  fun `alarm created before start is not restored again`() {
+    alarmsRepository.initialized = false
+    val alarms = createAlarms(start = false)
+    val alarm = alarms.createNewAlarm()
+
+    // when
+    alarms.start()
+    alarm.enable(true)
+
+    // verify
+    assertThat(alarms.getAlarm(alarm.id)).isSameAs(alarm)
+    assertThat(store.alarms().test().values().first().map { it.id to it.isEnabled })
+        .containsExactly(0 to true)
+  }
+
+  @Test
+  fun `alarms created together before start are not restored again`() {
+    alarmsRepository.initialized = false
+    val alarms = createAlarms(start = false)
+    val created =
+        alarms.createAll(
+            listOf(
+                AlarmValue(hour = 8, minutes = 30),
+                AlarmValue(hour = 9, minutes = 0, daysOfWeek = DaysOfWeek(31)),
+            ))
+
+    // when
+    alarms.start()
+
+    // verify
+    created.forEach { alarm -> assertThat(alarms.getAlarm(alarm.id)).isSameAs(alarm) }
+    assertThat(store.alarms().test().values().first().map { it.id to it.hour })
+        .containsExactly(0 to 8, 1 to 9)
+  }
+
   @Test
   fun `when repository is not initialized and database contains alarms then alarms are migrated`() {
     alarmsRepository.initialized = false
@@ -427,15 +546,16 @@ class AlarmsTest {
             AlarmValue(id = 1, hour = 9, minutes = 0, daysOfWeek = DaysOfWeek(31)),
             AlarmValue(id = 2, hour = 10, minutes = 30, isEnabled = true),
         )
-    every { databaseQuery.query() } returns alarmsInDatabase
+    every { databaseQuery.forEach(any(), any()) } answers
+        {
+          alarmsInDatabase.forEach(secondArg<(AlarmValue) -> Unit>())
+        }
 
     // when
     createAlarms()
 
     // verify
     assertThat(store.alarms().test().values().first()).containsAll(alarmsInDatabase)
-    verify { databaseQuery.delete(0) }
-    verify { databaseQuery.delete(1) }
-    verify { databaseQuery.delete(2) }
+    verify(exactly = 1) { databaseQuery.deleteAll(listOf(0, 1, 2)) }
   }
 }
@@ -0,0 +1,140 @@
+package com.better.alarm
+
+import com.better.alarm.services.Event
+import com.better.alarm.services.EventPipeline
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+
+class EventPipelineTest {
+  private var now = 0L
+  private val pipeline = EventPipeline(capacity = 4, nanoTime = { now })
+  private val delivered =
+      mutableListOf<Event>().also { list -> pipeline.events().subscribe { list.add(it) } }
+
+  @Test
+  fun `events are delivered right away if the pipeline is not held`() {
+    pipeline.offer(Event.AlarmEvent(1))
+    pipeline.offer(Event.AlarmEvent(1))
+
+    assertThat(delivered).containsExactly(Event.AlarmEvent(1), Event.AlarmEvent(1))
+  }
+
+  @Test
+  fun `show and hide skip for the same id collapse to the latest`() {
+    pipeline.batch {
+      pipeline.offer(Event.ShowSkip(1))
+      pipeline.offer(Event.ShowSkip(2))
+      pipeline.offer(Event.HideSkip(1))
+      pipeline.offer(Event.ShowSkip(1))
+    }
+
+    assertThat(delivered).containsExactly(Event.ShowSkip(2), Event.ShowSkip(1))
+    assertThat(pipeline.stats()["ShowSkip"]?.conflated).isEqualTo(1)
+    assertThat(pipeline.stats()["HideSkip"]?.conflated).isEqualTo(1)
+  }
+
+  @Test
+  fun `only the latest mute or demute is delivered`() {
+    pipeline.batch {
+      pipeline.offer(Event.MuteEvent())
+      pipeline.offer(Event.DismissEvent(1))
+      pipeline.offer(Event.DemuteEvent())
+      pipeline.offer(Event.MuteEvent())
+    }
+
+    assertThat(delivered).containsExactly(Event.DismissEvent(1), Event.MuteEvent())
+  }
+
+  @Test
+  fun `repeated events are queued once`() {
+    pipeline.batch {
+      pipeline.offer(Event.DismissEvent(1))
+      pipeline.offer(Event.DismissEvent(1))
+      pipeline.offer(Event.AlarmEvent(1))
+      pipeline.offer(Event.DismissEvent(1))
+    }
+
+    assertThat(delivered)
+        .containsExactly(Event.DismissEvent(1), Event.AlarmEvent(1), Event.DismissEvent(1))
+  }
+
+  @Test
+  fun `full queue of a held pipeline is delivered`() {
+    pipeline.batch {
+      repeat(5) { pipeline.offer(Event.AlarmEvent(it)) }
+      assertThat(delivered).hasSize(5)
+      pipeline.offer(Event.AlarmEvent(5))
+    }
+
+    assertThat(delivered).containsExactly(*Array(6) { Event.AlarmEvent(it) })
+  }
+
+  @Test
+  fun `events offered by consumers grow a full queue`() {
+    pipeline
+        .events()
+        .filter { it is Event.AlarmEvent }
+        .subscribe { repeat(5) { pipeline.offer(Event.CancelSnoozedEvent(it)) } }
+
+    pipeline.offer(Event.AlarmEvent(0))
+
+    assertThat(delivered)
+        .containsExactly(Event.AlarmEvent(0), *Array(5) { Event.CancelSnoozedEvent(it) })
+    assertThat(pipeline.stats()["CancelSnoozedEvent"]?.overflowed).isEqualTo(1)
+  }
+
+  @Test
+  fun `latest skip and mute states are delivered from a full queue`() {
+    pipeline
+        .events()
+        .filter { it == Event.AlarmEvent(0) }
+        .subscribe {
+          pipeline.offer(Event.ShowSkip(1))
+          pipeline.offer(Event.MuteEvent())
+          pipeline.offer(Event.DismissEvent(1))
+          pipeline.offer(Event.AlarmEvent(2))
+          pipeline.offer(Event.HideSkip(1))
+          pipeline.offer(Event.CancelSnoozedEvent(3))
+          pipeline.offer(Event.DemuteEvent())
+        }
+
+    pipeline.offer(Event.AlarmEvent(0))
+
+    assertThat(delivered)
+        .containsExactly(
+            Event.AlarmEvent(0),
+            Event.DismissEvent(1),
+            Event.AlarmEvent(2),
+            Event.HideSkip(1),
+            Event.CancelSnoozedEvent(3),
+            Event.DemuteEvent())
+    assertThat(pipeline.stats()["CancelSnoozedEvent"]?.overflowed).isEqualTo(1)
+  }
+
+  @Test
+  fun `throughput and queue wait are counted per event type`() {
+    pipeline.batch {
+      pipeline.offer(Event.DismissEvent(1))
+      now += 100
+      pipeline.offer(Event.DismissEvent(2))
+      now += 100
+    }
+    pipeline.offer(Event.AlarmEvent(1))
+
+    assertThat(pipeline.stats()["DismissEvent"])
+        .isEqualTo(
+            EventPipeline.EventStats(
+                offered = 2,
+                delivered = 2,
+                conflated = 0,
+                overflowed = 0,
+                meanWaitNanos = 150,
+                maxWaitNanos = 200))
+    assertThat(pipeline.dump().lines())
+        .containsExactly(
+            "event,offered,delivered,conflated,overflowed,meanWaitNanos,maxWaitNanos",
+            "DismissEvent,2,2,0,0,150,200",
+            "AlarmEvent,1,1,0,0,0,0",
+            "")
+  }
+}
@@ -0,0 +1,90 @@
+package com.better.alarm
+
+import com.better.alarm.domain.InexactAlarmsTimer
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+
+class InexactAlarmsTimerTest {
+  private val armed = mutableListOf<Long>()
+  private var cancelled = 0
+  private val timer = InexactAlarmsTimer(arm = { armed.add(it) }, cancel = { cancelled++ })
+
+  @Test
+  fun `only the earliest deadline is armed`() {
+    timer.set(1, 300)
+    timer.set(2, 200)
+    timer.set(3, 400)
+    timer.set(4, 100)
+
+    assertThat(armed).containsExactly(300L, 200L, 100L)
+    assertThat(timer.armedMillis).isEqualTo(100)
+  }
+
+  @Test
+  fun `setting the same deadline again does not re-arm`() {
+    timer.set(1, 100)
+    timer.set(1, 100)
+    timer.set(2, 200)
+
+    assertThat(armed).containsExactly(100L)
+    assertThat(timer.size).isEqualTo(2)
+  }
+
+  @Test
+  fun `rescheduling replaces the previous deadline`() {
+    timer.set(1, 100)
+    timer.set(2, 200)
+    timer.set(1, 300)
+
+    assertThat(armed).containsExactly(100L, 200L)
+    assertThat(timer.size).isEqualTo(2)
+    assertThat(timer.pollDue(250)).containsExactly(2)
+    assertThat(timer.armedMillis).isEqualTo(300)
+  }
+
+  @Test
+  fun `removing the last deadline cancels the alarm`() {
+    timer.set(1, 100)
+    timer.set(2, 200)
+    timer.remove(1)
+    timer.remove(2)
+
+    assertThat(armed).containsExactly(100L, 200L)
+    assertThat(cancelled).isEqualTo(1)
+    assertThat(timer.armedMillis).isNull()
+  }
+
+  @Test
+  fun `all due ids are polled in order of deadlines and next one is armed`() {
+    timer.set(1, 300)
+    timer.set(2, 100)
+    timer.set(3, 100)
+    timer.set(4, 500)
+    armed.clear()
+
+    assertThat(timer.pollDue(300)).containsExactly(2, 3, 1)
+    assertThat(armed).containsExactly(500L)
+    assertThat(timer.size).isEqualTo(1)
+  }
+
+  @Test
+  fun `polling the last deadline does not cancel the fired alarm`() {
+    timer.set(1, 100)
+
+    assertThat(timer.pollDue(100)).containsExactly(1)
+    assertThat(timer.pollDue(100)).isEmpty()
+    assertThat(cancelled).isEqualTo(0)
+    assertThat(timer.armedMillis).isNull()
+  }
+
+  @Test
+  fun `same deadline is armed again after it has fired`() {
+    timer.set(1, 100)
+    timer.set(2, 200)
+    assertThat(timer.pollDue(150)).containsExactly(1)
+    timer.set(1, 200)
+
+    assertThat(armed).containsExactly(100L, 200L)
+    assertThat(timer.pollDue(200)).containsExactly(1, 2)
+  }
+}
@@ -0,0 +1,252 @@
+package com.better.alarm
+
+import com.better.alarm.data.DaysOfWeek
+import com.better.alarm.domain.NextOccurrenceCalculator
+import com.better.alarm.domain.NextOccurrenceCalculator.NO_DATE
+import java.text.SimpleDateFormat
+import java.util.Calendar
+import java.util.Locale
+import java.util.TimeZone
+import java.util.concurrent.TimeUnit
+import kotlin.math.abs
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.fail
+import org.junit.Test
+
+/**
+ * Differential test of [NextOccurrenceCalculator] against the [Calendar] arithmetic which was used
+ * in [com.better.alarm.domain.AlarmCore] before.
+ *
+ * Results must be the same, except around DST transitions, where [Calendar.add] keeps the time of
+ * day shifted by a gap or the offset of an overlap when moving to the next day. There the time of
+ * the alarm must be the requested one.
+ */
+class NextOccurrenceCalculatorTest {
+  private val zones =
+      listOf(
+              "UTC",
+              "Europe/Berlin",
+              "America/New_York",
+              "America/St_Johns",
+              "Australia/Lord_Howe",
+              "Pacific/Chatham",
+              "America/Santiago",
+          )
+          .map { TimeZone.getTimeZone(it) }
+
+  private val masks = listOf(0, 0x01, 0x1f, 0x60, 0x7f, 0x2a)
+  private val prealarmDurations = listOf(30, 90)
+
+  @Test
+  fun `next time is the same as with Calendar`() {
+    forEachCase { zone, now, hour, minutes ->
+      masks.forEach { mask ->
+        val expected = referenceNextTime(hour, minutes, mask, NO_DATE, zone, now).timeInMillis
+        val actual = NextOccurrenceCalculator.nextTime(hour, minutes, mask, NO_DATE, zone, now)
+        assertSameOrShiftedByDst(expected, actual, zone, now) { "$hour:$minutes $mask" }
+        if (actual < now) fail("${format(actual, zone)} is in the past")
+        assertTimeOfDay(actual, hour, minutes, zone)
+      }
+    }
+  }
+
+  @Test
+  fun `next time with date is the same as with Calendar`() {
+    forEachCase { zone, now, hour, minutes ->
+      (0..2).forEach { days ->
+        val date = now + TimeUnit.DAYS.toMillis(days.toLong())
+        val expected = referenceNextTime(hour, minutes, 0, date, zone, now).timeInMillis
+        val actual = NextOccurrenceCalculator.nextTime(hour, minutes, 0, date, zone, now)
+        if (actual != expected) {
+          assertThat(format(actual, zone)).isEqualTo(format(expected, zone))
+        }
+      }
+    }
+  }
+
+  @Test
+  fun `next prealarm time is the same as with Calendar`() {
+    forEachCase { zone, now, hour, minutes ->
+      masks.forEach { mask ->
+        prealarmDurations.forEach { prealarm ->
+          // the alarm is checked above, the prealarm is computed from the same alarm
+          val alarm = NextOccurrenceCalculator.nextTime(hour, minutes, mask, NO_DATE, zone, now)
+          val expected = referenceNextPrealarmTime(alarm, mask, prealarm, zone, now).timeInMillis
+          val actual =
+              NextOccurrenceCalculator.nextPrealarmTime(
+                  hour, minutes, mask, NO_DATE, prealarm, zone, now)
+          assertSameOrShiftedByDst(expected, actual, zone, now) {
+            "$hour:$minutes $mask -$prealarm"
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  fun `next time after skip is the same as with Calendar`() {
+    forEachCase { zone, now, hour, minutes ->
+      masks.forEach { mask ->
+        val expected = referenceNextTimeAfterSkip(hour, minutes, mask, zone, now).timeInMillis
+        val actual =
+            NextOccurrenceCalculator.nextTimeAfterSkip(hour, minutes, mask, NO_DATE, zone, now)
+        assertSameOrShiftedByDst(expected, actual, zone, now) { "$hour:$minutes $mask skipped" }
+        if (actual <= NextOccurrenceCalculator.nextTime(hour, minutes, mask, NO_DATE, zone, now)) {
+          fail("${format(actual, zone)} is not after the skipped alarm")
+        }
+        assertTimeOfDay(actual, hour, minutes, zone)
+      }
+    }
+  }
+
+  @Test
+  fun `gap is skipped and the later instant is used in an overlap`() {
+    val berlin = TimeZone.getTimeZone("Europe/Berlin")
+    val calendar = Calendar.getInstance(berlin).apply { clear() }
+    // clocks jump from 02:00 to 03:00
+    calendar.set(2024, Calendar.MARCH, 31, 1, 0)
+    val beforeGap = calendar.timeInMillis
+    assertThat(NextOccurrenceCalculator.nextTime(2, 30, 0, NO_DATE, berlin, beforeGap))
+        .isEqualTo(beforeGap + TimeUnit.MINUTES.toMillis(90))
+    // on the next day 02:30 exists again
+    val afterGap = beforeGap + TimeUnit.HOURS.toMillis(3)
+    assertThat(NextOccurrenceCalculator.nextTime(2, 30, 0, NO_DATE, berlin, afterGap))
+        .isEqualTo(beforeGap + TimeUnit.HOURS.toMillis(24 + 1) - TimeUnit.MINUTES.toMillis(30))
+    // clocks go back from 03:00 to 02:00
+    calendar.set(2024, Calendar.OCTOBER, 27, 1, 0)
+    val beforeOverlap = calendar.timeInMillis
+    assertThat(NextOccurrenceCalculator.nextTime(2, 30, 0, NO_DATE, berlin, beforeOverlap))
+        .isEqualTo(beforeOverlap + TimeUnit.MINUTES.toMillis(150))
+  }
+
+  /**
+   * Sweeps through a year in every zone with times around DST transitions and invokes [block] for
+   * every hour and some minutes.
+   */
+  private fun forEachCase(block: (zone: TimeZone, now: Long, hour: Int, minutes: Int) -> Unit) {
+    val start =
+        Calendar.getInstance(TimeZone.getTimeZone("UTC")).apply {
+          clear()
+          set(2024, 0, 1)
+        }
+    val yearStart = start.timeInMillis
+    val yearEnd = yearStart + TimeUnit.DAYS.toMillis(366)
+    zones.forEach { zone ->
+      val transitions =
+          (yearStart until yearEnd step TimeUnit.HOURS.toMillis(1)).filter {
+            zone.getOffset(it) != zone.getOffset(it + TimeUnit.HOURS.toMillis(1))
+          }
+      val aroundTransitions =
+          transitions.flatMap { transition ->
+            (-2 * 24 * 2..2 * 24 * 2).map { transition + it * TimeUnit.MINUTES.toMillis(30) }
+          }
+      val sweep = (yearStart until yearEnd step TimeUnit.MINUTES.toMillis(11 * 60 + 37)).toList()
+      (sweep + aroundTransitions).forEach { now ->
+        (0..23).forEach { hour ->
+          listOf(0, 59).forEach { minutes -> block(zone, now, hour, minutes) }
+        }
+      }
+    }
+  }
+
+  /**
+   * [actual] may only differ from [expected] if a DST transition lies between the day of [now] and
+   * [actual], and only by the change of the offset. Depending on how [Calendar] resolves a time in
+   * a gap, the reference is earlier or later.
+   */
+  private fun assertSameOrShiftedByDst(
+      expected: Long,
+      actual: Long,
+      zone: TimeZone,
+      now: Long,
+      description: () -> String
+  ) {
+    if (expected == actual) return
+    val startOfDay = now - (now + zone.getOffset(now)).mod(DAY)
+    val shift = abs(zone.getOffset(actual) - zone.getOffset(startOfDay))
+    if (shift == 0 || abs(actual - expected) != shift.toLong()) {
+      fail(
+          "${description()} in ${zone.id}: expected ${format(expected, zone)}, " +
+              "actual ${format(actual, zone)}")
+    }
+  }
+
+  /** Time of day must be the requested one, unless it does not exist on this day. */
+  private fun assertTimeOfDay(millis: Long, hour: Int, minutes: Int, zone: TimeZone) {
+    val timeOfDay = (millis + zone.getOffset(millis)).mod(DAY)
+    val isInGap = zone.getOffset(millis - DAY) < zone.getOffset(millis + DAY)
+    if (!isInGap && timeOfDay != TimeUnit.MINUTES.toMillis(hour * 60L + minutes)) {
+      fail("${format(millis, zone)} is not $hour:$minutes")
+    }
+  }
+
+  private fun format(millis: Long, zone: TimeZone): String {
+    return SimpleDateFormat("EEE yyyy-MM-dd HH:mm z", Locale.US)
+        .apply { timeZone = zone }
+        .format(millis)
+  }
+
+  private fun referenceNextTime(
+      hour: Int,
+      minutes: Int,
+      daysOfWeek: Int,
+      date: Long,
+      zone: TimeZone,
+      now: Long
+  ): Calendar {
+    return Calendar.getInstance(zone).apply {
+      timeInMillis = if (date != NO_DATE) date else now
+      set(Calendar.HOUR_OF_DAY, hour)
+      set(Calendar.MINUTE, minutes)
+      set(Calendar.SECOND, 0)
+      set(Calendar.MILLISECOND, 0)
+      if (date == NO_DATE) {
+        advanceCalendar(daysOfWeek, now)
+      }
+    }
+  }
+
+  private fun referenceNextPrealarmTime(
+      alarm: Long,
+      daysOfWeek: Int,
+      prealarm: Int,
+      zone: TimeZone,
+      now: Long
+  ): Calendar {
+    return Calendar.getInstance(zone).apply {
+      timeInMillis = alarm
+      add(Calendar.MINUTE, -1 * prealarm)
+      advanceCalendar(daysOfWeek, now)
+    }
+  }
+
+  private fun referenceNextTimeAfterSkip(
+      hour: Int,
+      minutes: Int,
+      daysOfWeek: Int,
+      zone: TimeZone,
+      now: Long
+  ): Calendar {
+    return referenceNextTime(hour, minutes, daysOfWeek, NO_DATE, zone, now).apply {
+      add(Calendar.DAY_OF_YEAR, 1)
+      val addDays = DaysOfWeek(daysOfWeek).getNextAlarm(this)
+      if (addDays > 0) {
+        add(Calendar.DAY_OF_WEEK, addDays)
+      }
+    }
+  }
+
+  private fun Calendar.advanceCalendar(daysOfWeek: Int, now: Long) {
+    if (timeInMillis < now) {
+      add(Calendar.DAY_OF_YEAR, 1)
+    }
+    val addDays = DaysOfWeek(daysOfWeek).getNextAlarm(this)
+    if (addDays > 0) {
+      add(Calendar.DAY_OF_WEEK, addDays)
+    }
+  }
+
+  companion object {
+    private val DAY = TimeUnit.DAYS.toMillis(1)
+  }
+}
@@ -0,0 +1,8 @@
+package com.better.alarm
+
+import com.better.alarm.platform.BuildFlags
+
+/** Tests run with the flags of debug builds, same as the unit tests of the app. */
+object DebugBuildFlags : BuildFlags {
+  override val isDebug: Boolean = true
+}
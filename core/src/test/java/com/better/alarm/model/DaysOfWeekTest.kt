@@ -0,0 +1,123 @@
+package com.better.alarm.model
+
+import com.better.alarm.data.DaysOfWeek
+import com.better.alarm.platform.StringResources
+import java.text.DateFormatSymbols
+import java.util.Calendar
+import java.util.Locale
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+
+class DaysOfWeekTest {
+  private val strings =
+      object : StringResources {
+        override val never = "Never"
+        override val everyDay = "Every day"
+        override val dayConcat = ", "
+      }
+
+  @Test
+  fun `toString property prints`() {
+    Locale.setDefault(Locale.ENGLISH)
+    assertThat(DaysOfWeek(1 shl 0).toString(strings, false)).isEqualTo("Monday")
+    assertThat(DaysOfWeek(1 shl 1).toString(strings, false)).isEqualTo("Tuesday")
+    assertThat(DaysOfWeek(1 shl 2).toString(strings, false)).isEqualTo("Wednesday")
+    assertThat(DaysOfWeek(1 shl 3).toString(strings, false)).isEqualTo("Thursday")
+    assertThat(DaysOfWeek(1 shl 4).toString(strings, false)).isEqualTo("Friday")
+    assertThat(DaysOfWeek(1 shl 5).toString(strings, false)).isEqualTo("Saturday")
+    assertThat(DaysOfWeek(1 shl 6).toString(strings, false)).isEqualTo("Sunday")
+  }
+
+  @Test
+  fun `toString property prints many days`() {
+    Locale.setDefault(Locale.ENGLISH)
+    assertThat(DaysOfWeek((1 shl 0) or (1 shl 1)).toString(strings, false)).isEqualTo("Mon, Tue")
+    assertThat(
+            DaysOfWeek(arrayOf(0, 1, 2, 3, 4).fold(0) { acc, day -> acc or (1 shl day) })
+                .toString(strings, false))
+        .isEqualTo("Mon, Tue, Wed, Thu, Fri")
+    assertThat(
+            DaysOfWeek(arrayOf(5, 6).fold(0) { acc, day -> acc or (1 shl day) })
+                .toString(strings, false))
+        .isEqualTo("Sat, Sun")
+  }
+
+  @Test
+  fun `next alarm table is the same as iterating over days`() {
+    for (coded in 0..0x7f) {
+      for (todayIndex in 0..6) {
+        val expected =
+            (0..6).firstOrNull { dayCount -> coded and (1 shl (todayIndex + dayCount) % 7) > 0 }
+                ?: -1
+        assertThat(DaysOfWeek.getNextAlarm(coded, todayIndex))
+            .describedAs("coded: $coded, today: $todayIndex")
+            .isEqualTo(expected)
+      }
+    }
+  }
+
+  @Test
+  fun `next alarm uses the day of week of the calendar`() {
+    val calendar = Calendar.getInstance().apply { set(2024, Calendar.JANUARY, 1) } // Monday
+    for (coded in 0..0x7f) {
+      for (todayIndex in 0..6) {
+        assertThat(DaysOfWeek(coded).getNextAlarm(calendar))
+            .isEqualTo(DaysOfWeek.getNextAlarm(coded, todayIndex))
+        calendar.add(Calendar.DAY_OF_YEAR, 1)
+      }
+    }
+  }
+
+  @Test
+  fun `cached labels are the same as rendered ones`() {
+    listOf(Locale.ENGLISH, Locale.GERMAN, Locale.FRENCH).forEach { locale ->
+      Locale.setDefault(locale)
+      for (coded in 0..0x7f) {
+        // second call is served from the cache
+        repeat(2) {
+          assertThat(DaysOfWeek(coded).toString(strings, false))
+              .describedAs("coded: $coded, locale: $locale")
+              .isEqualTo(render(coded))
+        }
+      }
+    }
+    Locale.setDefault(Locale.ENGLISH)
+  }
+
+  @Test
+  fun `labels are updated when locale changes`() {
+    Locale.setDefault(Locale.ENGLISH)
+    assertThat(DaysOfWeek(1 shl 0).toString(strings, false)).isEqualTo("Monday")
+    Locale.setDefault(Locale.GERMAN)
+    assertThat(DaysOfWeek(1 shl 0).toString(strings, false)).isEqualTo("Montag")
+    Locale.setDefault(Locale.ENGLISH)
+    assertThat(DaysOfWeek(1 shl 0).toString(strings, false)).isEqualTo("Monday")
+  }
+
+  @Test
+  fun `never is shown only if requested`() {
+    assertThat(DaysOfWeek(0).toString(strings, true)).isEqualTo("Never")
+    assertThat(DaysOfWeek(0).toString(strings, false)).isEmpty()
+  }
+
+  /** Renders labels the same way as before they were cached. */
+  private fun render(coded: Int): String {
+    val days = (0..6).filter { coded and (1 shl it) > 0 }
+    val dayStrings =
+        if (days.size > 1) DateFormatSymbols().shortWeekdays else DateFormatSymbols().weekdays
+    val calendarDays =
+        intArrayOf(
+            Calendar.MONDAY,
+            Calendar.TUESDAY,
+            Calendar.WEDNESDAY,
+            Calendar.THURSDAY,
+            Calendar.FRIDAY,
+            Calendar.SATURDAY,
+            Calendar.SUNDAY)
+    return when (coded) {
+      0 -> ""
+      0x7f -> "Every day"
+      else -> days.joinToString(", ") { dayStrings[calendarDays[it]] }
+    }
+  }
+}
@@ -0,0 +1,199 @@
+package com.better.alarm.model
+
+import com.better.alarm.data.AlarmValue
+import com.better.alarm.data.AlarmValues
+import com.better.alarm.data.Alarmtone
+import com.better.alarm.data.DaysOfWeek
+import com.better.alarm.data.LazyAlarmValues
+import java.util.Calendar
+import kotlinx.serialization.ExperimentalSerializationApi
+import kotlinx.serialization.Serializable
+import kotlinx.serialization.decodeFromByteArray
+import kotlinx.serialization.encodeToByteArray
+import kotlinx.serialization.protobuf.ProtoBuf
+import kotlinx.serialization.protobuf.schema.ProtoBufSchemaGenerator
+import org.assertj.core.api.KotlinAssertions.assertThat
+import org.junit.Test
+
+class ProtobufTest {
+  @OptIn(ExperimentalSerializationApi::class)
+  @Test
+  fun `proto2 schema matches expectations`() {
+    assertThat(ProtoBufSchemaGenerator.generateSchemaText(AlarmValues.serializer().descriptor))
+        .isEqualTo(
+            """syntax = "proto2";
+
+
+// serial name 'com.better.alarm.data.AlarmValues'
+message AlarmValues {
+  // WARNING: a default value decoded when value is missing
+  map<int32, AlarmValue> alarms = 1;
+}
+
+// serial name 'com.better.alarm.data.AlarmValue'
+message AlarmValue {
+  // WARNING: a default value decoded when value is missing
+  optional int64 nextTime = 1;
+  // WARNING: a default value decoded when value is missing
+  optional string state = 2;
+  // WARNING: a default value decoded when value is missing
+  optional int32 id = 3;
+  // WARNING: a default value decoded when value is missing
+  optional bool isEnabled = 4;
+  // WARNING: a default value decoded when value is missing
+  optional int32 hour = 5;
+  // WARNING: a default value decoded when value is missing
+  optional int32 minutes = 6;
+  // WARNING: a default value decoded when value is missing
+  optional bool isPrealarm = 7;
+  // WARNING: a default value decoded when value is missing
+  optional Alarmtone alarmtone = 8;
+  // WARNING: a default value decoded when value is missing
+  optional bool isVibrate = 9;
+  // WARNING: a default value decoded when value is missing
+  optional string label = 10;
+  // WARNING: a default value decoded when value is missing
+  optional DaysOfWeek daysOfWeek = 11;
+  // WARNING: a default value decoded when value is missing
+  optional bool isDeleteAfterDismiss = 12;
+  // WARNING: a default value decoded when value is missing
+  optional int64 date = 13;
+}
+
+// serial name 'com.better.alarm.data.Alarmtone'
+message Alarmtone {
+  required string type = 1;
+  // decoded as message with one of these types:
+  //   message Default, serial name 'Default'
+  //   message Silent, serial name 'Silent'
+  //   message Sound, serial name 'Sound'
+  //   message SystemDefault, serial name 'SystemDefault'
+  required bytes value = 2;
+}
+
+// serial name 'com.better.alarm.data.DaysOfWeek'
+message DaysOfWeek {
+  required int32 coded = 1;
+}
+
+message Default {
+}
+
+message Silent {
+}
+
+message Sound {
+  required string uriString = 1;
+}
+
+message SystemDefault {
+}
+""")
+  }
+
+  /** Layout of the [AlarmValue] when it had [Calendar] fields */
+  @Serializable
+  private data class CalendarAlarmValue(
+      val nextTime: Long = 0,
+      val state: String = "DisabledState",
+      val id: Int = -1,
+      val isEnabled: Boolean = false,
+      val hour: Int = 0,
+      val minutes: Int = 0,
+      val isPrealarm: Boolean = false,
+      val alarmtone: Alarmtone = Alarmtone.Default,
+      val isVibrate: Boolean = true,
+      val label: String = "",
+      val daysOfWeek: DaysOfWeek = DaysOfWeek(0),
+      val isDeleteAfterDismiss: Boolean = false,
+      val date: Long? = null,
+  )
+
+  @OptIn(ExperimentalSerializationApi::class)
+  @Test
+  fun `values stored with calendars are decoded`() {
+    val date = Calendar.getInstance().apply { set(2024, Calendar.MARCH, 31, 7, 30) }
+    val stored =
+        CalendarAlarmValue(
+            nextTime = 1_700_000_000_000,
+            state = "NormalSetState",
+            id = 7,
+            hour = 7,
+            minutes = 30,
+            alarmtone = Alarmtone.Sound("content://sound"),
+            label = "Work",
+            date = date.timeInMillis)
+
+    val decoded = ProtoBuf.decodeFromByteArray<AlarmValue>(ProtoBuf.encodeToByteArray(stored))
+
+    assertThat(decoded.nextTimeMillis).isEqualTo(1_700_000_000_000)
+    assertThat(decoded.date?.get(Calendar.YEAR)).isEqualTo(2024)
+    assertThat(decoded.date?.get(Calendar.MONTH)).isEqualTo(Calendar.MARCH)
+    assertThat(decoded.date?.get(Calendar.DAY_OF_MONTH)).isEqualTo(31)
+    assertThat(decoded.copy(dateEpochDay = AlarmValue.NO_DATE))
+        .isEqualTo(
+            AlarmValue(
+                nextTimeMillis = 1_700_000_000_000,
+                state = "NormalSetState",
+                id = 7,
+                hour = 7,
+                minutes = 30,
+                alarmtone = Alarmtone.Sound("content://sound"),
+                label = "Work"))
+  }
+
+  @OptIn(ExperimentalSerializationApi::class)
+  @Test
+  fun `values are stored as with calendars`() {
+    val value = AlarmValue(nextTimeMillis = 1_700_000_000_000, id = 3, label = "Gym")
+
+    assertThat(ProtoBuf.encodeToByteArray(value))
+        .isEqualTo(
+            ProtoBuf.encodeToByteArray(
+                CalendarAlarmValue(nextTime = 1_700_000_000_000, id = 3, label = "Gym")))
+
+    val withDate = value.copy(dateEpochDay = 19_813)
+    val stored =
+        ProtoBuf.decodeFromByteArray<CalendarAlarmValue>(ProtoBuf.encodeToByteArray(withDate))
+    assertThat(AlarmValue.epochDayOf(requireNotNull(stored.date))).isEqualTo(19_813)
+  }
+
+  @OptIn(ExperimentalSerializationApi::class)
+  @Test
+  fun `decoded labels and ringtones are shared`() {
+    val bytes =
+        ProtoBuf.encodeToByteArray(
+            AlarmValue(label = "Work", alarmtone = Alarmtone.Sound("content://sound")))
+
+    val first = ProtoBuf.decodeFromByteArray<AlarmValue>(bytes)
+    val second = ProtoBuf.decodeFromByteArray<AlarmValue>(bytes)
+
+    assertThat(second.label).isSameAs(first.label)
+    assertThat(second.alarmtone).isSameAs(first.alarmtone)
+  }
+
+  @OptIn(ExperimentalSerializationApi::class)
+  @Test
+  fun `lazily decoded values are equal to decoded values`() {
+    val values =
+        AlarmValues(
+            (0..40).associateWith { id ->
+              AlarmValue(
+                  id = id,
+                  nextTimeMillis = 1_700_000_000_000 + id,
+                  isEnabled = id % 2 == 0,
+                  hour = id % 24,
+                  label = "Alarm $id",
+                  alarmtone = if (id == 0) Alarmtone.Silent else Alarmtone.Sound("content://$id"),
+                  daysOfWeek = DaysOfWeek(id % 128))
+            })
+    val bytes = ProtoBuf.encodeToByteArray(values)
+
+    val lazy = LazyAlarmValues(bytes)
+
+    assertThat(lazy.size).isEqualTo(41)
+    assertThat(lazy[0]).isEqualTo(values.alarms[0])
+    assertThat(lazy[41]).isNull()
+    assertThat(lazy).isEqualTo(values.alarms)
+  }
+}
@@ -104,6 +104,7 @@ class DataStoreAlarmsRepositoryTest {
           datastoreDir = datastoreDir,
           logger = logger(),
           ioScope = scope,
+          mainThread = { true },
       )
 }
 
@@ -0,0 +1,25 @@
+package com.better.alarm.persistence
+
+import com.better.alarm.data.IdAllocator
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+
+class IdAllocatorTest {
+  @Test
+  fun `lowest free ids are allocated`() {
+    val ids = IdAllocator(listOf(0, 1, 3, 64))
+
+    assertThat(List(4) { ids.allocate() }).containsExactly(2, 4, 5, 6)
+  }
+
+  @Test
+  fun `released id is allocated again`() {
+    val ids = IdAllocator()
+    repeat(200) { ids.allocate() }
+
+    ids.release(130)
+    ids.release(7)
+
+    assertThat(List(3) { ids.allocate() }).containsExactly(7, 130, 200)
+  }
+}
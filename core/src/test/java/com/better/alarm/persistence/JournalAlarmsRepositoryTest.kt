@@ -0,0 +1,301 @@
+package com.better.alarm.persistence
+
+import com.better.alarm.data.AlarmRecords
+import com.better.alarm.data.AlarmValue
+import com.better.alarm.data.AlarmValues
+import com.better.alarm.data.AlarmsJournal
+import com.better.alarm.data.AlarmsRepository
+import com.better.alarm.data.Alarmtone
+import com.better.alarm.data.DaysOfWeek
+import com.better.alarm.data.JournalAlarmsRepository
+import com.better.alarm.data.modify
+import com.better.alarm.logger.Logger
+import java.io.IOException
+import kotlinx.coroutines.CoroutineName
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.job
+import kotlinx.coroutines.runBlocking
+import kotlinx.serialization.protobuf.ProtoBuf
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.assertj.core.util.Files
+import org.junit.Test
+
+class JournalAlarmsRepositoryTest {
+  private val datastoreDir = Files.newTemporaryFolder().apply { deleteOnExit() }
+  private val logger = Logger.create()
+
+  @Test
+  fun `changes are written to the journal`() =
+      runBlocking<Unit> {
+        val scope = CoroutineScope(Dispatchers.IO)
+        val firstRepository = createBlocking(scope)
+        val alarmStore = firstRepository.create()
+        firstRepository.create().delete()
+        // when
+        alarmStore.modify { copy(hour = 20) }
+        alarmStore.modify { copy(minutes = 30) }
+        firstRepository.awaitStored()
+        cancelAndJoin(scope)
+
+        // then
+        createBlocking().run {
+          assertThat(initialized).isTrue()
+          assertThat(query()).hasSize(1)
+          assertThat(query().first().value.hour).isEqualTo(20)
+          assertThat(query().first().value.minutes).isEqualTo(30)
+        }
+      }
+
+  @Test
+  fun `alarms created together get new ids and are stored`() =
+      runBlocking<Unit> {
+        val scope = CoroutineScope(Dispatchers.IO)
+        createBlocking(scope).run {
+          create()
+          val created = createAll(listOf(alarm(7), alarm(8)))
+          assertThat(created.map { it.id }).containsExactly(1, 2)
+          awaitStored()
+        }
+        cancelAndJoin(scope)
+
+        assertThat(createBlocking().query().map { it.value })
+            .containsExactlyInAnyOrder(
+                AlarmValue(id = 0), alarm(7).copy(id = 1), alarm(8).copy(id = 2))
+      }
+
+  @Test
+  fun `alarms which were not stored are not initialized`() =
+      runBlocking<Unit> {
+        val scope = CoroutineScope(Dispatchers.IO)
+        createBlocking(scope).run {
+          assertThat(initialized).isFalse()
+          createAll(listOf(alarm(7), alarm(8)))
+        }
+        // the process dies before the changes are written
+        cancelAndJoin(scope)
+
+        createBlocking().run {
+          assertThat(initialized).isFalse()
+          assertThat(query()).isEmpty()
+        }
+      }
+
+  @Test
+  fun `journal is compacted into a snapshot`() {
+    val journal = AlarmsJournal(datastoreDir, logger, minCompactionBytes = 256)
+    journal.restore()
+    (1L..100L).forEach { sequence ->
+      journal.append(
+          listOf(AlarmsJournal.Record(sequence, (sequence % 3).toInt(), valueOf(sequence))))
+    }
+    journal.close()
+
+    assertThat(datastoreDir.resolve(AlarmsJournal.SNAPSHOT).exists()).isTrue()
+    assertThat(datastoreDir.resolve(AlarmsJournal.JOURNAL).length()).isLessThan(256)
+    val restored = AlarmsJournal(datastoreDir, logger).run { restore().also { close() } }
+    assertThat(restored).isEqualTo(mapOf(0 to valueOf(99), 1 to valueOf(100), 2 to valueOf(98)))
+  }
+
+  @Test
+  fun `journal is kept if the snapshot can not be made durable`() {
+    val journal =
+        AlarmsJournal(
+            datastoreDir,
+            logger,
+            minCompactionBytes = 0,
+            directorySync = { throw IOException("fsync failed") })
+    journal.restore()
+
+    assertThatThrownBy { journal.append(listOf(AlarmsJournal.Record(1, 1, alarm(1)))) }
+        .isInstanceOf(IOException::class.java)
+    journal.close()
+
+    // the record was synced before the compaction
+    assertThat(journal.storedSequence).isEqualTo(1)
+    assertThat(datastoreDir.resolve(AlarmsJournal.JOURNAL).length()).isGreaterThan(0)
+    assertThat(AlarmsJournal(datastoreDir, logger).restore()).isEqualTo(mapOf(1 to alarm(1)))
+  }
+
+  @Test
+  fun `records which are in the snapshot are not replayed`() {
+    val journal = AlarmsJournal(datastoreDir, logger)
+    journal.restore()
+    val journalBytes = datastoreDir.resolve(AlarmsJournal.JOURNAL)
+    journal.append(listOf(AlarmsJournal.Record(1, 1, alarm(1))))
+    journal.append(listOf(AlarmsJournal.Record(2, 1, null)))
+    val beforeCompaction = journalBytes.readBytes()
+    journal.compact()
+    journal.close()
+    // crash after the snapshot was renamed, but before the journal was truncated
+    journalBytes.writeBytes(beforeCompaction)
+
+    val restored = AlarmsJournal(datastoreDir, logger)
+    assertThat(restored.restore()).isEmpty()
+    assertThat(restored.sequence).isEqualTo(2)
+  }
+
+  @Test
+  fun `partially written record is discarded`() {
+    val journal = AlarmsJournal(datastoreDir, logger)
+    journal.restore()
+    journal.append(listOf(AlarmsJournal.Record(1, 1, alarm(1))))
+    journal.append(listOf(AlarmsJournal.Record(2, 1, alarm(2))))
+    journal.close()
+    val file = datastoreDir.resolve(AlarmsJournal.JOURNAL)
+    file.writeBytes(file.readBytes().copyOf(file.length().toInt() - 3))
+
+    val restored = AlarmsJournal(datastoreDir, logger)
+    assertThat(restored.restore()).isEqualTo(mapOf(1 to alarm(1)))
+    restored.append(listOf(AlarmsJournal.Record(2, 2, alarm(2))))
+    restored.close()
+    assertThat(AlarmsJournal(datastoreDir, logger).restore())
+        .isEqualTo(mapOf(1 to alarm(1), 2 to alarm(2)))
+  }
+
+  @Test
+  fun `alarms are restored from the datastore file`() {
+    datastoreDir
+        .resolve(AlarmsJournal.LEGACY)
+        .writeBytes(
+            ProtoBuf.encodeToByteArray(
+                AlarmValues.serializer(), AlarmValues(mapOf(4 to alarm(4), 5 to alarm(5)))))
+
+    createBlocking().run {
+      assertThat(initialized).isTrue()
+      assertThat(query().map { it.value }).containsExactlyInAnyOrder(alarm(4), alarm(5))
+    }
+  }
+
+  @Test
+  fun `alarms are restored in the background`() =
+      runBlocking<Unit> {
+        createBlocking().run {
+          create().value = alarm(0).copy(hour = 7)
+          awaitStored()
+        }
+
+        val repository =
+            JournalAlarmsRepository.create(
+                datastoreDir = datastoreDir,
+                logger = logger,
+                ioScope = CoroutineScope(Dispatchers.IO),
+                mainThread = { true },
+            )
+        repository.awaitReady()
+
+        assertThat(repository.isReady).isTrue()
+        assertThat(repository.initialized).isTrue()
+        assertThat(repository.query().map { it.value.hour }).containsExactly(7)
+      }
+
+  @Test
+  fun `query waits until the alarms are restored`() {
+    createBlocking().run {
+      create()
+      create()
+      awaitStored()
+    }
+
+    val repository =
+        JournalAlarmsRepository.create(
+            datastoreDir = datastoreDir,
+            logger = logger,
+            ioScope = CoroutineScope(Dispatchers.IO),
+            mainThread = { true },
+        )
+
+    assertThat(repository.query()).hasSize(2)
+    assertThat(repository.isReady).isTrue()
+  }
+
+  @Test
+  fun `alarm records contain all fields`() {
+    val alarm =
+        AlarmValue(
+            id = 3,
+            nextTimeMillis = 1_700_000_000_000,
+            state = "SetState",
+            isEnabled = true,
+            hour = 23,
+            minutes = 59,
+            alarmtone = Alarmtone.Sound("content://ringtone/1"),
+            isVibrate = false,
+            label = "Wäsche",
+            daysOfWeek = DaysOfWeek(0x7f),
+            isDeleteAfterDismiss = true,
+            dateEpochDay = 19_000,
+        )
+    val file = datastoreDir.resolve(AlarmsJournal.RECORDS)
+    AlarmRecords.write(file, mapOf(1 to alarm(1), 3 to alarm, 2 to alarm(2)), sequence = 7)
+
+    val records = requireNotNull(AlarmRecords.read(file))
+    assertThat(records.sequence).isEqualTo(7)
+    assertThat(records[3]).isEqualTo(alarm)
+    assertThat(records[1]).isEqualTo(alarm(1))
+    assertThat(records[4]).isNull()
+  }
+
+  @Test
+  fun `alarm is peeked from the records and the journal`() {
+    val journal = AlarmsJournal(datastoreDir, logger, minCompactionBytes = 256)
+    journal.restore()
+    (1L..100L).forEach { sequence ->
+      journal.append(
+          listOf(AlarmsJournal.Record(sequence, (sequence % 3).toInt(), valueOf(sequence))))
+    }
+    journal.append(listOf(AlarmsJournal.Record(101, 1, null)))
+    journal.close()
+
+    val peeking = AlarmsJournal(datastoreDir, logger)
+    assertThat(peeking.peek(0)?.getOrNull()).isEqualTo(valueOf(99))
+    assertThat(peeking.peek(2)?.getOrNull()).isEqualTo(valueOf(98))
+    assertThat(peeking.peek(1)?.isPresent()).isFalse()
+  }
+
+  @Test
+  fun `corrupt alarm records are rebuilt`() {
+    AlarmsJournal(datastoreDir, logger).run {
+      restore()
+      append(listOf(AlarmsJournal.Record(1, 1, alarm(1))))
+      compact()
+      close()
+    }
+    val file = datastoreDir.resolve(AlarmsJournal.RECORDS)
+    file.writeBytes(file.readBytes().also { it[it.size - 1] = 0 })
+    assertThat(AlarmRecords.read(file)?.verify()).isFalse()
+    // the snapshot is read instead
+    assertThat(AlarmsJournal(datastoreDir, logger).peek(1)?.getOrNull()).isEqualTo(alarm(1))
+
+    AlarmsJournal(datastoreDir, logger).run {
+      restore()
+      close()
+    }
+
+    assertThat(AlarmRecords.read(file)?.verify()).isTrue()
+    assertThat(AlarmRecords.read(file)?.get(1)).isEqualTo(alarm(1))
+  }
+
+  /** Value of the alarm with id `sequence % 3` written by the change with the [sequence] */
+  private fun valueOf(sequence: Long) =
+      AlarmValue(id = (sequence % 3).toInt(), hour = (sequence % 24).toInt(), label = "$sequence")
+
+  private fun alarm(id: Int) = AlarmValue(id = id, hour = id, label = "$id")
+
+  private fun createBlocking(
+      scope: CoroutineScope = CoroutineScope(Dispatchers.IO + CoroutineName("io"))
+  ): AlarmsRepository =
+      JournalAlarmsRepository.createBlocking(
+          datastoreDir = datastoreDir,
+          logger = logger,
+          ioScope = scope,
+          mainThread = { true },
+      )
+}
+
+private suspend fun cancelAndJoin(scope: CoroutineScope) {
+  scope.cancel()
+  scope.coroutineContext.job.join()
+}
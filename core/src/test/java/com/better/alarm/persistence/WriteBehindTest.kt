@@ -0,0 +1,90 @@
+package com.better.alarm.persistence
+
+import com.better.alarm.data.WriteBehind
+import java.util.concurrent.CopyOnWriteArrayList
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.cancel
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.After
+import org.junit.Test
+
+class WriteBehindTest {
+  private val scope = CoroutineScope(Dispatchers.IO)
+  private val written = CopyOnWriteArrayList<Long>()
+
+  @After
+  fun tearDown() {
+    scope.cancel()
+  }
+
+  private fun writeBehind(maxDelayMillis: Long): WriteBehind {
+    lateinit var writeBehind: WriteBehind
+    writeBehind =
+        WriteBehind(scope, initialVersion = 10, maxDelayMillis = maxDelayMillis) {
+          writeBehind.lastVersion.also { written.add(it) }
+        }
+    return writeBehind
+  }
+
+  @Test
+  fun `burst of changes is written once`() {
+    val writeBehind = writeBehind(maxDelayMillis = 200)
+    repeat(100) { writeBehind.changed() }
+
+    writeBehind.awaitStored()
+
+    assertThat(written).containsExactly(110L)
+    assertThat(writeBehind.storedVersion).isEqualTo(110)
+  }
+
+  @Test
+  fun `awaitStored does not wait for the delay`() {
+    val writeBehind = writeBehind(maxDelayMillis = 60_000)
+    writeBehind.changed()
+
+    writeBehind.awaitStored(timeoutMillis = 5_000)
+
+    assertThat(writeBehind.storedVersion).isEqualTo(11)
+  }
+
+  @Test
+  fun `changes are written after the delay`() {
+    val writeBehind = writeBehind(maxDelayMillis = 10)
+    writeBehind.changed()
+
+    val deadline = System.currentTimeMillis() + 5_000
+    while (writeBehind.storedVersion < 11 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5)
+    }
+
+    assertThat(written).containsExactly(11L)
+  }
+
+  @Test
+  fun `change which is not queued yet is written by the next round`() {
+    // every write stores the changes which were queued before the previous write
+    var queued = 10L
+    lateinit var writeBehind: WriteBehind
+    writeBehind =
+        WriteBehind(scope, initialVersion = 10, maxDelayMillis = 10) {
+          queued.also {
+            written.add(it)
+            queued = writeBehind.lastVersion
+          }
+        }
+    writeBehind.changed()
+
+    writeBehind.awaitStored(timeoutMillis = 5_000)
+
+    assertThat(written).containsExactly(10L, 11L)
+    assertThat(writeBehind.storedVersion).isEqualTo(11)
+  }
+
+  @Test
+  fun `awaitStored returns right away if nothing has changed`() {
+    writeBehind(maxDelayMillis = 60_000).awaitStored(timeoutMillis = 1)
+
+    assertThat(written).isEmpty()
+  }
+}
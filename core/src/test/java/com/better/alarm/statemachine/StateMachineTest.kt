@@ -2,13 +2,17 @@ package com.better.alarm.statemachine
 
 import com.better.alarm.domain.statemachine.State
 import com.better.alarm.domain.statemachine.StateMachine
+import com.better.alarm.domain.statemachine.StateMachineDefinition
+import com.better.alarm.domain.statemachine.TransitionTrace
 import com.better.alarm.logger.Logger
+import java.lang.management.ManagementFactory
 import org.assertj.core.api.Assertions.assertThat
 import org.junit.Test
+import org.slf4j.helpers.NOPLogger
 
 class StateMachineTest {
   private val stateMachine =
-      StateMachine<Event>(name = "TestStateMachine", logger = Logger.create())
+      StateMachine<Event, Unit>(name = "TestStateMachine", logger = Logger.create(), context = Unit)
 
   private val captured: MutableList<CapturedEvent> = mutableListOf()
   private val capturedEvents: List<OnEvent>
@@ -17,17 +21,17 @@ class StateMachineTest {
   private val capturedTransitions: List<CapturedEvent>
     get() = captured.filterNot { it is OnEvent }
 
-  private fun state(tag: String, block: (Event) -> Boolean): State<Event> {
-    return object : State<Event>() {
-      override fun enter(reason: Event?) {
+  private fun state(tag: String, block: (Event) -> Boolean): State<Event, Unit> {
+    return object : State<Event, Unit>() {
+      override fun enter(context: Unit, reason: Event?) {
         captured.add(OnEnter(this))
       }
 
-      override fun exit(reason: Event?) {
+      override fun exit(context: Unit, reason: Event?) {
         captured.add(OnExit(this))
       }
 
-      override fun onEvent(event: Event): Boolean {
+      override fun onEvent(context: Unit, event: Event): Boolean {
         captured.add(OnEvent(this, event))
         return block(event)
       }
@@ -223,6 +227,173 @@ class StateMachineTest {
         .containsExactly(
             OnEvent(grinding, DoneGrinding), OnEvent(ready, Brew(1)), OnEvent(ready, Brew(2)))
   }
+
+  @Test
+  fun `events sent while processing are processed after the current event is done`() {
+    val root = state("root") { true }
+    lateinit var s2: State<Event, Unit>
+    val s1 =
+        state("s1") {
+          stateMachine.transitionTo(s2)
+          stateMachine.sendEvent(Grind(1))
+          true
+        }
+    s2 = state("s2") { true }
+
+    stateMachine.start {
+      addState(state = root)
+      addState(state = s1, parent = root, initial = true)
+      addState(state = s2, parent = root)
+    }
+    captured.clear()
+
+    stateMachine.sendEvent(Brew(1))
+
+    // Grind is processed by s2 after the transition and not in the middle of it
+    assertThat(captured)
+        .containsExactly(OnEvent(s1, Brew(1)), OnExit(s1), OnEnter(s2), OnEvent(s2, Grind(1)))
+  }
+
+  @Test
+  fun `long chains of events do not grow the stack`() {
+    val chain =
+        state("chain") { event ->
+          if (event is Grind && event.portions > 0) {
+            stateMachine.sendEvent(Grind(event.portions - 1))
+          }
+          true
+        }
+    stateMachine.start { addState(state = chain, initial = true) }
+
+    stateMachine.sendEvent(Grind(100_000))
+
+    assertThat(capturedEvents).hasSize(100_001)
+    assertThat(capturedEvents.last()).isEqualTo(OnEvent(chain, Grind(0)))
+  }
+
+  @Test
+  fun `batch of events is processed in order`() {
+    val root = state("root") { true }
+    stateMachine.start { addState(state = root, initial = true) }
+    captured.clear()
+
+    stateMachine.sendEvents(listOf(Grind(1), Brew(2), DoneBrewing))
+
+    assertThat(capturedEvents)
+        .containsExactly(
+            OnEvent(root, Grind(1)), OnEvent(root, Brew(2)), OnEvent(root, DoneBrewing))
+  }
+
+  @Test
+  fun `state machines which share a definition have their own current state and context`() {
+    class Grinder(name: String) {
+      val machine = StateMachine<Event, Grinder>(name, Logger.create(), this)
+      var portions = 0
+    }
+    lateinit var busy: State<Event, Grinder>
+    val idle =
+        object : State<Event, Grinder>() {
+          override fun enter(context: Grinder, reason: Event?) = Unit
+
+          override fun exit(context: Grinder, reason: Event?) = Unit
+
+          override fun onEvent(context: Grinder, event: Event): Boolean {
+            if (event is Switch) context.machine.transitionTo(busy)
+            return event is Switch
+          }
+        }
+    busy =
+        object : State<Event, Grinder>() {
+          override fun enter(context: Grinder, reason: Event?) = Unit
+
+          override fun exit(context: Grinder, reason: Event?) = Unit
+
+          override fun onEvent(context: Grinder, event: Event): Boolean {
+            if (event is Grind) context.portions += event.portions
+            return event is Grind
+          }
+        }
+    val definition =
+        StateMachineDefinition<Event, Grinder> {
+          addState(idle)
+          addState(busy)
+        }
+    val first = Grinder("first").apply { machine.start(definition, idle) }
+    val second = Grinder("second").apply { machine.start(definition, busy) }
+
+    first.machine.sendEvent(Switch(on = true))
+    first.machine.sendEvent(Grind(1))
+    second.machine.sendEvent(Grind(2))
+    second.machine.sendEvent(Grind(3))
+
+    assertThat(first.portions).isEqualTo(1)
+    assertThat(second.portions).isEqualTo(5)
+  }
+
+  @Test
+  fun `events are processed and transitions performed without allocations`() {
+    val machine =
+        StateMachine<Event, Unit>(
+            "NoAllocations", Logger(NOPLogger.NOP_LOGGER), Unit, trace = TransitionTrace(16))
+    val toggle = Switch(on = true)
+    val grind = Grind(1)
+    lateinit var s1a: State<Event, Unit>
+    lateinit var s1b: State<Event, Unit>
+    lateinit var oa: State<Event, Unit>
+    fun toggleTo(target: () -> State<Event, Unit>) = plainState { event ->
+      if (event == toggle) machine.transitionTo(target())
+      event == toggle
+    }
+    val root = plainState { event -> event == grind }
+    val s1 = plainState { false }
+    s1a = toggleTo { oa }
+    s1b = toggleTo { s1a }
+    val o = plainState { event -> event == grind }
+    oa = toggleTo { s1b }
+    //     root      o
+    //      |        |
+    //      s1       oa
+    //     /  \
+    //   s1a  s1b
+    machine.start {
+      addState(root)
+      addState(s1, root)
+      addState(s1a, s1, initial = true)
+      addState(s1b, s1)
+      addState(o)
+      addState(oa, o)
+    }
+
+    val threads = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+    val thread = Thread.currentThread().id
+    fun dispatch() {
+      repeat(1000) {
+        // propagated to the root, then s1a > oa > s1b > s1a within the tree and between trees
+        machine.sendEvent(grind)
+        machine.sendEvent(toggle)
+      }
+    }
+
+    // warm up, so that lazily initialized JVM internals do not count
+    dispatch()
+    val calibration = threads.getThreadAllocatedBytes(thread)
+    val before = threads.getThreadAllocatedBytes(thread)
+    dispatch()
+    val after = threads.getThreadAllocatedBytes(thread)
+
+    assertThat(after - before - (before - calibration)).describedAs("allocated bytes").isEqualTo(0)
+  }
+
+  /** State without any side effects which would allocate */
+  private fun plainState(block: (Event) -> Boolean): State<Event, Unit> {
+    return object : State<Event, Unit>() {
+      override fun enter(context: Unit, reason: Event?) = Unit
+
+      override fun exit(context: Unit, reason: Event?) = Unit
+
+      override fun onEvent(context: Unit, event: Event): Boolean = block(event)
+    }
+  }
 }
 
 sealed class Event {
@@ -241,8 +412,8 @@ object DoneBrewing : Event()
 
 sealed class CapturedEvent
 
-data class OnEnter(val state: State<Event>) : CapturedEvent()
+data class OnEnter(val state: State<Event, Unit>) : CapturedEvent()
 
-data class OnExit(val state: State<Event>) : CapturedEvent()
+data class OnExit(val state: State<Event, Unit>) : CapturedEvent()
 
-data class OnEvent(val state: State<Event>, val event: Event) : CapturedEvent()
+data class OnEvent(val state: State<Event, Unit>, val event: Event) : CapturedEvent()
@@ -0,0 +1,74 @@
+package com.better.alarm.statemachine
+
+import com.better.alarm.domain.statemachine.State
+import com.better.alarm.domain.statemachine.StateMachine
+import com.better.alarm.domain.statemachine.TransitionTrace
+import com.better.alarm.logger.Logger
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+
+class TransitionTraceTest {
+  private val trace = TransitionTrace(capacity = 3)
+
+  private class NamedState(override val name: String) : State<Event, Unit>() {
+    override fun enter(context: Unit, reason: Event?) = Unit
+
+    override fun exit(context: Unit, reason: Event?) = Unit
+
+    override fun onEvent(context: Unit, event: Event): Boolean = true
+  }
+
+  private val idle = NamedState("idle")
+  private val busy = NamedState("busy")
+
+  @Test
+  fun `records are dumped as csv oldest first`() {
+    trace.record(1, Grind(1), idle, busy, 100, 5)
+    trace.record(2, DoneGrinding, busy, idle, 200, 7)
+
+    assertThat(trace.dump().lines())
+        .containsExactly(
+            "id,event,from,to,nanoTime,durationNanos",
+            "1,Grind,idle,busy,100,5",
+            "2,DoneGrinding,busy,idle,200,7",
+            "")
+  }
+
+  @Test
+  fun `only the last records are kept`() {
+    repeat(5) { trace.record(it, Brew(it), idle, idle, it.toLong(), 1) }
+
+    assertThat(trace.size).isEqualTo(3)
+    assertThat(trace.dump().lines().drop(1).map { it.substringBefore(',') })
+        .containsExactly("2", "3", "4", "")
+  }
+
+  @Test
+  fun `state machine records events with states before and after`() {
+    val machine =
+        StateMachine<Event, Unit>("Traced", Logger.create(), Unit, trace = trace, traceId = 42)
+    val toggle =
+        object : State<Event, Unit>() {
+          override fun enter(context: Unit, reason: Event?) = Unit
+
+          override fun exit(context: Unit, reason: Event?) = Unit
+
+          override fun onEvent(context: Unit, event: Event): Boolean {
+            if (event is Switch) machine.transitionTo(busy)
+            return true
+          }
+
+          override val name: String = "toggle"
+        }
+    machine.start {
+      addState(toggle, initial = true)
+      addState(busy)
+    }
+
+    machine.sendEvent(Grind(1))
+    machine.sendEvent(Switch(on = true))
+
+    assertThat(trace.dump().lines().drop(1).map { it.split(',').take(4).joinToString(",") })
+        .containsExactly("42,Grind,toggle,toggle", "42,Switch,toggle,busy", "")
+  }
+}